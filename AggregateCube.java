@@ -0,0 +1,300 @@
+package climatechange;
+
+import java.util.Arrays;
+import java.util.List;
+
+public class AggregateCube {
+	//
+	// The groupings the cube keeps aggregates for. The key of a COUNTRY_MONTH cell is a month from 1 to 12, the key of a COUNTRY_YEAR cell
+	// is a year, and COUNTRY cells ignore the key.
+	//
+	public enum Dimension { COUNTRY, COUNTRY_MONTH, COUNTRY_YEAR }
+
+	private ITemperatureStore table;
+	private int numCountries;
+	private int minYear;
+	private int numYears;
+	private Cells countryCells;
+	private Cells countryMonthCells;
+	private Cells countryYearCells;
+
+	//
+	// Computes the aggregates of every row that is currently in the table.
+	//
+	public AggregateCube(ITemperatureStore theTable)
+	{
+		table = theTable;
+		rebuild();
+	}
+
+	//
+	// Builds a cube from a list of temperature readings. The rows returned by the cube refer to a table made from the list, in list order.
+	//
+	public static AggregateCube fromList(List<? extends ITemperature> theWeatherList)
+	{
+		return new AggregateCube(TemperatureTable.fromList(theWeatherList));
+	}
+
+	//
+	// Throws away all aggregates and computes them again from the rows of the table.
+	//
+	public void rebuild()
+	{
+		numCountries = table.getCountries().size();
+		minYear = Integer.MAX_VALUE;
+		int maxYear = Integer.MIN_VALUE;
+		for (int row = 0; row < table.size(); row++)
+		{
+			minYear = Math.min(minYear, table.getYear(row));
+			maxYear = Math.max(maxYear, table.getYear(row));
+		}
+
+		numYears = table.size() == 0 ? 0 : maxYear - minYear + 1;
+		countryCells = new Cells(numCountries);
+		countryMonthCells = new Cells(numCountries * 12);
+		countryYearCells = new Cells(numCountries * numYears);
+
+		for (int row = 0; row < table.size(); row++)
+		{
+			addRow(row);
+		}
+	}
+
+	//
+	// Adds one row of the table to its cell in every dimension.
+	//
+	private void addRow(int row)
+	{
+		double temperature = table.getTemperature(row);
+		int countryId = table.getCountryId(row);
+		countryCells.add(countryId, temperature, row);
+		int month = table.getMonth(row);
+		if (month >= 1 && month <= 12)
+		{
+			countryMonthCells.add(countryId * 12 + month - 1, temperature, row);
+		}
+		countryYearCells.add(countryId * numYears + table.getYear(row) - minYear, temperature, row);
+	}
+
+	//
+	// Adds the rows in [start, end) of the table to the aggregates. The rows must come after every row already in the cube. Cells of new
+	// countries are added at the end; a row outside of the range of years in the cube rebuilds the whole cube.
+	//
+	public void addRows(int start, int end)
+	{
+		for (int row = start; row < end; row++)
+		{
+			if (table.getYear(row) < minYear || table.getYear(row) >= minYear + numYears)
+			{
+				rebuild();
+				return;
+			}
+		}
+
+		if (table.getCountries().size() > numCountries)
+		{
+			numCountries = table.getCountries().size();
+			countryCells.grow(numCountries);
+			countryMonthCells.grow(numCountries * 12);
+			countryYearCells.grow(numCountries * numYears);
+		}
+
+		for (int row = start; row < end; row++)
+		{
+			addRow(row);
+		}
+	}
+
+	//
+	// Gets the number of readings in a cell.
+	//
+	public int getCount(Dimension dimension, int countryId, int key)
+	{
+		int cell = findCell(dimension, countryId, key);
+		return cell < 0 ? 0 : getCells(dimension).count[cell];
+	}
+
+	//
+	// Gets the sum of the Celsius temperatures in a cell.
+	//
+	public double getSum(Dimension dimension, int countryId, int key)
+	{
+		int cell = findCell(dimension, countryId, key);
+		return cell < 0 ? 0.0 : getCells(dimension).sum[cell];
+	}
+
+	//
+	// Gets the average Celsius temperature of a cell, or NaN if the cell is empty.
+	//
+	public double getAverage(Dimension dimension, int countryId, int key)
+	{
+		int count = getCount(dimension, countryId, key);
+		return count == 0 ? Double.NaN : getSum(dimension, countryId, key) / count;
+	}
+
+	//
+	// Gets the lowest Celsius temperature of a cell, or NaN if the cell is empty.
+	//
+	public double getMinimum(Dimension dimension, int countryId, int key)
+	{
+		int row = getMinimumRow(dimension, countryId, key);
+		return row < 0 ? Double.NaN : table.getTemperature(row);
+	}
+
+	//
+	// Gets the highest Celsius temperature of a cell, or NaN if the cell is empty.
+	//
+	public double getMaximum(Dimension dimension, int countryId, int key)
+	{
+		int row = getMaximumRow(dimension, countryId, key);
+		return row < 0 ? Double.NaN : table.getTemperature(row);
+	}
+
+	//
+	// Gets the row id of the lowest temperature of a cell. If several rows share the lowest temperature, the first one is used. Returns -1
+	// if the cell is empty.
+	//
+	public int getMinimumRow(Dimension dimension, int countryId, int key)
+	{
+		int cell = findCell(dimension, countryId, key);
+		return cell < 0 ? -1 : getCells(dimension).minRow[cell];
+	}
+
+	//
+	// Gets the row id of the highest temperature of a cell. If several rows share the highest temperature, the first one is used. Returns
+	// -1 if the cell is empty.
+	//
+	public int getMaximumRow(Dimension dimension, int countryId, int key)
+	{
+		int cell = findCell(dimension, countryId, key);
+		return cell < 0 ? -1 : getCells(dimension).maxRow[cell];
+	}
+
+	//
+	// Gets the reading with the lowest temperature of a cell, or null if the cell is empty.
+	//
+	public ITemperature getLowestTemperature(Dimension dimension, int countryId, int key)
+	{
+		int row = getMinimumRow(dimension, countryId, key);
+		return row < 0 ? null : table.toTemperature(row);
+	}
+
+	//
+	// Gets the reading with the highest temperature of a cell, or null if the cell is empty.
+	//
+	public ITemperature getHighestTemperature(Dimension dimension, int countryId, int key)
+	{
+		int row = getMaximumRow(dimension, countryId, key);
+		return row < 0 ? null : table.toTemperature(row);
+	}
+
+	//
+	// Gets the table the row ids of this cube refer to.
+	//
+	public ITemperatureStore getTable()
+	{
+		return table;
+	}
+
+	//
+	// Gets the cells of a dimension.
+	//
+	private Cells getCells(Dimension dimension)
+	{
+		switch (dimension)
+		{
+			case COUNTRY_MONTH:
+				return countryMonthCells;
+			case COUNTRY_YEAR:
+				return countryYearCells;
+			default:
+				return countryCells;
+		}
+	}
+
+	//
+	// Gets the position of a cell in the arrays of its dimension, or -1 if the country or key is outside of the cube.
+	//
+	private int findCell(Dimension dimension, int countryId, int key)
+	{
+		if (countryId < 0 || countryId >= numCountries)
+		{
+			return -1;
+		}
+
+		switch (dimension)
+		{
+			case COUNTRY_MONTH:
+				return key >= 1 && key <= 12 ? countryId * 12 + key - 1 : -1;
+			case COUNTRY_YEAR:
+				return key >= minYear && key < minYear + numYears ? countryId * numYears + key - minYear : -1;
+			default:
+				return countryId;
+		}
+	}
+
+	//
+	// The min, max, count and sum of every cell of one dimension, kept in parallel arrays.
+	//
+	private static class Cells {
+		private int[] count;
+		private double[] sum;
+		private int[] minRow;
+		private int[] maxRow;
+		private double[] min;
+		private double[] max;
+
+		private Cells(int numCells)
+		{
+			count = new int[0];
+			sum = new double[0];
+			minRow = new int[0];
+			maxRow = new int[0];
+			min = new double[0];
+			max = new double[0];
+			grow(numCells);
+		}
+
+		//
+		// Adds empty cells to the end until there are numCells cells.
+		//
+		private void grow(int numCells)
+		{
+			int oldNumCells = count.length;
+			count = Arrays.copyOf(count, numCells);
+			sum = Arrays.copyOf(sum, numCells);
+			minRow = Arrays.copyOf(minRow, numCells);
+			maxRow = Arrays.copyOf(maxRow, numCells);
+			min = Arrays.copyOf(min, numCells);
+			max = Arrays.copyOf(max, numCells);
+			Arrays.fill(minRow, oldNumCells, numCells, -1);
+			Arrays.fill(maxRow, oldNumCells, numCells, -1);
+			Arrays.fill(min, oldNumCells, numCells, Double.POSITIVE_INFINITY);
+			Arrays.fill(max, oldNumCells, numCells, Double.NEGATIVE_INFINITY);
+		}
+
+		//
+		// Adds a reading to a cell. Readings that are not a number are left out of every aggregate.
+		//
+		private void add(int cell, double temperature, int row)
+		{
+			if (Double.isNaN(temperature))
+			{
+				return;
+			}
+
+			count[cell]++;
+			sum[cell] += temperature;
+			if (minRow[cell] < 0 || temperature < min[cell])
+			{
+				min[cell] = temperature;
+				minRow[cell] = row;
+			}
+			if (maxRow[cell] < 0 || temperature > max[cell])
+			{
+				max[cell] = temperature;
+				maxRow[cell] = row;
+			}
+		}
+	}
+}
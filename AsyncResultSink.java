@@ -0,0 +1,239 @@
+package climatechange;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+public class AsyncResultSink implements IResultSink {
+	// What a queued write does. FLUSH and CLOSE also tell whoever waits on them that everything queued before them has been written.
+	private enum Kind { SUBJECT_HEADER, DATA, CLOSE_FILE, FLUSH, CLOSE }
+
+	public static final int DEFAULT_QUEUE_SIZE = 1024;
+
+	private IResultSink sink;
+	// The writes that have not been handed to the sink yet. The queue is bounded, so a caller that computes results faster than the
+	// disk takes them waits instead of filling the heap.
+	private BlockingQueue<Write> queue;
+	private Thread writerThread;
+	private volatile IOException error;
+	private boolean closed;
+
+	//
+	// Creates a sink that hands every write to another sink on its own writer thread, so the caller can go on computing the next result
+	// while the last one is being written.
+	//
+	public AsyncResultSink(IResultSink theSink)
+	{
+		this(theSink, DEFAULT_QUEUE_SIZE);
+	}
+
+	public AsyncResultSink(IResultSink theSink, int queueSize)
+	{
+		sink = theSink;
+		queue = new ArrayBlockingQueue<Write>(queueSize);
+		writerThread = new Thread(this::writeAll, "AsyncResultSink");
+		writerThread.setDaemon(true);
+		writerThread.start();
+	}
+
+	@Override
+	public void writeSubjectHeader(String fileName, String subject) throws IOException
+	{
+		enqueue(new Write(Kind.SUBJECT_HEADER, fileName, subject, null));
+	}
+
+	//
+	// Queues the readings to be written. The list is copied, so the caller may change it as soon as this returns.
+	//
+	@Override
+	public void writeData(String fileName, String topic, List<? extends ITemperature> theWeatherList) throws IOException
+	{
+		enqueue(new Write(Kind.DATA, fileName, topic, new ArrayList<ITemperature>(theWeatherList)));
+	}
+
+	//
+	// Queues closing one file after the writes to it that are already queued.
+	//
+	@Override
+	public void closeFile(String fileName) throws IOException
+	{
+		enqueue(new Write(Kind.CLOSE_FILE, fileName, null, null));
+	}
+
+	//
+	// Waits until every queued write has reached the sink, then flushes the sink.
+	//
+	@Override
+	public void flush() throws IOException
+	{
+		Write marker = new Write(Kind.FLUSH, null, null, null);
+		enqueue(marker);
+		marker.await();
+		throwError();
+	}
+
+	//
+	// Waits for every queued write, stops the writer thread and closes the sink. The first error of any write is thrown here if it has
+	// not been thrown already. The sink is closed by the writer thread once it takes CLOSE, so it is still closed if the caller is
+	// interrupted while waiting. The sink only counts as closed once CLOSE is queued, so close() can be called again if it was interrupted
+	// before that.
+	//
+	@Override
+	public synchronized void close() throws IOException
+	{
+		if (closed)
+		{
+			return;
+		}
+
+		Write marker = new Write(Kind.CLOSE, null, null, null);
+		putInterruptibly(marker);
+		closed = true;
+		marker.await();
+		throwError();
+	}
+
+	//
+	// Queues a write. The closed check and the put happen under the same lock close() queues CLOSE under, so no write can be queued after
+	// CLOSE, where the writer thread would never take it. A put that waits for room in the queue holds the lock, which only makes other
+	// callers wait for the same room.
+	//
+	private synchronized void enqueue(Write write) throws IOException
+	{
+		throwError();
+		if (closed)
+		{
+			throw new IOException("The result sink is closed");
+		}
+		putInterruptibly(write);
+	}
+
+	private void putInterruptibly(Write write) throws IOException
+	{
+		try
+		{
+			queue.put(write);
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting to queue a write", e);
+		}
+	}
+
+	private void throwError() throws IOException
+	{
+		IOException e = error;
+		if (e != null)
+		{
+			throw e;
+		}
+	}
+
+	//
+	// Runs on the writer thread. After the first error, later writes are skipped, since the files would be missing a part anyway, but
+	// CLOSE still closes the sink so no file is left open. Any Throwable, Errors included, is kept as the error rather than ending the
+	// thread, since callers waiting on a FLUSH or CLOSE, or for room in the queue, would otherwise wait forever.
+	//
+	private void writeAll()
+	{
+		while (true)
+		{
+			Write write;
+			try
+			{
+				write = queue.take();
+			}
+			catch (InterruptedException e)
+			{
+				return;
+			}
+
+			try
+			{
+				if (write.kind == Kind.CLOSE)
+				{
+					sink.close();
+				}
+				else if (error == null)
+				{
+					switch (write.kind)
+					{
+						case SUBJECT_HEADER:
+							sink.writeSubjectHeader(write.fileName, write.text);
+							break;
+						case DATA:
+							sink.writeData(write.fileName, write.text, write.data);
+							break;
+						case CLOSE_FILE:
+							sink.closeFile(write.fileName);
+							break;
+						case FLUSH:
+							sink.flush();
+							break;
+						default:
+							break;
+					}
+				}
+			}
+			catch (Throwable e)
+			{
+				if (error == null)
+				{
+					error = e instanceof IOException ? (IOException) e : new IOException(e);
+				}
+			}
+			finally
+			{
+				write.done();
+			}
+			if (write.kind == Kind.CLOSE)
+			{
+				return;
+			}
+		}
+	}
+
+	//
+	// One queued write.
+	//
+	private static class Write {
+		private Kind kind;
+		private String fileName;
+		private String text;
+		private List<ITemperature> data;
+		private boolean finished;
+
+		private Write(Kind theKind, String theFileName, String theText, List<ITemperature> theData)
+		{
+			kind = theKind;
+			fileName = theFileName;
+			text = theText;
+			data = theData;
+		}
+
+		private synchronized void done()
+		{
+			finished = true;
+			notifyAll();
+		}
+
+		private synchronized void await() throws IOException
+		{
+			try
+			{
+				while (!finished)
+				{
+					wait();
+				}
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted while waiting for queued writes", e);
+			}
+		}
+	}
+}
@@ -0,0 +1,386 @@
+package climatechange;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class BatchDriver {
+	public static final String HEADER = "Temperature, " + "Year, " + "Month, " + "Country, " + "Country_Code";
+	public static final String DELTA_HEADER = "Delta Temperature, " + "Delta Year, " + "Month, " + "Country, " + "Country_Code";
+
+	private ClimateAnalyzer analyzer;
+	private String outputDirectory;
+	private int concurrency;
+	private IResultSink results;
+
+	//
+	// Creates a driver that runs the tasks of a job file against an analyzer that has already been loaded, running up to concurrency tasks
+	// at the same time and writing the output files into outputDirectory through the given sink. The caller closes the sink once the run
+	// is over, which is also when an error from an asynchronous write shows up.
+	//
+	public BatchDriver(ClimateAnalyzer theAnalyzer, String theOutputDirectory, int theConcurrency, IResultSink theResults)
+	{
+		analyzer = theAnalyzer;
+		outputDirectory = theOutputDirectory;
+		concurrency = Math.max(theConcurrency, 1);
+		results = theResults;
+	}
+
+	//
+	// Runs every task of a job file. Each line holds one task and its parameters separated by commas, the same input runClimateAnalyzer()
+	// asks the user for:
+	//
+	//     A1, country, month          A2, country, year          A3, country, low, high          A4, country
+	//     B1, month                   B2                         B3, low, high                   C1, month, year1, year2
+	//
+	// Empty lines and lines that start with # are skipped. Each task writes the same subject headers and readings runClimateAnalyzer()
+	// writes for it, into its own file named after the task and its line number, so tasks running at the same time never share a file.
+	// A task that fails is reported in its result instead of stopping the other tasks.
+	//
+	public ArrayList<TaskResult> run(List<String> jobLines) throws InterruptedException
+	{
+		ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+		try
+		{
+			ArrayList<Future<TaskResult>> futures = new ArrayList<Future<TaskResult>>();
+			for (int i = 0; i < jobLines.size(); i++)
+			{
+				String line = jobLines.get(i).trim();
+				if (line.isEmpty() || line.startsWith("#"))
+				{
+					continue;
+				}
+
+				int lineNumber = i + 1;
+				futures.add(executor.submit(() -> runTask(lineNumber, line)));
+			}
+
+			ArrayList<TaskResult> results = new ArrayList<TaskResult>(futures.size());
+			for (Future<TaskResult> future : futures)
+			{
+				try
+				{
+					results.add(future.get());
+				}
+				catch (ExecutionException e)
+				{
+					throw new IllegalStateException(e.getCause()); // runTask() catches everything a task can throw.
+				}
+			}
+
+			return results;
+		}
+		finally
+		{
+			executor.shutdown();
+		}
+	}
+
+	//
+	// Runs the task on one line of a job file and writes its output file, timing both.
+	//
+	private TaskResult runTask(int lineNumber, String line)
+	{
+		long start = System.nanoTime();
+		String[] fields = line.split(",");
+		for (int i = 0; i < fields.length; i++)
+		{
+			fields[i] = fields[i].trim();
+		}
+
+		String task = fields[0].toUpperCase();
+		String fileName = outputDirectory + File.separator + "task" + task + "_" + lineNumber + "_climate_info.csv";
+		try
+		{
+			ArrayList<Part> parts = parseTask(task, fields);
+			Files.deleteIfExists(new File(fileName).toPath()); // Result files are appended to, so output from an earlier run is removed first.
+			int rows = 0;
+			for (Part part : parts)
+			{
+				ArrayList<ITemperature> data = toList(analyzer.runQuery(part.query));
+				results.writeSubjectHeader(fileName, part.subject);
+				results.writeData(fileName, part.header, data);
+				rows += data.size();
+			}
+			results.closeFile(fileName); // Thousands of tasks must not keep thousands of files open.
+
+			return new TaskResult(lineNumber, line, fileName, rows, System.nanoTime() - start, null);
+		}
+		catch (IOException | RuntimeException e)
+		{
+			return new TaskResult(lineNumber, line, fileName, 0, System.nanoTime() - start, e);
+		}
+	}
+
+	//
+	// Turns the fields of a job line into the queries of its task, each with the subject header runClimateAnalyzer() writes above it.
+	//
+	private ArrayList<Part> parseTask(String task, String[] fields)
+	{
+		ArrayList<Part> parts = new ArrayList<Part>();
+		switch (task)
+		{
+			case "A1":
+			{
+				checkFields(fields, 3);
+				String country = fields[1];
+				int month = Integer.parseInt(fields[2]);
+				String monthString = analyzer.mapMonthsToStrings(month);
+				parts.add(new Part("Task A1_1: Lowest Temperature for " + country + " in " + monthString, QueryDescriptor.lowestTempByMonth(country, month), HEADER));
+				parts.add(new Part("Task A1_2: Highest Temperature for " + country + " in " + monthString, QueryDescriptor.highestTempByMonth(country, month), HEADER));
+				break;
+			}
+			case "A2":
+			{
+				checkFields(fields, 3);
+				String country = fields[1];
+				int year = Integer.parseInt(fields[2]);
+				parts.add(new Part("Task A2_1: Lowest Temperature for " + country + " in " + year, QueryDescriptor.lowestTempByYear(country, year), HEADER));
+				parts.add(new Part("Task A2_2: Highest Temperature for " + country + " in " + year, QueryDescriptor.highestTempByYear(country, year), HEADER));
+				break;
+			}
+			case "A3":
+			{
+				checkFields(fields, 4);
+				String country = fields[1];
+				double lowTemp = Double.parseDouble(fields[2]);
+				double highTemp = Double.parseDouble(fields[3]);
+				parts.add(new Part("Task A3: Temperatures for " + country + " within " + lowTemp + "-" + highTemp, QueryDescriptor.tempWithinRange(country, lowTemp, highTemp), HEADER));
+				break;
+			}
+			case "A4":
+			{
+				checkFields(fields, 2);
+				String country = fields[1];
+				parts.add(new Part("Task A4_1: Lowest Temperature for " + country, QueryDescriptor.lowestTempYearByCountry(country), HEADER));
+				parts.add(new Part("Task A4_2: Highest Temperature for " + country, QueryDescriptor.highestTempYearByCountry(country), HEADER));
+				break;
+			}
+			case "B1":
+			{
+				checkFields(fields, 2);
+				int month = Integer.parseInt(fields[1]);
+				String monthString = analyzer.mapMonthsToStrings(month);
+				parts.add(new Part("Task B1_1: The Top 10 Countries with the Lowest Temperatures in " + monthString, QueryDescriptor.top10LowestTemp(month), HEADER));
+				parts.add(new Part("Task B1_2: The Top 10 Countries with the Highest Temperatures in " + monthString, QueryDescriptor.top10HighestTemp(month), HEADER));
+				break;
+			}
+			case "B2":
+			{
+				checkFields(fields, 1);
+				parts.add(new Part("Task B2_1: The Top 10 Countries with the Lowest Temperatures", QueryDescriptor.top10LowestTemp(), HEADER));
+				parts.add(new Part("Task B2_2: The Top 10 Countries with the Highest Temperatures", QueryDescriptor.top10HighestTemp(), HEADER));
+				break;
+			}
+			case "B3":
+			{
+				checkFields(fields, 3);
+				double lowRangeTemp = Double.parseDouble(fields[1]);
+				double highRangeTemp = Double.parseDouble(fields[2]);
+				parts.add(new Part("Task B3: Temperatures for all Countries within " + lowRangeTemp + "-" + highRangeTemp, QueryDescriptor.allDataWithinTempRange(lowRangeTemp, highRangeTemp), HEADER));
+				break;
+			}
+			case "C1":
+			{
+				checkFields(fields, 4);
+				int month = Integer.parseInt(fields[1]);
+				int year1 = Integer.parseInt(fields[2]);
+				int year2 = Integer.parseInt(fields[3]);
+				parts.add(new Part("Task C1: The Top 10 Countries with the Largest Temperature Changes in " + analyzer.mapMonthsToStrings(month) + " between " + year1 + " and " + year2,
+						QueryDescriptor.top10TempDelta(month, year1, year2), DELTA_HEADER));
+				break;
+			}
+			default:
+				throw new IllegalArgumentException("Unknown task " + fields[0]);
+		}
+
+		return parts;
+	}
+
+	private static void checkFields(String[] fields, int numFields)
+	{
+		if (fields.length != numFields)
+		{
+			throw new IllegalArgumentException("Task " + fields[0] + " takes " + (numFields - 1) + " parameters but has " + (fields.length - 1));
+		}
+	}
+
+	//
+	// Turns the answer of a query into the list writeDataToFile() takes. A query that found no reading writes no rows.
+	//
+	@SuppressWarnings("unchecked")
+	private static ArrayList<ITemperature> toList(Object result)
+	{
+		ArrayList<ITemperature> data = new ArrayList<ITemperature>();
+		if (result instanceof ITemperature)
+		{
+			data.add((ITemperature) result);
+		}
+		else if (result != null)
+		{
+			data.addAll((Collection<ITemperature>) result);
+		}
+
+		return data;
+	}
+
+	//
+	// One query of a task and the subject header and column header written above its readings.
+	//
+	private static class Part {
+		private String subject;
+		private QueryDescriptor query;
+		private String header;
+
+		private Part(String theSubject, QueryDescriptor theQuery, String theHeader)
+		{
+			subject = theSubject;
+			query = theQuery;
+			header = theHeader;
+		}
+	}
+
+	//
+	// What happened when one line of a job file was run.
+	//
+	public static class TaskResult {
+		private int lineNumber;
+		private String line;
+		private String fileName;
+		private int rows;
+		private long nanos;
+		private Exception error;
+
+		private TaskResult(int theLineNumber, String theLine, String theFileName, int theRows, long theNanos, Exception theError)
+		{
+			lineNumber = theLineNumber;
+			line = theLine;
+			fileName = theFileName;
+			rows = theRows;
+			nanos = theNanos;
+			error = theError;
+		}
+
+		public int getLineNumber()
+		{
+			return lineNumber;
+		}
+
+		public String getLine()
+		{
+			return line;
+		}
+
+		public String getFileName()
+		{
+			return fileName;
+		}
+
+		//
+		// Gets the number of readings written to the output file.
+		//
+		public int getRows()
+		{
+			return rows;
+		}
+
+		//
+		// Gets the wall time of the task, from parsing its line to handing its output to the result sink.
+		//
+		public long getNanos()
+		{
+			return nanos;
+		}
+
+		//
+		// Gets what made the task fail, or null if it succeeded.
+		//
+		public Exception getError()
+		{
+			return error;
+		}
+	}
+
+	//
+	// Loads a weather data file once and runs a job file against it without asking for any input:
+	//
+	//     java climatechange.BatchDriver <data file> <job file> [output directory] [concurrency]
+	//
+	// Results are written on a separate writer thread while the next tasks run. Prints one line per task with the rows it wrote and its
+	// wall time, then a summary of the input rows every task ran against and the result rows written. Exits with status 1 if any task or
+	// write failed.
+	//
+	public static void main(String[] args) throws IOException, InterruptedException
+	{
+		if (args.length < 2)
+		{
+			System.err.println("Usage: java climatechange.BatchDriver <data file> <job file> [output directory] [concurrency]");
+			System.exit(2);
+		}
+
+		String outputDirectory = args.length > 2 ? args[2] : "data";
+		int concurrency = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+		new File(outputDirectory).mkdirs();
+		List<String> jobLines = Files.readAllLines(new File(args[1]).toPath(), Charset.defaultCharset());
+
+		long loadStart = System.nanoTime();
+		ClimateAnalyzer analyzer = new ClimateAnalyzer(args[0]);
+		long loadNanos = System.nanoTime() - loadStart;
+
+		long runStart = System.nanoTime();
+		IResultSink sink = new AsyncResultSink(new BufferedResultSink());
+		ArrayList<TaskResult> results;
+		IOException writeError = null;
+		try
+		{
+			results = new BatchDriver(analyzer, outputDirectory, concurrency, sink).run(jobLines);
+		}
+		finally
+		{
+			try
+			{
+				sink.close();
+			}
+			catch (IOException e)
+			{
+				writeError = e;
+			}
+		}
+		long runNanos = System.nanoTime() - runStart;
+
+		long resultRows = 0;
+		int failures = 0;
+		for (TaskResult result : results)
+		{
+			if (result.getError() == null)
+			{
+				System.out.println(String.format("line %4d  %-40s %8d rows written %10.3f ms  %s", result.getLineNumber(), result.getLine(), result.getRows(), result.getNanos() / 1e6, result.getFileName()));
+				resultRows += result.getRows();
+			}
+			else
+			{
+				System.out.println(String.format("line %4d  %-40s FAILED %10.3f ms  %s", result.getLineNumber(), result.getLine(), result.getNanos() / 1e6, result.getError()));
+				failures++;
+			}
+		}
+
+		System.out.println(String.format("Loaded %d input rows in %.3f ms; ran %d tasks (%d failed) against them on %d threads in %.3f ms and wrote %d result rows",
+				analyzer.getTable().size(), loadNanos / 1e6, results.size(), failures, concurrency, runNanos / 1e6, resultRows));
+		if (writeError != null)
+		{
+			System.out.println("Writing the results failed: " + writeError);
+		}
+		if (failures > 0 || writeError != null)
+		{
+			System.exit(1);
+		}
+	}
+}
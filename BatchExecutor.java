@@ -0,0 +1,79 @@
+package climatechange;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class BatchExecutor {
+	private ITemperatureStore table;
+
+	//
+	// Creates an executor that answers batches of queries over the rows of a table.
+	//
+	public BatchExecutor(ITemperatureStore theTable)
+	{
+		table = theTable;
+	}
+
+	//
+	// Answers every query in one pass over the table, handing each row to the accumulator of every query. The result at position i is what
+	// the IClimateAnalyzer method of query i returns; see QueryDescriptor.getResult().
+	//
+	public ArrayList<Object> execute(List<QueryDescriptor> queries)
+	{
+		IAccumulator<?>[] accumulators = createAccumulators(queries, table.getCountries());
+		int numRows = table.size();
+		for (int row = 0; row < numRows; row++)
+		{
+			double temperature = table.getTemperature(row);
+			int year = table.getYear(row);
+			int month = table.getMonth(row);
+			int countryId = table.getCountryId(row);
+			for (IAccumulator<?> accumulator : accumulators)
+			{
+				accumulator.accept(temperature, year, month, countryId);
+			}
+		}
+
+		return getResults(queries, accumulators);
+	}
+
+	//
+	// Answers every query in one streaming pass over a weather data file, without loading the file into a table first.
+	//
+	public static ArrayList<Object> executeFile(String fileName, List<QueryDescriptor> queries) throws FileNotFoundException, IOException
+	{
+		StreamingAnalyzer analyzer = new StreamingAnalyzer();
+		IAccumulator<?>[] accumulators = createAccumulators(queries, analyzer.getCountries());
+		for (IAccumulator<?> accumulator : accumulators)
+		{
+			analyzer.add(accumulator);
+		}
+
+		analyzer.run(fileName);
+		return getResults(queries, accumulators);
+	}
+
+	private static IAccumulator<?>[] createAccumulators(List<QueryDescriptor> queries, CountryDictionary countries)
+	{
+		IAccumulator<?>[] accumulators = new IAccumulator<?>[queries.size()];
+		for (int i = 0; i < accumulators.length; i++)
+		{
+			accumulators[i] = queries.get(i).createAccumulator(countries);
+		}
+
+		return accumulators;
+	}
+
+	private static ArrayList<Object> getResults(List<QueryDescriptor> queries, IAccumulator<?>[] accumulators)
+	{
+		ArrayList<Object> results = new ArrayList<Object>(accumulators.length);
+		for (int i = 0; i < accumulators.length; i++)
+		{
+			results.add(queries.get(i).getResult(accumulators[i]));
+		}
+
+		return results;
+	}
+}
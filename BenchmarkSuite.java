@@ -0,0 +1,219 @@
+package climatechange;
+
+import java.io.File;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.Callable;
+
+//
+// A smoke benchmark: a quick, single-JVM timing loop over every query, meant to catch order-of-magnitude regressions without a build. The
+// benchmarks to rely on are the JMH benchmarks in benchmarks/, built by the pom.xml into target/benchmarks.jar. Here every benchmark runs in
+// the same JVM one after another, so the JIT profile of one benchmark can speed up or slow down the next, there is no forking to average out
+// JIT and GC decisions, and folding each result into one field is the only guard against dead-code elimination.
+//
+public class BenchmarkSuite {
+	// At most this many latencies are kept per benchmark. Operations past it still count towards the throughput.
+	private static final int MAX_SAMPLES = 1 << 20;
+
+	private com.sun.management.ThreadMXBean threads;
+	private long warmupMillis;
+	private long measureMillis;
+	// Every result is folded into this value, so the JIT compiler cannot drop an operation whose result is never used.
+	private long blackhole;
+
+	//
+	// Creates a suite that runs each benchmark for warmupMillis before it starts measuring, then measures it for measureMillis.
+	//
+	public BenchmarkSuite(long theWarmupMillis, long theMeasureMillis)
+	{
+		threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		warmupMillis = theWarmupMillis;
+		measureMillis = theMeasureMillis;
+	}
+
+	//
+	// Runs every benchmark against one data file: loading it, each query of IClimateAnalyzer, writing results and sorting readings.
+	//
+	public void runAll(String fileName) throws Exception
+	{
+		ArrayList<ITemperature> readings = new WeatherIO().readDataFromFile(fileName);
+		ClimateAnalyzer analyzer = new ClimateAnalyzer(fileName);
+		String country = readings.isEmpty() ? "" : readings.get(readings.size() / 2).getCountry();
+		int firstYear = readings.isEmpty() ? 2000 : readings.get(0).getYear();
+		int lastYear = readings.isEmpty() ? 2000 : readings.get(readings.size() - 1).getYear();
+		int numYears = Math.max(lastYear - firstYear + 1, 1);
+		// The month and year move on with every operation, so no benchmark keeps asking the exact same query.
+		int[] counter = new int[1];
+		ArrayList<ITemperature> writeList = new ArrayList<ITemperature>(readings.subList(0, Math.min(readings.size(), 10000)));
+		// Sorting works on Temperature objects, which are what readDataFromFile() creates.
+		ArrayList<Temperature> temperatures = new ArrayList<Temperature>(readings.size());
+		for (ITemperature temp : readings)
+		{
+			temperatures.add((Temperature) temp);
+		}
+		File writeFile = File.createTempFile("benchmark", ".csv");
+		writeFile.deleteOnExit();
+
+		System.out.println();
+		System.out.println(fileName + ": " + readings.size() + " rows, " + String.format("%.2f", new File(fileName).length() / (1024.0 * 1024.0)) + " MB, country " + country);
+		printHeader();
+
+		measure("WeatherIO.readDataFromFile", () -> new WeatherIO().readDataFromFile(fileName).size());
+		measure("ClimateAnalyzer(fileName)", () -> new ClimateAnalyzer(fileName));
+		measure("A-1 getLowestTempByMonth", () -> analyzer.getLowestTempByMonth(country, nextMonth(counter)));
+		measure("A-1 getHighestTempByMonth", () -> analyzer.getHighestTempByMonth(country, nextMonth(counter)));
+		measure("A-2 getLowestTempByYear", () -> analyzer.getLowestTempByYear(country, firstYear + counter[0]++ % numYears));
+		measure("A-2 getHighestTempByYear", () -> analyzer.getHighestTempByYear(country, firstYear + counter[0]++ % numYears));
+		measure("A-3 getTempWithinRange", () -> analyzer.getTempWithinRange(country, 5, 20).size());
+		measure("A-4 getLowestTempYearByCountry", () -> analyzer.getLowestTempYearByCountry(country));
+		measure("A-4 getHighestTempYearByCountry", () -> analyzer.getHighestTempYearByCountry(country));
+		measure("B-1 allCountriesGetTop10LowestTemp", () -> analyzer.allCountriesGetTop10LowestTemp(nextMonth(counter)).size());
+		measure("B-1 allCountriesGetTop10HighestTemp", () -> analyzer.allCountriesGetTop10HighestTemp(nextMonth(counter)).size());
+		measure("B-2 allCountriesGetTop10LowestTemp", () -> analyzer.allCountriesGetTop10LowestTemp().size());
+		measure("B-2 allCountriesGetTop10HighestTemp", () -> analyzer.allCountriesGetTop10HighestTemp().size());
+		measure("B-3 allCountriesGetAllDataWithinTempRange", () -> analyzer.allCountriesGetAllDataWithinTempRange(10, 20).size());
+		measure("C-1 allCountriesTop10TempDelta", () -> analyzer.allCountriesTop10TempDelta(nextMonth(counter), firstYear, lastYear).size());
+		measure("WeatherIO.writeDataToFile (" + writeList.size() + " rows)", () ->
+		{
+			writeFile.delete(); // writeDataToFile() appends, so the file is started over every time.
+			new WeatherIO().writeDataToFile(writeFile.getPath(), "Benchmark", writeList);
+			return writeFile.length();
+		});
+		measure("Collections.sort (" + readings.size() + " readings)", () ->
+		{
+			ArrayList<Temperature> copy = new ArrayList<Temperature>(temperatures);
+			Collections.sort(copy);
+			return copy.get(0);
+		});
+
+		writeFile.delete();
+	}
+
+	//
+	// Runs an operation over and over, first to warm up the JIT compiler, then to measure it. Prints its throughput, the percentiles of its
+	// latency, the bytes it allocates per operation and how much garbage collection it caused.
+	//
+	public void measure(String name, Callable<?> operation) throws Exception
+	{
+		long warmupEnd = System.nanoTime() + warmupMillis * 1000000L;
+		while (System.nanoTime() < warmupEnd)
+		{
+			consume(operation.call());
+		}
+
+		long[] latencies = new long[1024];
+		int numSamples = 0;
+		long numOperations = 0;
+		long threadId = Thread.currentThread().getId();
+		long gcCountBefore = getGcCount();
+		long gcMillisBefore = getGcMillis();
+		long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+		long start = System.nanoTime();
+		long end = start + measureMillis * 1000000L;
+		long now = start;
+		do
+		{
+			long operationStart = now;
+			consume(operation.call());
+			now = System.nanoTime();
+			numOperations++;
+			if (numSamples < MAX_SAMPLES)
+			{
+				if (numSamples == latencies.length)
+				{
+					latencies = Arrays.copyOf(latencies, numSamples * 2);
+				}
+				latencies[numSamples++] = now - operationStart;
+			}
+		}
+		while (now < end);
+
+		// The latency array itself is allocated by the suite, not the operation, but it only grows log(samples) times.
+		long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+		double seconds = (now - start) / 1e9;
+		long gcCount = getGcCount() - gcCountBefore;
+		long gcMillis = getGcMillis() - gcMillisBefore;
+		Arrays.sort(latencies, 0, numSamples);
+
+		System.out.println(String.format("%-48s %12.1f %10.1f %10.1f %10.1f %10.1f %14.1f %6d %8d", name, numOperations / seconds,
+				percentile(latencies, numSamples, 0.50) / 1e3, percentile(latencies, numSamples, 0.90) / 1e3, percentile(latencies, numSamples, 0.99) / 1e3,
+				latencies[numSamples - 1] / 1e3, (double) allocated / numOperations, gcCount, gcMillis));
+	}
+
+	private static void printHeader()
+	{
+		System.out.println(String.format("%-48s %12s %10s %10s %10s %10s %14s %6s %8s", "Benchmark", "ops/s", "p50 us", "p90 us", "p99 us", "max us",
+				"bytes/op", "GCs", "GC ms"));
+	}
+
+	//
+	// Gets the latency below which the given fraction of the sorted samples fall.
+	//
+	private static long percentile(long[] sortedLatencies, int numSamples, double fraction)
+	{
+		int position = (int) Math.ceil(fraction * numSamples) - 1;
+		return sortedLatencies[Math.max(0, Math.min(position, numSamples - 1))];
+	}
+
+	private static int nextMonth(int[] counter)
+	{
+		return counter[0]++ % 12 + 1;
+	}
+
+	private void consume(Object result)
+	{
+		blackhole += result == null ? 0 : result.hashCode();
+	}
+
+	private static long getGcCount()
+	{
+		long count = 0;
+		for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans())
+		{
+			count += Math.max(collector.getCollectionCount(), 0);
+		}
+
+		return count;
+	}
+
+	private static long getGcMillis()
+	{
+		long millis = 0;
+		for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans())
+		{
+			millis += Math.max(collector.getCollectionTime(), 0);
+		}
+
+		return millis;
+	}
+
+	//
+	// Runs every benchmark on the bundled data file and on copies of it scaled up by each of the given factors.
+	// Arguments: [data file] [comma separated scale factors, default 1,4] [warm-up ms per benchmark] [measured ms per benchmark]
+	//
+	public static void main(String[] args) throws Exception
+	{
+		String fileName = args.length > 0 ? args[0] : "data/world_temp_2000-2016.csv";
+		String[] scales = (args.length > 1 ? args[1] : "1,4").split(",");
+		long warmupMillis = args.length > 2 ? Long.parseLong(args[2]) : 1000;
+		long measureMillis = args.length > 3 ? Long.parseLong(args[3]) : 2000;
+		BenchmarkSuite suite = new BenchmarkSuite(warmupMillis, measureMillis);
+
+		System.out.println("Smoke benchmark in a single JVM, without forking; run target/benchmarks.jar for numbers to rely on");
+		System.out.println("Java " + System.getProperty("java.version") + ", " + Runtime.getRuntime().availableProcessors() + " processors, "
+				+ Runtime.getRuntime().maxMemory() / (1024 * 1024) + " MB heap, " + warmupMillis + " ms warm-up and " + measureMillis + " ms measured per benchmark");
+		for (String scale : scales)
+		{
+			int copies = Integer.parseInt(scale.trim());
+			suite.runAll(copies == 1 ? fileName : DatasetGenerator.writeScaledCopy(fileName, copies).getPath());
+		}
+
+		if (suite.blackhole == 42)
+		{
+			System.out.println(); // Keeps the JIT compiler from dropping the operations.
+		}
+	}
+}
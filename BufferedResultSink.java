@@ -0,0 +1,191 @@
+package climatechange;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.List;
+
+public class BufferedResultSink implements IResultSink {
+	public static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+
+	private Charset charset;
+	private int bufferSize;
+	private TemperatureFormatter formatter;
+	// One open channel and one buffer for each result file, kept until close().
+	private HashMap<String, Output> outputs;
+
+	//
+	// Creates a sink that writes in the default charset, the same charset a FileWriter uses.
+	//
+	public BufferedResultSink()
+	{
+		this(DEFAULT_BUFFER_SIZE);
+	}
+
+	public BufferedResultSink(int theBufferSize)
+	{
+		charset = Charset.defaultCharset();
+		bufferSize = theBufferSize;
+		formatter = new TemperatureFormatter();
+		outputs = new HashMap<String, Output>();
+	}
+
+	@Override
+	public synchronized void writeSubjectHeader(String fileName, String subject) throws IOException
+	{
+		getOutput(fileName).write(subject.getBytes(charset));
+	}
+
+	//
+	// Writes each reading as one row like "21.34(C) 70.42(F), 2005, Jan, Canada, CAN". The rows go into the buffer of the file and only
+	// reach the disk when the buffer is full, so a large result costs a few large writes instead of one write per row. Each row is formatted
+	// by a TemperatureFormatter straight into bytes, without creating any Strings.
+	//
+	@Override
+	public synchronized void writeData(String fileName, String topic, List<? extends ITemperature> theWeatherList) throws IOException
+	{
+		long start = ClimateMetrics.startTimer();
+		Output output = getOutput(fileName);
+		output.write(("\n" + topic + "\n").getBytes(charset));
+		for (ITemperature temp : theWeatherList)
+		{
+			formatter.reset();
+			formatter.appendRow(temp);
+			output.write(formatter.getBuffer(), formatter.getLength());
+		}
+		ClimateMetrics.recordPhase(ClimateMetrics.Phase.RESULT_WRITE, start, theWeatherList.size());
+	}
+
+	@Override
+	public synchronized void closeFile(String fileName) throws IOException
+	{
+		Output output = outputs.remove(fileName);
+		if (output != null)
+		{
+			output.close();
+		}
+	}
+
+	@Override
+	public synchronized void flush() throws IOException
+	{
+		for (Output output : outputs.values())
+		{
+			output.flush();
+		}
+	}
+
+	//
+	// Flushes and closes every file. Every file is closed even if one of them fails, and the first failure is thrown afterwards.
+	//
+	@Override
+	public synchronized void close() throws IOException
+	{
+		IOException error = null;
+		for (Output output : outputs.values())
+		{
+			try
+			{
+				output.close();
+			}
+			catch (IOException e)
+			{
+				if (error == null)
+				{
+					error = e;
+				}
+			}
+		}
+
+		outputs.clear();
+		if (error != null)
+		{
+			throw error;
+		}
+	}
+
+	//
+	// Gets the output of a file, opening the file for appending the first time, like a FileWriter in append mode.
+	//
+	private Output getOutput(String fileName) throws IOException
+	{
+		Output output = outputs.get(fileName);
+		if (output == null)
+		{
+			output = new Output(new FileOutputStream(new File(fileName), true).getChannel(), bufferSize);
+			outputs.put(fileName, output);
+		}
+
+		return output;
+	}
+
+	//
+	// An open file and the bytes waiting to be written to it.
+	//
+	private static class Output {
+		private FileChannel channel;
+		private ByteBuffer buffer;
+
+		private Output(FileChannel theChannel, int bufferSize)
+		{
+			channel = theChannel;
+			buffer = ByteBuffer.allocate(bufferSize);
+		}
+
+		private void write(byte[] bytes) throws IOException
+		{
+			write(bytes, bytes.length);
+		}
+
+		//
+		// Writes the first length bytes of an array.
+		//
+		private void write(byte[] bytes, int length) throws IOException
+		{
+			if (length > buffer.remaining())
+			{
+				flush();
+			}
+
+			if (length > buffer.capacity())
+			{
+				writeFully(ByteBuffer.wrap(bytes, 0, length)); // Too large to buffer, so it is written straight away.
+			}
+			else
+			{
+				buffer.put(bytes, 0, length);
+			}
+		}
+
+		private void flush() throws IOException
+		{
+			buffer.flip();
+			writeFully(buffer);
+			buffer.clear();
+		}
+
+		private void writeFully(ByteBuffer bytes) throws IOException
+		{
+			while (bytes.hasRemaining())
+			{
+				channel.write(bytes);
+			}
+		}
+
+		private void close() throws IOException
+		{
+			try
+			{
+				flush();
+			}
+			finally
+			{
+				channel.close();
+			}
+		}
+	}
+}
@@ -0,0 +1,305 @@
+package climatechange;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+public class CachingClimateAnalyzer implements IClimateAnalyzer {
+	private ClimateAnalyzer analyzer;
+	// The most readings the cached results may hold together. A result with a single reading, or none, counts as one.
+	private long maxWeight;
+	// The cached results from least to most recently used, keyed by the query they answer.
+	private LinkedHashMap<QueryDescriptor, Entry> entries;
+	private long weight;
+	// The modification count of the analyzer when the cached results were computed. Once it changes, every result may be stale.
+	private long modificationCount;
+	private long hits;
+	private long misses;
+	private long evictions;
+	private long invalidations;
+
+	//
+	// Creates a cache in front of an analyzer that holds at most maxWeight readings, throwing out the least recently used results first.
+	//
+	public CachingClimateAnalyzer(ClimateAnalyzer theAnalyzer, long theMaxWeight)
+	{
+		analyzer = theAnalyzer;
+		maxWeight = theMaxWeight;
+		entries = new LinkedHashMap<QueryDescriptor, Entry>(16, 0.75f, true);
+		modificationCount = theAnalyzer.getModificationCount();
+	}
+
+	public ClimateAnalyzer getAnalyzer()
+	{
+		return analyzer;
+	}
+
+	@Override
+	public ITemperature getLowestTempByMonth(String country, int month)
+	{
+		return (ITemperature) get(QueryDescriptor.lowestTempByMonth(country, month));
+	}
+
+	@Override
+	public ITemperature getHighestTempByMonth(String country, int month)
+	{
+		return (ITemperature) get(QueryDescriptor.highestTempByMonth(country, month));
+	}
+
+	@Override
+	public ITemperature getLowestTempByYear(String country, int year)
+	{
+		return (ITemperature) get(QueryDescriptor.lowestTempByYear(country, year));
+	}
+
+	@Override
+	public ITemperature getHighestTempByYear(String country, int year)
+	{
+		return (ITemperature) get(QueryDescriptor.highestTempByYear(country, year));
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public TreeSet<ITemperature> getTempWithinRange(String country, double rangeLowTemp, double rangeHighTemp)
+	{
+		return (TreeSet<ITemperature>) get(QueryDescriptor.tempWithinRange(country, rangeLowTemp, rangeHighTemp));
+	}
+
+	@Override
+	public ITemperature getLowestTempYearByCountry(String country)
+	{
+		return (ITemperature) get(QueryDescriptor.lowestTempYearByCountry(country));
+	}
+
+	@Override
+	public ITemperature getHighestTempYearByCountry(String country)
+	{
+		return (ITemperature) get(QueryDescriptor.highestTempYearByCountry(country));
+	}
+
+	@Override
+	public ArrayList<ITemperature> allCountriesGetTop10LowestTemp(int month)
+	{
+		return getList(QueryDescriptor.top10LowestTemp(month));
+	}
+
+	@Override
+	public ArrayList<ITemperature> allCountriesGetTop10HighestTemp(int month)
+	{
+		return getList(QueryDescriptor.top10HighestTemp(month));
+	}
+
+	@Override
+	public ArrayList<ITemperature> allCountriesGetTop10LowestTemp()
+	{
+		return getList(QueryDescriptor.top10LowestTemp());
+	}
+
+	@Override
+	public ArrayList<ITemperature> allCountriesGetTop10HighestTemp()
+	{
+		return getList(QueryDescriptor.top10HighestTemp());
+	}
+
+	@Override
+	public ArrayList<ITemperature> allCountriesGetAllDataWithinTempRange(double lowRangeTemp, double highRangeTemp)
+	{
+		return getList(QueryDescriptor.allDataWithinTempRange(lowRangeTemp, highRangeTemp));
+	}
+
+	@Override
+	public ArrayList<ITemperature> allCountriesTop10TempDelta(int month, int year1, int year2)
+	{
+		return getList(QueryDescriptor.top10TempDelta(month, year1, year2));
+	}
+
+	//
+	// Runs the interactive analysis on the analyzer itself, since it asks every query only once.
+	//
+	@Override
+	public void runClimateAnalyzer() throws IOException
+	{
+		analyzer.runClimateAnalyzer();
+	}
+
+	//
+	// Answers a query from the cache, or from the analyzer the first time it is asked. The caller always gets its own copy of a list or
+	// set, so changing it cannot change what later callers get. Temperature objects cannot be changed, so they are shared.
+	//
+	public Object get(QueryDescriptor query)
+	{
+		long currentCount = analyzer.getModificationCount();
+		synchronized (this)
+		{
+			invalidateIfModified(currentCount);
+			Entry entry = entries.get(query);
+			if (entry != null)
+			{
+				hits++;
+				return copy(entry.result);
+			}
+
+			misses++;
+		}
+
+		// The query runs without holding the cache, so slow queries do not hold up hits on other threads.
+		Object result = analyzer.runQuery(query);
+		synchronized (this)
+		{
+			// A result computed before an append must not be cached after the append. A result that already sees a later append is only
+			// thrown out a little early, when the next lookup notices the new modification count.
+			invalidateIfModified(analyzer.getModificationCount());
+			if (modificationCount == currentCount && !entries.containsKey(query))
+			{
+				put(query, result);
+			}
+		}
+
+		return copy(result);
+	}
+
+	//
+	// Throws away every cached result.
+	//
+	public synchronized void clear()
+	{
+		entries.clear();
+		weight = 0;
+	}
+
+	public synchronized long getHits()
+	{
+		return hits;
+	}
+
+	public synchronized long getMisses()
+	{
+		return misses;
+	}
+
+	//
+	// Gets the number of results thrown out to make room for newer ones.
+	//
+	public synchronized long getEvictions()
+	{
+		return evictions;
+	}
+
+	//
+	// Gets the number of times the whole cache was thrown out because readings were appended to the analyzer.
+	//
+	public synchronized long getInvalidations()
+	{
+		return invalidations;
+	}
+
+	public synchronized int size()
+	{
+		return entries.size();
+	}
+
+	//
+	// Gets the number of readings the cached results hold together.
+	//
+	public synchronized long getWeight()
+	{
+		return weight;
+	}
+
+	@Override
+	public synchronized String toString()
+	{
+		return "CachingClimateAnalyzer(" + entries.size() + " results, " + weight + "/" + maxWeight + " readings, " + hits + " hits, " + misses + " misses, "
+				+ evictions + " evictions, " + invalidations + " invalidations)";
+	}
+
+	@SuppressWarnings("unchecked")
+	private ArrayList<ITemperature> getList(QueryDescriptor query)
+	{
+		return (ArrayList<ITemperature>) get(query);
+	}
+
+	//
+	// Throws away every cached result if readings were appended since they were computed.
+	//
+	private void invalidateIfModified(long currentCount)
+	{
+		if (currentCount != modificationCount)
+		{
+			if (!entries.isEmpty())
+			{
+				invalidations++;
+			}
+
+			clear();
+			modificationCount = currentCount;
+		}
+	}
+
+	//
+	// Caches a result, then throws out the least recently used results until the cache is back within its weight. A result that is
+	// heavier than the whole cache is not cached at all.
+	//
+	private void put(QueryDescriptor query, Object result)
+	{
+		int resultWeight = getWeight(result);
+		if (resultWeight > maxWeight)
+		{
+			return;
+		}
+
+		entries.put(query, new Entry(result, resultWeight));
+		weight += resultWeight;
+		Iterator<Map.Entry<QueryDescriptor, Entry>> iterator = entries.entrySet().iterator();
+		while (weight > maxWeight && iterator.hasNext())
+		{
+			weight -= iterator.next().getValue().weight;
+			iterator.remove();
+			evictions++;
+		}
+	}
+
+	private static int getWeight(Object result)
+	{
+		if (result instanceof Collection)
+		{
+			return Math.max(((Collection<?>) result).size(), 1);
+		}
+
+		return 1;
+	}
+
+	//
+	// Copies a list or a set so the copy can be handed out without exposing the cached one. A TreeSet is copied with its comparator.
+	//
+	@SuppressWarnings("unchecked")
+	private static Object copy(Object result)
+	{
+		if (result instanceof TreeSet)
+		{
+			return new TreeSet<ITemperature>((SortedSet<ITemperature>) result);
+		}
+		if (result instanceof ArrayList)
+		{
+			return new ArrayList<Object>((ArrayList<?>) result);
+		}
+
+		return result;
+	}
+
+	private static class Entry {
+		private Object result;
+		private int weight;
+
+		private Entry(Object theResult, int theWeight)
+		{
+			result = theResult;
+			weight = theWeight;
+		}
+	}
+}
@@ -3,26 +3,74 @@ package climatechange;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collection;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Scanner;
 import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
 
 public class ClimateAnalyzer implements IClimateAnalyzer {
 	public static final double MAX_TEMPERATURE = -1000.0;
-	
-	private ArrayList<ITemperature> dataValues;
-	
+
+	private ITemperatureStore table;
+	// The rows of each country, or null for a store that is not a TemperatureTable, which is never indexed.
+	private TemperatureIndex index;
+	private AggregateCube cube;
+	private TopKSelector topK;
+	private SortedTemperatureIndex sortedIndex;
+	private DeltaEngine deltaEngine;
+	private DeltaCube deltaCube;
+	// Scans the table on several workers when parallel execution is turned on, or null to scan on the calling thread.
+	private ParallelScanEngine parallelEngine;
+	// Queries hold the read lock and appends hold the write lock, so a query never sees the table, the index and the aggregates halfway
+	// through an append.
+	private ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+	// The number of appends so far, so anything that keeps answers around can tell when they have gone stale.
+	private volatile long modificationCount;
+
 	//
-	// Instantiates a WeatherIO object and calls readDataFromFile() on it, allowing us to access any file we put in and store its contents
-	// in an ArrayList.
+	// Loads any file we put in into a columnar TemperatureTable. The first time a file is loaded, WeatherIO parses it and a binary snapshot
+	// of the table is written next to it. Later loads map the snapshot instead of parsing the file again, as long as the file has not changed.
 	//
 	public ClimateAnalyzer(String fileName) throws FileNotFoundException
 	{
-		WeatherIO data = new WeatherIO();
-		dataValues = data.readDataFromFile(fileName); 					
+		table = TableSnapshot.loadOrParse(fileName);
+		long start = ClimateMetrics.startTimer();
+		index = new TemperatureIndex(table);
+		cube = new AggregateCube(table);
+		topK = new TopKSelector(table);
+		deltaEngine = new DeltaEngine(index);
+		ClimateMetrics.recordPhase(ClimateMetrics.Phase.INDEX_BUILD, start, table.size());
 	}
-	
+
+	//
+	// Analyzes readings that have already been loaded into a TemperatureTable, or that stay in another store such as a MappedTemperatureStore.
+	// Nothing is built per row for a store that is not a TemperatureTable, so it can hold more readings than fit in the heap: the aggregates
+	// only take memory per country, month and year, the range searches and the Task C-1 comparisons scan the rows on every processor, and
+	// readings cannot be appended.
+	//
+	public ClimateAnalyzer(ITemperatureStore theTable)
+	{
+		table = theTable;
+		long start = ClimateMetrics.startTimer();
+		cube = new AggregateCube(table);
+		topK = new TopKSelector(table);
+		if (table instanceof TemperatureTable)
+		{
+			index = new TemperatureIndex(table);
+			deltaEngine = new DeltaEngine(index);
+		}
+		else
+		{
+			deltaEngine = new DeltaEngine(table);
+			parallelEngine = new ParallelScanEngine(table, Runtime.getRuntime().availableProcessors());
+		}
+		ClimateMetrics.recordPhase(ClimateMetrics.Phase.INDEX_BUILD, start, table.size());
+	}
+
 	//
 	// Gets the String value of a month given an integer value. This maps integer values of months to String values of months, so when
 	// the user inputs a numeric value of a month, it can be mapped to a String value, which can be used for comparisons of months in
@@ -30,102 +78,259 @@ public class ClimateAnalyzer implements IClimateAnalyzer {
 	//
 	public String mapMonthsToStrings(int monthNum)
 	{
-		HashMap<Integer, String> integerMonthToStringMonth = new HashMap<Integer, String>();
-		// Each integer key is unique and corresponds to a unique String value.
-		integerMonthToStringMonth.put(1, "Jan");
-		integerMonthToStringMonth.put(2, "Feb");
-		integerMonthToStringMonth.put(3, "Mar");
-		integerMonthToStringMonth.put(4, "Apr");
-		integerMonthToStringMonth.put(5, "May");
-		integerMonthToStringMonth.put(6, "Jun");
-		integerMonthToStringMonth.put(7, "Jul");
-		integerMonthToStringMonth.put(8, "Aug");
-		integerMonthToStringMonth.put(9, "Sep");
-		integerMonthToStringMonth.put(10, "Oct");
-		integerMonthToStringMonth.put(11, "Nov");
-		integerMonthToStringMonth.put(12, "Dec");
-		
-		String monthString = integerMonthToStringMonth.get(monthNum);
-		return monthString;
+		return Months.toString(monthNum); // Returns null for a number that is not a month, the same way a lookup of a missing key would.
 	}
-	
+
 	//
-	// Gets the lowest temperature reading for a specific country in a given month.
+	// Gets the index of the rows of each country, (country, month) pair and (country, year) pair, or null for a store that is not a
+	// TemperatureTable.
 	//
-	@Override
-	public ITemperature getLowestTempByMonth(String country, int month) {
-		double minTemperature = Double.MAX_VALUE; // Initial minimum temperature.
-		ITemperature tempObject = null;
-		for (ITemperature value : dataValues)
+	public TemperatureIndex getIndex()
+	{
+		return index;
+	}
+
+	//
+	// Gets the min, max, count and sum of the readings of each country, (country, month) pair and (country, year) pair.
+	//
+	public AggregateCube getCube()
+	{
+		return cube;
+	}
+
+	//
+	// Gets the rows sorted by temperature, building them the first time a range query needs them. The sorted rows take memory per row,
+	// even for a store that is not a TemperatureTable, whose range queries otherwise scan.
+	//
+	public synchronized SortedTemperatureIndex getSortedIndex()
+	{
+		if (sortedIndex == null)
+		{
+			sortedIndex = new SortedTemperatureIndex(table);
+		}
+
+		return sortedIndex;
+	}
+
+	//
+	// Turns on a delta cube that keeps the average temperature of every (country, year, month) so that Task C-1 comparisons for any pair of
+	// years skip the raw readings. Each month is built the first time it is asked for, and months that would take the cube over maxBytes
+	// are answered from the readings instead. Needs the index, so it cannot be turned on for a store that is not a TemperatureTable.
+	//
+	public synchronized void enableDeltaCube(long maxBytes)
+	{
+		if (index == null)
+		{
+			throw new IllegalStateException("A delta cube can only be built over a TemperatureTable");
+		}
+
+		deltaCube = new DeltaCube(index, maxBytes);
+	}
+
+	//
+	// Gets the delta cube, or null if it has not been turned on.
+	//
+	public synchronized DeltaCube getDeltaCube()
+	{
+		return deltaCube;
+	}
+
+	//
+	// Turns parallel execution on with the given number of workers, or off for a parallelism of 1 or less. With parallel execution, the
+	// Task B searches scan ranges of rows on a ForkJoinPool and merge the partial results, which gives exactly the same answers in the same
+	// order as scanning on the calling thread. A store that is not a TemperatureTable always scans, on one worker for a parallelism of 1.
+	//
+	public void setParallelism(int parallelism)
+	{
+		lock.writeLock().lock();
+		try
 		{
-			// Checks if the country name for each value in dataValues is equal to the user input country name and if the month for 
-			// each value in dataValues is equal to the user input month.
-			if (value.getCountry().equals(country) && value.getMonth().equals(mapMonthsToStrings(month)))
+			if (parallelEngine != null)
 			{
-				double temperature = value.getTemperature(false);
-				if (temperature < minTemperature) // Checks if the value's temperature is less than the current minimum temperature.
-				{
-					minTemperature = temperature; // Updates the minimum temperature.
-					tempObject = new Temperature(minTemperature, value.getYear(), value.getMonth(), country, value.getCountry3LetterCode());
-					// Updates the tempObject whenever a new minimum temperature is found.
-				}
+				parallelEngine.shutdown();
 			}
+
+			parallelEngine = parallelism > 1 || index == null ? new ParallelScanEngine(table, Math.max(parallelism, 1)) : null;
+		}
+		finally
+		{
+			lock.writeLock().unlock();
 		}
+	}
 
-		return tempObject;
+	//
+	// Gets the number of workers queries are run on, which is 1 when parallel execution is off.
+	//
+	public int getParallelism()
+	{
+		return read(() -> parallelEngine == null ? 1 : parallelEngine.getParallelism());
 	}
 
 	//
-	// Gets the highest temperature reading for a specific country in a given month.
+	// Gets the table or store that holds all of the readings being analyzed.
 	//
-	@Override
-	public ITemperature getHighestTempByMonth(String country, int month) {
-		double maxTemperature = MAX_TEMPERATURE; // Initial maximum temperature. Double.MIN_VALUE is positive, so it is greater than negative temperatures,
-										 // and the maximum temperature would not be updated then. This is why I did not use Double.MIN_VALUE.
-		ITemperature tempObject = null;
-		for (ITemperature value : dataValues)
-		{
-			// Checks if the country name for each value in dataValues is equal to the user input country name and if the month for 
-			// each value in dataValues is equal to the user input month.
-			if (value.getCountry().equals(country) && value.getMonth().equals(mapMonthsToStrings(month)))
+	public ITemperatureStore getTable()
+	{
+		return table;
+	}
+
+	//
+	// Adds a new reading. The index, the aggregates and the sorted rows are updated in place, so the next query sees the reading right away
+	// without loading the file again.
+	//
+	public void append(ITemperature value)
+	{
+		lock.writeLock().lock();
+		try
+		{
+			int start = table.size();
+			getWritableTable().add(value);
+			indexNewRows(start);
+		}
+		finally
+		{
+			lock.writeLock().unlock();
+		}
+	}
+
+	//
+	// Adds new readings as one batch. Queries see either none or all of them.
+	//
+	public void appendAll(Collection<? extends ITemperature> values)
+	{
+		lock.writeLock().lock();
+		try
+		{
+			TemperatureTable writableTable = getWritableTable();
+			int start = table.size();
+			for (ITemperature value : values)
 			{
-				double temperature = value.getTemperature(false);
-				if (temperature > maxTemperature) // Checks if the value's temperature is greater than the current maximum temperature.
-				{
-					maxTemperature = temperature; // Updates the maximum temperature.
-					tempObject = new Temperature(maxTemperature, value.getYear(), value.getMonth(), country, value.getCountry3LetterCode());
-					// Updates the tempObject whenever a new maximum temperature is found.
-				}
+				writableTable.add(value);
 			}
+			indexNewRows(start);
+		}
+		finally
+		{
+			lock.writeLock().unlock();
 		}
-				
-		return tempObject;
 	}
 
 	//
-	// Gets the lowest temperature reading for a specific country in a given year.
+	// Adds every row of another table as one batch, such as the new lines a FileTailer has read from the end of a file.
 	//
-	@Override
-	public ITemperature getLowestTempByYear(String country, int year) {
-		double minTemperature = Double.MAX_VALUE; // Initial minimum temperature.
-		ITemperature tempObject = null;
-		for (ITemperature value : dataValues)
+	public void appendAll(TemperatureTable readings)
+	{
+		lock.writeLock().lock();
+		try
+		{
+			int start = table.size();
+			getWritableTable().appendAll(readings);
+			indexNewRows(start);
+		}
+		finally
+		{
+			lock.writeLock().unlock();
+		}
+	}
+
+	//
+	// Gets the number of appends so far. The count changes every time the answer to a query might have changed.
+	//
+	public long getModificationCount()
+	{
+		return modificationCount;
+	}
+
+	//
+	// Gets the table readings are appended to. Throws an UnsupportedOperationException for a store that is not a TemperatureTable, since
+	// neither the store nor an index over it can grow.
+	//
+	private TemperatureTable getWritableTable()
+	{
+		if (index == null)
 		{
-			// Checks if the country name for each value in dataValues is equal to the user input country name and if the year for 
-			// each value in dataValues is equal to the user input year.
-			if (value.getCountry().equals(country) && value.getYear() == year)
+			throw new UnsupportedOperationException("Readings can only be appended to a TemperatureTable");
+		}
+
+		return (TemperatureTable) table;
+	}
+
+	//
+	// Brings everything that is built over the table up to date with the rows from start on. Must be called with the write lock held.
+	//
+	private void indexNewRows(int start)
+	{
+		if (start == table.size())
+		{
+			return;
+		}
+
+		index.addRows(start, table.size());
+		cube.addRows(start, table.size());
+		synchronized (this)
+		{
+			if (sortedIndex != null)
+			{
+				sortedIndex.addRows(start, table.size());
+			}
+			if (deltaCube != null)
 			{
-				double temperature = value.getTemperature(false);
-				if (temperature < minTemperature) // Checks if the value's temperature is less than the current minimum temperature.
-				{
-					minTemperature = temperature; // Updates the minimum temperature.
-					tempObject = new Temperature(minTemperature, year, value.getMonth(), country, value.getCountry3LetterCode());
-					// Updates the tempObject whenever a new minimum temperature is found.
-				}
+				deltaCube = new DeltaCube(index, deltaCube.getMaxBytes()); // The averages of the months are built again when they are next used.
 			}
 		}
-				
-		return tempObject;	
+		modificationCount++;
+	}
+
+	//
+	// Runs one of the IClimateAnalyzer queries while holding the read lock, and records how long it took and how many readings it answered
+	// with in ClimateMetrics.
+	//
+	private <T> T read(QueryDescriptor.Type type, Supplier<T> query)
+	{
+		long start = ClimateMetrics.startTimer();
+		T result = read(query);
+		ClimateMetrics.recordQuery(type, start, result == null ? 0 : result instanceof Collection ? ((Collection<?>) result).size() : 1);
+		return result;
+	}
+
+	//
+	// Runs a query while holding the read lock, so no append can happen halfway through it.
+	//
+	private <T> T read(Supplier<T> query)
+	{
+		lock.readLock().lock();
+		try
+		{
+			return query.get();
+		}
+		finally
+		{
+			lock.readLock().unlock();
+		}
+	}
+
+	//
+	// Gets the lowest temperature reading for a specific country in a given month.
+	//
+	@Override
+	public ITemperature getLowestTempByMonth(String country, int month) {
+		return read(QueryDescriptor.Type.LOWEST_TEMP_BY_MONTH, () -> findLowestTemperature(AggregateCube.Dimension.COUNTRY_MONTH, country, month));
+	}
+
+	//
+	// Gets the highest temperature reading for a specific country in a given month.
+	//
+	@Override
+	public ITemperature getHighestTempByMonth(String country, int month) {
+		return read(QueryDescriptor.Type.HIGHEST_TEMP_BY_MONTH, () -> findHighestTemperature(AggregateCube.Dimension.COUNTRY_MONTH, country, month));
+	}
+
+	//
+	// Gets the lowest temperature reading for a specific country in a given year.
+	//
+	@Override
+	public ITemperature getLowestTempByYear(String country, int year) {
+		return read(QueryDescriptor.Type.LOWEST_TEMP_BY_YEAR, () -> findLowestTemperature(AggregateCube.Dimension.COUNTRY_YEAR, country, year));
 	}
 
 	//
@@ -133,26 +338,7 @@ public class ClimateAnalyzer implements IClimateAnalyzer {
 	//
 	@Override
 	public ITemperature getHighestTempByYear(String country, int year) {
-		double maxTemperature = MAX_TEMPERATURE; // Initial maximum temperature. Double.MIN_VALUE is positive, so it is greater than negative temperatures,
-		 								// and the maximum temperature would not be updated then. This is why I did not use Double.MIN_VALUE.
-		ITemperature tempObject = null;
-		for (ITemperature value : dataValues)
-		{
-			// Checks if the country name for each value in dataValues is equal to the user input country name and if the year for 
-			// each value in dataValues is equal to the user input year.
-			if (value.getCountry().equals(country) && value.getYear() == year)
-			{
-				double temperature = value.getTemperature(false);
-				if (temperature > maxTemperature) // Checks if the value's temperature is greater than the current maximum temperature.
-				{
-					maxTemperature = temperature; // Updates the maximum temperature.
-					tempObject = new Temperature(maxTemperature, year, value.getMonth(), country, value.getCountry3LetterCode());
-					// Updates the tempObject whenever a new maximum temperature is found.
-				}
-			}
-		}
-				
-		return tempObject;	
+		return read(QueryDescriptor.Type.HIGHEST_TEMP_BY_YEAR, () -> findHighestTemperature(AggregateCube.Dimension.COUNTRY_YEAR, country, year));
 	}
 
 	//
@@ -160,19 +346,22 @@ public class ClimateAnalyzer implements IClimateAnalyzer {
 	//
 	@Override
 	public TreeSet<ITemperature> getTempWithinRange(String country, double rangeLowTemp, double rangeHighTemp) {
-		TreeSet<ITemperature> tempsInRange = new TreeSet<ITemperature>();
-		for (ITemperature value : dataValues)
-		{
-			// Checks if the country name for each value in dataValues is equal to the user input country name and if the temperature for
-			// each value in dataValues falls within the user input temperature ranges.
-			if (value.getCountry().equals(country) && (value.getTemperature(false) >= rangeLowTemp && value.getTemperature(false) <= rangeHighTemp))
+		return read(QueryDescriptor.Type.TEMP_WITHIN_RANGE, () -> {
+			// Two binary searches in the sorted rows of the user input country find the rows within the
+			// user input temperature range.
+			int countryId = table.getCountries().getId(country);
+			boolean parallelScan = useParallelScan();
+			int[] rows = parallelScan ? parallelEngine.findRowsWithinRange(countryId, rangeLowTemp, rangeHighTemp)
+					: getSortedIndex().findRowsWithinRange(countryId, rangeLowTemp, rangeHighTemp);
+			ClimateMetrics.addRowsScanned(QueryDescriptor.Type.TEMP_WITHIN_RANGE, parallelScan ? table.size() : rows.length);
+			TreeSet<ITemperature> tempsInRange = new TreeSet<ITemperature>();
+			for (int row : rows)
 			{
-				ITemperature values = new Temperature(value.getTemperature(false), value.getYear(), value.getMonth(), country, value.getCountry3LetterCode());
-				tempsInRange.add(values); // Adds the values object to the tempsInRange TreeSet. This is sorted from lowest to highest temperature.
+				tempsInRange.add(table.toTemperature(row)); // Adds the row to the tempsInRange TreeSet, sorted from lowest to highest temperature.
 			}
-		}
-		
-		return tempsInRange;
+
+			return tempsInRange;
+		});
 	}
 
 	//
@@ -180,24 +369,7 @@ public class ClimateAnalyzer implements IClimateAnalyzer {
 	//
 	@Override
 	public ITemperature getLowestTempYearByCountry(String country) {
-		double minTemperature = Double.MAX_VALUE; // Initial minimum temperature.
-		ITemperature tempObject = null;
-		for (ITemperature value : dataValues)
-		{
-			// Checks if the country name for each value in dataValues is equal to the user input country name.
-			if (value.getCountry().equals(country))
-			{
-				double temperature = value.getTemperature(false);
-				if (temperature < minTemperature) // Checks if the value's temperature is less than the current minimum temperature.
-				{
-					minTemperature = temperature; // Updates the minimum temperature.
-					tempObject = new Temperature(minTemperature, value.getYear(), value.getMonth(), country, value.getCountry3LetterCode());
-					// Updates the tempObject whenever a new minimum temperature is found.
-				}
-			}
-		}
-				
-		return tempObject;
+		return read(QueryDescriptor.Type.LOWEST_TEMP_YEAR_BY_COUNTRY, () -> findLowestTemperature(AggregateCube.Dimension.COUNTRY, country, 0));
 	}
 
 	//
@@ -205,25 +377,7 @@ public class ClimateAnalyzer implements IClimateAnalyzer {
 	//
 	@Override
 	public ITemperature getHighestTempYearByCountry(String country) {
-		double maxTemperature = MAX_TEMPERATURE; // Initial maximum temperature. Double.MIN_VALUE is positive, so it is greater than negative temperatures,
-										// and the maximum temperature would not be updated then. This is why I did not use Double.MIN_VALUE.
-		ITemperature tempObject = null;
-		for (ITemperature value : dataValues)
-		{
-			// Checks if the country name for each value in dataValues is equal to the user input country name.
-			if (value.getCountry().equals(country))
-			{
-				double temperature = value.getTemperature(false);
-				if (temperature > maxTemperature) // Checks if the value's temperature is greater than the current maximum temperature.
-				{
-					maxTemperature = temperature; // Updates the maximum temperature.
-					tempObject = new Temperature(maxTemperature, value.getYear(), value.getMonth(), country, value.getCountry3LetterCode());
-					// Updates the tempObject whenever a new maximum temperature is found.
-				}
-			}
-		}
-				
-		return tempObject;
+		return read(QueryDescriptor.Type.HIGHEST_TEMP_YEAR_BY_COUNTRY, () -> findHighestTemperature(AggregateCube.Dimension.COUNTRY, country, 0));
 	}
 
 	//
@@ -231,43 +385,15 @@ public class ClimateAnalyzer implements IClimateAnalyzer {
 	//
 	@Override
 	public ArrayList<ITemperature> allCountriesGetTop10LowestTemp(int month) {
-		ArrayList<ITemperature> top10LowestTemps = new ArrayList<ITemperature>();
-		ArrayList<ITemperature> allTemps = new ArrayList<ITemperature>();
-		ArrayList<String> duplicateCountries = new ArrayList<String>();		
-		int counter = 0;
-		
-		for (ITemperature value : dataValues)
-		{
-			// Checks if the month for each value in dataValues is equal to the user input month.
-			if (value.getMonth().equals(mapMonthsToStrings(month)))
-			{
-				ITemperature temp = new Temperature(value.getTemperature(false), value.getYear(), mapMonthsToStrings(month), value.getCountry(), value.getCountry3LetterCode());
-				allTemps.add(temp); // Adds the temp object to allTemps ArrayList.
-			}
-		}
-				
-		TreeSet<ITemperature> ordered = new TreeSet<ITemperature>(allTemps);
-		ArrayList<ITemperature> ordered2 = new ArrayList<ITemperature>(ordered);
-		
-		// Finds the top 10 unique countries with the lowest temperatures.
-		for (ITemperature temp1 : ordered2)
-		{
-			// Checks if a country's data has not already been used by seeing if duplicateCountries does not contain the name of the country.
-			if (!duplicateCountries.contains(temp1.getCountry()))
+		return read(QueryDescriptor.Type.TOP_10_LOWEST_TEMP_BY_MONTH, () -> {
+			if (Months.toString(month) == null)
 			{
-				counter++;
-				top10LowestTemps.add(temp1);
-				duplicateCountries.add(temp1.getCountry()); // Adds the name of the country to duplicateCountries.
-				
-				if (counter == 10)
-				{
-					break; // Immediately terminates the for loop when 10 unique countries and their lowest temperatures are found.
-				}
+				return new ArrayList<ITemperature>(); // No reading matches a month outside of 1 to 12.
 			}
-						
-		}
-		
-		return top10LowestTemps;
+
+			ClimateMetrics.addRowsScanned(QueryDescriptor.Type.TOP_10_LOWEST_TEMP_BY_MONTH, table.size());
+			return selectTopK(10, month, TopKSelector.ANY_YEAR, false);
+		});
 	}
 
 	//
@@ -275,48 +401,15 @@ public class ClimateAnalyzer implements IClimateAnalyzer {
 	//
 	@Override
 	public ArrayList<ITemperature> allCountriesGetTop10HighestTemp(int month) {
-		ArrayList<ITemperature> top10HighestTemps = new ArrayList<ITemperature>();
-		ArrayList<ITemperature> allTemps = new ArrayList<ITemperature>();
-		ArrayList<String> duplicateCountries = new ArrayList<String>();
-		int counter = 0;
-		
-		for (ITemperature value : dataValues)
-		{
-			// Checks if the month for each value in dataValues is equal to the user input month.
-			if (value.getMonth().equals(mapMonthsToStrings(month)))
-			{
-				ITemperature temp = new Temperature(value.getTemperature(false), value.getYear(), mapMonthsToStrings(month), value.getCountry(), value.getCountry3LetterCode());
-				allTemps.add(temp); // Adds the temp object to allTemps ArrayList.			 
-			}
-			
-		}
-		
-		TreeSet<ITemperature> ascending_sorted = new TreeSet<ITemperature>(allTemps);
-		TreeSet<ITemperature> descending_sorted = (TreeSet<ITemperature>)ascending_sorted.descendingSet();
-		ArrayList<ITemperature> descending_ArrayList = new ArrayList<ITemperature>(descending_sorted);
-		
-		// Finds the top 10 unique countries with the highest temperatures.
-		for (ITemperature temp1 : descending_ArrayList)
-		{
-			// Checks if a country's data has not already been used by seeing if duplicateCountries does not contain the name of the country.
-			if (!duplicateCountries.contains(temp1.getCountry()))
+		return read(QueryDescriptor.Type.TOP_10_HIGHEST_TEMP_BY_MONTH, () -> {
+			if (Months.toString(month) == null)
 			{
-				counter++;
-				top10HighestTemps.add(temp1);
-				duplicateCountries.add(temp1.getCountry()); // Adds the name of the country to duplicateCountries.
-				
-				if (counter == 10)
-				{
-					break; // Immediately terminates the for loop when 10 unique countries and their highest temperatures are found.
-				}
+				return new ArrayList<ITemperature>(); // No reading matches a month outside of 1 to 12.
 			}
-						
-		}
-		
-		TreeSet<ITemperature> top10HighestTemps_ordered = new TreeSet<ITemperature>(top10HighestTemps);
-		ArrayList<ITemperature> top10HighestTemps_orderedArrayList = new ArrayList<ITemperature>(top10HighestTemps_ordered);
-		
-		return top10HighestTemps_orderedArrayList;
+
+			ClimateMetrics.addRowsScanned(QueryDescriptor.Type.TOP_10_HIGHEST_TEMP_BY_MONTH, table.size());
+			return selectTopK(10, month, TopKSelector.ANY_YEAR, true);
+		});
 	}
 
 	//
@@ -324,40 +417,10 @@ public class ClimateAnalyzer implements IClimateAnalyzer {
 	//
 	@Override
 	public ArrayList<ITemperature> allCountriesGetTop10LowestTemp() {
-		ArrayList<ITemperature> top10LowestTemps = new ArrayList<ITemperature>();
-		ArrayList<ITemperature> allTemps = new ArrayList<ITemperature>();
-		ArrayList<String> duplicateCountries = new ArrayList<String>();		
-		int counter = 0;
-		
-		for (ITemperature value : dataValues)
-		{
-			
-			ITemperature temp = new Temperature(value.getTemperature(false), value.getYear(), value.getMonth(), value.getCountry(), value.getCountry3LetterCode());
-			allTemps.add(temp);	// Adds every temp object to allTemps ArrayList.		
-		}
-				
-		TreeSet<ITemperature> ordered = new TreeSet<ITemperature>(allTemps);
-		ArrayList<ITemperature> ordered2 = new ArrayList<ITemperature>(ordered);
-		
-		// Finds the top 10 unique countries with the lowest temperatures.
-		for (ITemperature temp1 : ordered2)
-		{
-			// Checks if a country's data has not already been used by seeing if duplicateCountries does not contain the name of the country.
-			if (!duplicateCountries.contains(temp1.getCountry()))
-			{
-				counter++;
-				top10LowestTemps.add(temp1);
-				duplicateCountries.add(temp1.getCountry()); // Adds the name of the country to duplicateCountries.
-				
-				if (counter == 10)
-				{
-					break; // Immediately terminates the for loop when 10 unique countries and their lowest temperatures are found.
-				}
-			}
-						
-		}
-		
-		return top10LowestTemps;
+		return read(QueryDescriptor.Type.TOP_10_LOWEST_TEMP, () -> {
+			ClimateMetrics.addRowsScanned(QueryDescriptor.Type.TOP_10_LOWEST_TEMP, table.size());
+			return selectTopK(10, TopKSelector.ANY_MONTH, TopKSelector.ANY_YEAR, false);
+		});
 	}
 
 	//
@@ -365,43 +428,28 @@ public class ClimateAnalyzer implements IClimateAnalyzer {
 	//
 	@Override
 	public ArrayList<ITemperature> allCountriesGetTop10HighestTemp() {
-		ArrayList<ITemperature> top10HighestTemps = new ArrayList<ITemperature>();
-		ArrayList<ITemperature> allTemps = new ArrayList<ITemperature>();
-		ArrayList<String> duplicateCountries = new ArrayList<String>();
-		int counter = 0;
-		
-		for (ITemperature value : dataValues)
-		{
-			ITemperature temp = new Temperature(value.getTemperature(false), value.getYear(), value.getMonth(), value.getCountry(), value.getCountry3LetterCode());
-			allTemps.add(temp);	// Adds the temp object to allTemps ArrayList.				
-		}
-		
-		TreeSet<ITemperature> ascending_sorted = new TreeSet<ITemperature>(allTemps);
-		TreeSet<ITemperature> descending_sorted = (TreeSet<ITemperature>)ascending_sorted.descendingSet();
-		ArrayList<ITemperature> descending_ArrayList = new ArrayList<ITemperature>(descending_sorted);
-		
-		// Finds the top 10 unique countries with the highest temperatures.
-		for (ITemperature temp1 : descending_ArrayList)
-		{
-			// Checks if a country's data has not already been used by seeing if duplicateCountries does not contain the name of the country.
-			if (!duplicateCountries.contains(temp1.getCountry()))
-			{
-				counter++;
-				top10HighestTemps.add(temp1);
-				duplicateCountries.add(temp1.getCountry()); // Adds the name of the country to duplicateCountries.
-				
-				if (counter == 10)
-				{
-					break; // Immediately terminates the for loop when 10 unique countries and their highest temperatures are found.
-				}
-			}
-						
-		}
-		
-		TreeSet<ITemperature> top10HighestTemps_ordered = new TreeSet<ITemperature>(top10HighestTemps);
-		ArrayList<ITemperature> top10HighestTemps_orderedArrayList = new ArrayList<ITemperature>(top10HighestTemps_ordered);
-		
-		return top10HighestTemps_orderedArrayList;	
+		return read(QueryDescriptor.Type.TOP_10_HIGHEST_TEMP, () -> {
+			ClimateMetrics.addRowsScanned(QueryDescriptor.Type.TOP_10_HIGHEST_TEMP, table.size());
+			return selectTopK(10, TopKSelector.ANY_MONTH, TopKSelector.ANY_YEAR, true);
+		});
+	}
+
+	//
+	// Gets the k countries with the lowest temperature readings, sorted from lowest to highest temperature. Only readings of the given month
+	// and year are considered, unless TopKSelector.ANY_MONTH or TopKSelector.ANY_YEAR is passed.
+	//
+	public ArrayList<ITemperature> allCountriesGetTopKLowestTemp(int k, int month, int year)
+	{
+		return read(() -> selectTopK(k, month, year, false));
+	}
+
+	//
+	// Gets the k countries with the highest temperature readings, sorted from lowest to highest temperature. Only readings of the given month
+	// and year are considered, unless TopKSelector.ANY_MONTH or TopKSelector.ANY_YEAR is passed.
+	//
+	public ArrayList<ITemperature> allCountriesGetTopKHighestTemp(int k, int month, int year)
+	{
+		return read(() -> selectTopK(k, month, year, true));
 	}
 
 	//
@@ -409,22 +457,40 @@ public class ClimateAnalyzer implements IClimateAnalyzer {
 	//
 	@Override
 	public ArrayList<ITemperature> allCountriesGetAllDataWithinTempRange(double lowRangeTemp, double highRangeTemp) {
-		ArrayList<ITemperature> tempsInRange = new ArrayList<ITemperature>();
-		
-		for (ITemperature value : dataValues)
-		{
-			// Checks if each value's temperature in dataValues is within the temperature range of the user input.
-			if (value.getTemperature(false) >= lowRangeTemp && value.getTemperature(false) <= highRangeTemp)
+		return read(QueryDescriptor.Type.ALL_DATA_WITHIN_TEMP_RANGE, () -> {
+			// Two binary searches in the sorted rows find the rows within the user input temperature range, which are already sorted from
+			// lowest to highest temperature.
+			boolean parallelScan = useParallelScan();
+			int[] rows = parallelScan ? parallelEngine.findRowsWithinRange(lowRangeTemp, highRangeTemp)
+					: getSortedIndex().findRowsWithinRange(lowRangeTemp, highRangeTemp);
+			ClimateMetrics.addRowsScanned(QueryDescriptor.Type.ALL_DATA_WITHIN_TEMP_RANGE, parallelScan ? table.size() : rows.length);
+			ArrayList<ITemperature> tempsInRange = new ArrayList<ITemperature>(rows.length);
+			for (int row : rows)
 			{
-				ITemperature values = new Temperature(value.getTemperature(false), value.getYear(), value.getMonth(), value.getCountry(), value.getCountry3LetterCode());
-				tempsInRange.add(values); // Adds the values object to tempsInRange ArrayList.
+				tempsInRange.add(table.toTemperature(row));
 			}
-		}
-		
-		TreeSet<ITemperature> ordered = new TreeSet<ITemperature>(tempsInRange);
-		ArrayList<ITemperature> ordered2 = new ArrayList<ITemperature>(ordered);
-		
-		return ordered2;
+
+			return tempsInRange;
+		});
+	}
+
+	//
+	// Iterates over all temperature data for a specific country within a temperature range from lowest to highest temperature, without
+	// holding all of it in memory at once. The iterator keeps walking the readings that were there when it was created, even if more are
+	// appended while it is in use. Each step takes the read lock, so an append waits for it rather than changing the table under it.
+	//
+	public Iterator<ITemperature> iterateTempWithinRange(String country, double rangeLowTemp, double rangeHighTemp)
+	{
+		return new LockedIterator(read(() -> getSortedIndex().iterateWithinRange(table.getCountries().getId(country), rangeLowTemp, rangeHighTemp)));
+	}
+
+	//
+	// Iterates over all temperature data for all countries within a temperature range from lowest to highest temperature, without holding
+	// all of it in memory at once. Like iterateTempWithinRange(), it does not see readings appended after it was created.
+	//
+	public Iterator<ITemperature> iterateAllDataWithinTempRange(double lowRangeTemp, double highRangeTemp)
+	{
+		return new LockedIterator(read(() -> getSortedIndex().iterateWithinRange(lowRangeTemp, highRangeTemp)));
 	}
 
 	//
@@ -432,35 +498,184 @@ public class ClimateAnalyzer implements IClimateAnalyzer {
 	//
 	@Override
 	public ArrayList<ITemperature> allCountriesTop10TempDelta(int month, int year1, int year2) {
-		ArrayList<ITemperature> allTemps = new ArrayList<ITemperature>();
-		TreeSet<ITemperature> orderedDeltaTemps = new TreeSet<ITemperature>();
-		
-		for (ITemperature temp : dataValues)
+		return read(QueryDescriptor.Type.TOP_10_TEMP_DELTA, () -> findTopNTempDelta(QueryDescriptor.Type.TOP_10_TEMP_DELTA, 10, month, year1, year2));
+	}
+
+	//
+	// Gets the n countries with the largest change in temperature in the same month between two different years, sorted from lowest to
+	// highest change.
+	//
+	public ArrayList<ITemperature> allCountriesTopNTempDelta(int n, int month, int year1, int year2)
+	{
+		return read(() -> findTopNTempDelta(null, n, month, year1, year2));
+	}
+
+	//
+	// Gets the n countries with the largest change in temperature between two different years for each of the 12 months, computed together.
+	// The list at position 0 holds January.
+	//
+	public ArrayList<ArrayList<ITemperature>> allMonthsTopNTempDelta(int n, int year1, int year2)
+	{
+		return read(() -> deltaEngine.getTopDeltasForAllMonths(year1, year2, n));
+	}
+
+	//
+	// Fits the warming trend of every country in every month and over the whole year, in parallel across the countries. It uses as many
+	// workers as setParallelism() set, or one per available processor if parallel scans are off. Unlike allCountriesTop10TempDelta(), which
+	// compares two years, the trends use every year of the data.
+	//
+	public TrendAnalyzer analyzeTrends()
+	{
+		return read(() -> new TrendAnalyzer(table, parallelEngine == null ? Runtime.getRuntime().availableProcessors() : parallelEngine.getParallelism()));
+	}
+
+	//
+	// Answers one query with the IClimateAnalyzer method it stands for, so it is answered from the index, the aggregates or the sorted
+	// rows instead of a scan. Returns whatever that method returns.
+	//
+	public Object runQuery(QueryDescriptor query)
+	{
+		switch (query.getType())
 		{
-			if ((temp.getMonth().equals(mapMonthsToStrings(month)) && temp.getYear() == year1) || (temp.getMonth().equals(mapMonthsToStrings(month)) && temp.getYear() == year2))
-			{
-				allTemps.add(temp);
-			}
+			case LOWEST_TEMP_BY_MONTH:
+				return getLowestTempByMonth(query.getCountry(), query.getMonth());
+			case HIGHEST_TEMP_BY_MONTH:
+				return getHighestTempByMonth(query.getCountry(), query.getMonth());
+			case LOWEST_TEMP_BY_YEAR:
+				return getLowestTempByYear(query.getCountry(), query.getYear());
+			case HIGHEST_TEMP_BY_YEAR:
+				return getHighestTempByYear(query.getCountry(), query.getYear());
+			case TEMP_WITHIN_RANGE:
+				return getTempWithinRange(query.getCountry(), query.getLowTemp(), query.getHighTemp());
+			case LOWEST_TEMP_YEAR_BY_COUNTRY:
+				return getLowestTempYearByCountry(query.getCountry());
+			case HIGHEST_TEMP_YEAR_BY_COUNTRY:
+				return getHighestTempYearByCountry(query.getCountry());
+			case TOP_10_LOWEST_TEMP_BY_MONTH:
+				return allCountriesGetTop10LowestTemp(query.getMonth());
+			case TOP_10_HIGHEST_TEMP_BY_MONTH:
+				return allCountriesGetTop10HighestTemp(query.getMonth());
+			case TOP_10_LOWEST_TEMP:
+				return allCountriesGetTop10LowestTemp();
+			case TOP_10_HIGHEST_TEMP:
+				return allCountriesGetTop10HighestTemp();
+			case ALL_DATA_WITHIN_TEMP_RANGE:
+				return allCountriesGetAllDataWithinTempRange(query.getLowTemp(), query.getHighTemp());
+			default:
+				return allCountriesTop10TempDelta(query.getMonth(), query.getYear(), query.getYear2());
 		}
-		
-		for (int index = 0; index < allTemps.size(); index = index + 2)
+	}
+
+	//
+	// Answers a batch of queries in one shared pass over the readings instead of one pass per query. The result at position i is what the
+	// IClimateAnalyzer method of query i returns.
+	//
+	public ArrayList<Object> runBatch(List<QueryDescriptor> queries)
+	{
+		return read(() -> new BatchExecutor(table).execute(queries));
+	}
+
+	//
+	// Gets the k countries with the lowest (or highest) readings, scanning in parallel when parallel execution is on.
+	//
+	private ArrayList<ITemperature> selectTopK(int k, int month, int year, boolean highest)
+	{
+		if (parallelEngine == null)
 		{
-			double temperature1 = allTemps.get(index).getTemperature(false);
-			double temperature2 = allTemps.get(index + 1).getTemperature(false);
-			double deltaTemperature = Math.abs(temperature2 - temperature1);
-			ITemperature value = new Temperature(deltaTemperature, Math.abs(year2 - year1), mapMonthsToStrings(month), allTemps.get(index).getCountry(), allTemps.get(index).getCountry3LetterCode());
-			orderedDeltaTemps.add(value);
+			return highest ? topK.getHighest(k, month, year) : topK.getLowest(k, month, year);
 		}
-		
-		ArrayList<ITemperature> orderedDeltaTempsArrayList = new ArrayList<ITemperature>(orderedDeltaTemps);
-		ArrayList<ITemperature> last10DeltaTemps = new ArrayList<ITemperature>();
-		
-		for (int index = orderedDeltaTempsArrayList.size() - 10; index < orderedDeltaTempsArrayList.size(); index++)
+
+		int[] rows = highest ? parallelEngine.selectHighest(k, month, year) : parallelEngine.selectLowest(k, month, year);
+		ArrayList<ITemperature> temperatures = new ArrayList<ITemperature>(rows.length);
+		for (int row : rows)
 		{
-			last10DeltaTemps.add(orderedDeltaTempsArrayList.get(index));
+			temperatures.add(table.toTemperature(row));
 		}
-		
-		return last10DeltaTemps;
+
+		return temperatures;
+	}
+
+	//
+	// Checks if range queries should scan the rows in parallel. Once the sorted index has been built it answers with two binary searches;
+	// until then, parallel execution scans the rows instead of sorting all of them.
+	//
+	private synchronized boolean useParallelScan()
+	{
+		return parallelEngine != null && sortedIndex == null;
+	}
+
+	//
+	// Looks up the lowest temperature reading of a country in the aggregate cube. Like a scan that starts at Double.MAX_VALUE, a minimum
+	// that is not below Double.MAX_VALUE counts as no reading. No rows are scanned, so the metrics of A-1, A-2 and A-4 show none.
+	//
+	private ITemperature findLowestTemperature(AggregateCube.Dimension dimension, String country, int key)
+	{
+		int minRow = cube.getMinimumRow(dimension, table.getCountries().getId(country), key);
+		if (minRow >= 0 && !(table.getTemperature(minRow) < Double.MAX_VALUE))
+		{
+			minRow = -1;
+		}
+
+		return toTemperature(minRow);
+	}
+
+	//
+	// Looks up the highest temperature reading of a country in the aggregate cube. Like a scan that starts at MAX_TEMPERATURE, a maximum
+	// that is not above MAX_TEMPERATURE counts as no reading.
+	//
+	private ITemperature findHighestTemperature(AggregateCube.Dimension dimension, String country, int key)
+	{
+		int maxRow = cube.getMaximumRow(dimension, table.getCountries().getId(country), key);
+		if (maxRow >= 0 && !(table.getTemperature(maxRow) > MAX_TEMPERATURE))
+		{
+			maxRow = -1;
+		}
+
+		return toTemperature(maxRow);
+	}
+
+	//
+	// Finds the n countries with the largest change in temperature in a month between two years. The rows it reads are added to the
+	// metrics of the given query type, unless the type is null.
+	//
+	private ArrayList<ITemperature> findTopNTempDelta(QueryDescriptor.Type type, int n, int month, int year1, int year2)
+	{
+		// With a delta cube, the per-(country, year) averages of the month are already computed. Otherwise the readings of the two years
+		// are joined by country id, so missing countries and the order of the file do not matter.
+		DeltaCube cube = getDeltaCube();
+		if (cube != null && cube.hasRoomFor(month))
+		{
+			return cube.getTopDeltas(month, year1, year2, n);
+		}
+
+		if (type != null && index == null)
+		{
+			ClimateMetrics.addRowsScanned(type, table.size());
+		}
+		else if (type != null && ClimateMetrics.isMeasuring())
+		{
+			long rows = 0;
+			for (int countryId = 0; countryId < table.getCountries().size(); countryId++)
+			{
+				rows += index.getRowsByYear(countryId, year1).size() + (year2 == year1 ? 0 : index.getRowsByYear(countryId, year2).size());
+			}
+			ClimateMetrics.addRowsScanned(type, rows);
+		}
+
+		return deltaEngine.getTopDeltas(month, year1, year2, n);
+	}
+
+	//
+	// Creates a Temperature object for a row of the table, or returns null if no row was found.
+	//
+	private ITemperature toTemperature(int row)
+	{
+		if (row < 0)
+		{
+			return null;
+		}
+
+		return table.toTemperature(row);
 	}
 
 	// 
@@ -468,7 +683,18 @@ public class ClimateAnalyzer implements IClimateAnalyzer {
 	//
 	@Override
 	public void runClimateAnalyzer() throws IOException {
-		WeatherIO wIO = new WeatherIO();	
+		// Keeps each result file open for the whole run and writes on its own thread while the next task is computed. The sink is closed
+		// even if a task fails, so the writer thread stops and the result files are closed.
+		try (IResultSink results = new AsyncResultSink(new BufferedResultSink()))
+		{
+			runTasks(results);
+		}
+	}
+
+	//
+	// Asks for the input of each task, runs it and hands its results to the sink.
+	//
+	private void runTasks(IResultSink results) throws IOException {
 		Scanner scan = new Scanner(System.in);
 		
 		String header = "Temperature, " + "Year, " + "Month, " + "Country, " + "Country_Code";
@@ -477,9 +703,9 @@ public class ClimateAnalyzer implements IClimateAnalyzer {
 		// A HashSet of Strings that contains all the names of the countries from the weather data file and will be used to check 
 		// that the user did not input any invalid country name.
 		HashSet<String> allCountries = new HashSet<String>();
-		for (ITemperature value : dataValues)
+		for (int countryId = 0; countryId < table.getCountries().size(); countryId++)
 		{
-			allCountries.add(value.getCountry());
+			allCountries.add(table.getCountries().getName(countryId));
 		}
 		
 		// An ArrayList of Integers that contains all the possible months as integers and will be used to check that the user did not
@@ -531,17 +757,17 @@ public class ClimateAnalyzer implements IClimateAnalyzer {
 		ITemperature taskA1_1Obj = getLowestTempByMonth(country, month); // Calls getLowestTempByMonth() passing in user input.
 		taskA1_1.add(taskA1_1Obj);
 		// Writes the subject header for Task A1_1.
-		wIO.writeSubjectHeaderInFile("data/taskA1_climate_info.csv", "Task A1_1: Lowest Temperature for " + country + " in " + mapMonthsToStrings(month));
+		results.writeSubjectHeader("data/taskA1_climate_info.csv", "Task A1_1: Lowest Temperature for " + country + " in " + mapMonthsToStrings(month));
 		// Writes the data for Task A1_1.
-		wIO.writeDataToFile("data/taskA1_climate_info.csv", header, taskA1_1);
+		results.writeData("data/taskA1_climate_info.csv", header, taskA1_1);
 		
 		ArrayList<ITemperature> taskA1_2 = new ArrayList<ITemperature>();
 		ITemperature taskA1_2Obj = getHighestTempByMonth(country, month); // Calls getHighestTempByMonth() passing in user input.
 		taskA1_2.add(taskA1_2Obj);
 		// Writes the subject header for Task A1_2.
-		wIO.writeSubjectHeaderInFile("data/taskA1_climate_info.csv", "Task A1_2: Highest Temperature for " + country + " in " + mapMonthsToStrings(month));
+		results.writeSubjectHeader("data/taskA1_climate_info.csv", "Task A1_2: Highest Temperature for " + country + " in " + mapMonthsToStrings(month));
 		// Writes the data for Task A1_2.
-		wIO.writeDataToFile("data/taskA1_climate_info.csv", header, taskA1_2);
+		results.writeData("data/taskA1_climate_info.csv", header, taskA1_2);
 		
 		System.out.println("Task A2 - Get the Lowest and Highest Temperatures By Year for a Country");
 		// The same country the user inputted in Task A-1 will also be used here.
@@ -567,17 +793,17 @@ public class ClimateAnalyzer implements IClimateAnalyzer {
 		ITemperature taskA2_1Obj = getLowestTempByYear(country, year); // Calls getLowestTempByYear() passing in user input.
 		taskA2_1.add(taskA2_1Obj);
 		// Writes the subject header for Task A2_1.
-		wIO.writeSubjectHeaderInFile("data/taskA2_climate_info.csv", "Task A2_1: Lowest Temperature for " + country + " in " + year);
+		results.writeSubjectHeader("data/taskA2_climate_info.csv", "Task A2_1: Lowest Temperature for " + country + " in " + year);
 		// Writes the data for Task A2_1.
-		wIO.writeDataToFile("data/taskA2_climate_info.csv", header, taskA2_1);
+		results.writeData("data/taskA2_climate_info.csv", header, taskA2_1);
 		
 		ArrayList<ITemperature> taskA2_2 = new ArrayList<ITemperature>();
 		ITemperature taskA2_2Obj = getHighestTempByYear(country, year); // Calls getHighestTempByYear() passing in user input.
 		taskA2_2.add(taskA2_2Obj);
 		// Writes the subject header for Task A2_2.
-		wIO.writeSubjectHeaderInFile("data/taskA2_climate_info.csv", "Task A2_2: Highest Temperature for " + country + " in " + year);
+		results.writeSubjectHeader("data/taskA2_climate_info.csv", "Task A2_2: Highest Temperature for " + country + " in " + year);
 		// Writes the data for Task A2_2.
-		wIO.writeDataToFile("data/taskA2_climate_info.csv", header, taskA2_2);
+		results.writeData("data/taskA2_climate_info.csv", header, taskA2_2);
 		
 		System.out.println("Task A3 - Get all Data that falls within a Specific Temperature Range for a Country");
 		// The same country the user inputted in Task A-1 will also be used here.
@@ -623,9 +849,9 @@ public class ClimateAnalyzer implements IClimateAnalyzer {
 		}
 		
 		// Writes the subject header for Task A3.
-		wIO.writeSubjectHeaderInFile("data/taskA3_climate_info.csv", "Task A3: Temperatures for " + country + " within " + lowTemp + "-" + highTemp);
+		results.writeSubjectHeader("data/taskA3_climate_info.csv", "Task A3: Temperatures for " + country + " within " + lowTemp + "-" + highTemp);
 		// Writes the data for Task A3.
-		wIO.writeDataToFile("data/taskA3_climate_info.csv", header, rangeTemps);
+		results.writeData("data/taskA3_climate_info.csv", header, rangeTemps);
 		
 		System.out.println("Task A4 - Get the Lowest and Highest Temperatures for a Country");
 		// The same country the user inputted in Task A-1 will also be used here.
@@ -634,17 +860,17 @@ public class ClimateAnalyzer implements IClimateAnalyzer {
 		ITemperature taskA4_1Obj = getLowestTempYearByCountry(country); // Calls getLowestTempYearByCountry() passing in user input.
 		taskA4_1.add(taskA4_1Obj);
 		// Writes the subject header for Task A4_1.
-		wIO.writeSubjectHeaderInFile("data/taskA4_climate_info.csv", "Task A4_1: Lowest Temperature for " + country);
+		results.writeSubjectHeader("data/taskA4_climate_info.csv", "Task A4_1: Lowest Temperature for " + country);
 		// Writes the data for Task A4_1.
-		wIO.writeDataToFile("data/taskA4_climate_info.csv", header, taskA4_1);
+		results.writeData("data/taskA4_climate_info.csv", header, taskA4_1);
 		
 		ArrayList<ITemperature> taskA4_2 = new ArrayList<ITemperature>();
 		ITemperature taskA4_2Obj = getHighestTempYearByCountry(country); // Calls getHighestTempYearByCountry() passing in user input.
 		taskA4_2.add(taskA4_2Obj);
 		// Writes the subject header for Task A4_2.
-		wIO.writeSubjectHeaderInFile("data/taskA4_climate_info.csv", "Task A4_2: Highest Temperature for " + country);
+		results.writeSubjectHeader("data/taskA4_climate_info.csv", "Task A4_2: Highest Temperature for " + country);
 		// Writes the data for Task A4_2.
-		wIO.writeDataToFile("data/taskA4_climate_info.csv", header, taskA4_2);
+		results.writeData("data/taskA4_climate_info.csv", header, taskA4_2);
 		
 		System.out.println("Task B1 - The Top 10 Countries with the Lowest and Highest Temperatures for a given month");
 		int month2;
@@ -668,32 +894,32 @@ public class ClimateAnalyzer implements IClimateAnalyzer {
 		ArrayList<ITemperature> taskB1_1 = new ArrayList<ITemperature>();
 		taskB1_1 = allCountriesGetTop10LowestTemp(month2); // Calls allCountriesGetTop10LowestTemp() passing in user input.
 		// Writes the subject header for Task B1_1.
-		wIO.writeSubjectHeaderInFile("data/taskB1_climate_info.csv", "Task B1_1: The Top 10 Countries with the Lowest Temperatures in " + mapMonthsToStrings(month2));
+		results.writeSubjectHeader("data/taskB1_climate_info.csv", "Task B1_1: The Top 10 Countries with the Lowest Temperatures in " + mapMonthsToStrings(month2));
 		// Writes the data for Task B1_1.
-		wIO.writeDataToFile("data/taskB1_climate_info.csv", header, taskB1_1);
+		results.writeData("data/taskB1_climate_info.csv", header, taskB1_1);
 		
 		ArrayList<ITemperature> taskB1_2 = new ArrayList<ITemperature>();
 		taskB1_2 = allCountriesGetTop10HighestTemp(month2); // Calls allCountriesGetTop10HighestTemp() passing in user input.
 		// Writes the subject header for Task B1_2.
-		wIO.writeSubjectHeaderInFile("data/taskB1_climate_info.csv", "Task B1_2: The Top 10 Countries with the Highest Temperatures in " + mapMonthsToStrings(month2));
+		results.writeSubjectHeader("data/taskB1_climate_info.csv", "Task B1_2: The Top 10 Countries with the Highest Temperatures in " + mapMonthsToStrings(month2));
 		// Writes the data for Task B1_2.
-		wIO.writeDataToFile("data/taskB1_climate_info.csv", header, taskB1_2);
+		results.writeData("data/taskB1_climate_info.csv", header, taskB1_2);
 		
 		System.out.println("Task B2 - The Top 10 Countries with the Lowest and Highest Temperatures");
 		
 		ArrayList<ITemperature> taskB2_1 = new ArrayList<ITemperature>();
 		taskB2_1 = allCountriesGetTop10LowestTemp(); // Calls allCountriesGetTop10LowestTemp().
 		// Writes the subject header for Task B2_1.
-		wIO.writeSubjectHeaderInFile("data/taskB2_climate_info.csv", "Task B2_1: The Top 10 Countries with the Lowest Temperatures");
+		results.writeSubjectHeader("data/taskB2_climate_info.csv", "Task B2_1: The Top 10 Countries with the Lowest Temperatures");
 		// Writes the data for Task B2_1.
-		wIO.writeDataToFile("data/taskB2_climate_info.csv", header, taskB2_1);
+		results.writeData("data/taskB2_climate_info.csv", header, taskB2_1);
 		
 		ArrayList<ITemperature> taskB2_2 = new ArrayList<ITemperature>();
 		taskB2_2 = allCountriesGetTop10HighestTemp(); // Calls allCountriesGetTop10HighestTemp().
 		// Writes the subject header for Task B2_2.
-		wIO.writeSubjectHeaderInFile("data/taskB2_climate_info.csv", "Task B2_2: The Top 10 Countries with the Highest Temperatures");
+		results.writeSubjectHeader("data/taskB2_climate_info.csv", "Task B2_2: The Top 10 Countries with the Highest Temperatures");
 		// Writes the data for Task B2_2.
-		wIO.writeDataToFile("data/taskB2_climate_info.csv", header, taskB2_2);
+		results.writeData("data/taskB2_climate_info.csv", header, taskB2_2);
 		
 		System.out.println("Task B3 - All Countries that fall within a Specific Temperature Range");
 		double lowRangeTemp;
@@ -729,9 +955,9 @@ public class ClimateAnalyzer implements IClimateAnalyzer {
 		ArrayList<ITemperature> taskB3 = new ArrayList<ITemperature>();
 		taskB3 = allCountriesGetAllDataWithinTempRange(lowRangeTemp, highRangeTemp); // Calls allCountriesGetAllDataWithinTempRange() passing in user input.
 		// Writes the subject header for Task B3.
-		wIO.writeSubjectHeaderInFile("data/taskB3_climate_info.csv", "Task B3: Temperatures for all Countries within " + lowRangeTemp + "-" + highRangeTemp);
+		results.writeSubjectHeader("data/taskB3_climate_info.csv", "Task B3: Temperatures for all Countries within " + lowRangeTemp + "-" + highRangeTemp);
 		// Writes the data for Task B3.
-		wIO.writeDataToFile("data/taskB3_climate_info.csv", header, taskB3);
+		results.writeData("data/taskB3_climate_info.csv", header, taskB3);
 		
 		System.out.println("Task C1 - The Top 10 Countries with the Largest Temperature Changes in the same month between 2 different years");
 		int month3;
@@ -791,13 +1017,37 @@ public class ClimateAnalyzer implements IClimateAnalyzer {
 		ArrayList<ITemperature> taskC1 = new ArrayList<ITemperature>();
 		taskC1 = allCountriesTop10TempDelta(month3, year1, year2); // Calls allCountriesTop10TempDelta passing in user input.
 		// Writes the subject header for Task C1.
-		wIO.writeSubjectHeaderInFile("data/taskC1_climate_info.csv", "Task C1: The Top 10 Countries with the Largest Temperature Changes in " + mapMonthsToStrings(month3) + " between " + year1 + " and " + year2);
+		results.writeSubjectHeader("data/taskC1_climate_info.csv", "Task C1: The Top 10 Countries with the Largest Temperature Changes in " + mapMonthsToStrings(month3) + " between " + year1 + " and " + year2);
 		// Writes the data for Task C1.
-		wIO.writeDataToFile("data/taskC1_climate_info.csv", delta_header, taskC1);
+		results.writeData("data/taskC1_climate_info.csv", delta_header, taskC1);
 		
 		scan.close(); // Closes the scanner.
 	}
 	
+	//
+	// Steps through an iterator over the table while holding the read lock, since the iterator reads the table as it goes.
+	//
+	private class LockedIterator implements Iterator<ITemperature> {
+		private Iterator<ITemperature> rows;
+
+		private LockedIterator(Iterator<ITemperature> theRows)
+		{
+			rows = theRows;
+		}
+
+		@Override
+		public boolean hasNext()
+		{
+			return read(() -> rows.hasNext());
+		}
+
+		@Override
+		public ITemperature next()
+		{
+			return read(() -> rows.next());
+		}
+	}
+
 	//
 	// Tests the runClimateAnalyzer() method.
 	//
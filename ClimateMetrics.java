@@ -0,0 +1,277 @@
+package climatechange;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+public class ClimateMetrics implements IClimateMetricsMXBean {
+	//
+	// The phases of loading data and writing results that are timed.
+	//
+	public enum Phase {
+		PARSE, // Reading and parsing a weather data file.
+		SNAPSHOT_READ, // Loading a table from its binary snapshot instead of parsing the file.
+		SNAPSHOT_WRITE, // Writing the binary snapshot of a parsed table.
+		INDEX_BUILD, // Building the index and the aggregates of ClimateAnalyzer.
+		RESULT_WRITE // Formatting and writing query results to a result file.
+	}
+
+	public static final String OBJECT_NAME = "climatechange:type=ClimateMetrics";
+	// Starting the JVM with -Dclimatechange.metrics.dumpMillis=N prints dump() to System.err every N milliseconds.
+	public static final String DUMP_MILLIS_PROPERTY = "climatechange.metrics.dumpMillis";
+
+	private static final ClimateMetrics INSTANCE = new ClimateMetrics();
+	// Metrics are on unless the JVM is started with -Dclimatechange.metrics=false. Every measuring call checks this flag first, so turning
+	// metrics off leaves one volatile read per call.
+	private static volatile boolean enabled = !"false".equals(System.getProperty("climatechange.metrics"));
+
+	//
+	// The metrics are registered with JMX and the periodic dump is started the first time ClimateMetrics is used, which is when the first
+	// table is loaded or analyzer built, so they are there without any setup. Metrics that cannot be registered are still recorded.
+	//
+	static
+	{
+		try
+		{
+			registerMBean();
+		}
+		catch (JMException | SecurityException e)
+		{
+			System.err.println("The climate metrics could not be registered with JMX: " + e);
+		}
+
+		long dumpMillis = Long.getLong(DUMP_MILLIS_PROPERTY, 0);
+		if (dumpMillis > 0)
+		{
+			INSTANCE.startPeriodicDump(dumpMillis, System.err);
+		}
+	}
+
+	private Timer[] queryTimers;
+	private Timer[] phaseTimers;
+	private ScheduledExecutorService dumper;
+
+	private ClimateMetrics()
+	{
+		queryTimers = new Timer[QueryDescriptor.Type.values().length];
+		for (int i = 0; i < queryTimers.length; i++)
+		{
+			queryTimers[i] = new Timer();
+		}
+
+		phaseTimers = new Timer[Phase.values().length];
+		for (int i = 0; i < phaseTimers.length; i++)
+		{
+			phaseTimers[i] = new Timer();
+		}
+	}
+
+	//
+	// Gets the metrics that every analyzer in this JVM records into.
+	//
+	public static ClimateMetrics getInstance()
+	{
+		return INSTANCE;
+	}
+
+	//
+	// Starts timing a query or phase. Returns the start time to pass to recordQuery() or recordPhase(), or 0 when metrics are off, which
+	// makes them return right away.
+	//
+	public static long startTimer()
+	{
+		return enabled ? System.nanoTime() : 0;
+	}
+
+	//
+	// Checks if metrics are on, for measurements that cost something to take.
+	//
+	public static boolean isMeasuring()
+	{
+		return enabled;
+	}
+
+	//
+	// Records one call of a query method that was started at startNanos and answered with the given number of readings.
+	//
+	public static void recordQuery(QueryDescriptor.Type type, long startNanos, long rowsMatched)
+	{
+		if (startNanos == 0)
+		{
+			return;
+		}
+
+		Timer timer = INSTANCE.queryTimers[type.ordinal()];
+		timer.latencies.record(System.nanoTime() - startNanos);
+		timer.rowsMatched.add(rowsMatched);
+	}
+
+	//
+	// Adds to the rows a query method has read. Called by the query itself, since only it knows whether it scanned the table or looked
+	// its answer up. Does nothing when metrics are off or the type is null, which marks a query that is not one of the timed methods.
+	//
+	public static void addRowsScanned(QueryDescriptor.Type type, long rows)
+	{
+		if (enabled && type != null)
+		{
+			INSTANCE.queryTimers[type.ordinal()].rowsScanned.add(rows);
+		}
+	}
+
+	//
+	// Records one run of a load or write phase that was started at startNanos and went over the given number of rows.
+	//
+	public static void recordPhase(Phase phase, long startNanos, long rows)
+	{
+		if (startNanos == 0)
+		{
+			return;
+		}
+
+		Timer timer = INSTANCE.phaseTimers[phase.ordinal()];
+		timer.latencies.record(System.nanoTime() - startNanos);
+		timer.rowsScanned.add(rows);
+		timer.rowsMatched.add(rows);
+	}
+
+	//
+	// Registers the metrics with the platform MBean server so JMX clients such as JConsole can read them. Does nothing if they are
+	// registered already, which they are once ClimateMetrics has been used.
+	//
+	public static synchronized void registerMBean() throws JMException
+	{
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = new ObjectName(OBJECT_NAME);
+		if (!server.isRegistered(name))
+		{
+			server.registerMBean(INSTANCE, name);
+		}
+	}
+
+	@Override
+	public boolean isEnabled()
+	{
+		return enabled;
+	}
+
+	@Override
+	public void setEnabled(boolean isEnabled)
+	{
+		enabled = isEnabled;
+	}
+
+	@Override
+	public List<TimerStatistics> getQueryStatistics()
+	{
+		List<TimerStatistics> statistics = new ArrayList<TimerStatistics>();
+		for (QueryDescriptor.Type type : QueryDescriptor.Type.values())
+		{
+			statistics.add(queryTimers[type.ordinal()].getStatistics(type.toString()));
+		}
+
+		return statistics;
+	}
+
+	@Override
+	public List<TimerStatistics> getPhaseStatistics()
+	{
+		List<TimerStatistics> statistics = new ArrayList<TimerStatistics>();
+		for (Phase phase : Phase.values())
+		{
+			statistics.add(phaseTimers[phase.ordinal()].getStatistics(phase.toString()));
+		}
+
+		return statistics;
+	}
+
+	//
+	// Gets every query method and phase that has been timed at least once as a text table.
+	//
+	@Override
+	public String dump()
+	{
+		StringBuilder text = new StringBuilder(TimerStatistics.HEADER).append("\n");
+		for (TimerStatistics statistics : getQueryStatistics())
+		{
+			if (statistics.getCount() > 0)
+			{
+				text.append(statistics).append("\n");
+			}
+		}
+		for (TimerStatistics statistics : getPhaseStatistics())
+		{
+			if (statistics.getCount() > 0)
+			{
+				text.append(statistics).append("\n");
+			}
+		}
+
+		return text.toString();
+	}
+
+	@Override
+	public void reset()
+	{
+		for (Timer timer : queryTimers)
+		{
+			timer.reset();
+		}
+		for (Timer timer : phaseTimers)
+		{
+			timer.reset();
+		}
+	}
+
+	//
+	// Prints dump() to a stream every periodMillis milliseconds on a daemon thread, until stopPeriodicDump() is called.
+	//
+	public synchronized void startPeriodicDump(long periodMillis, PrintStream output)
+	{
+		stopPeriodicDump();
+		dumper = Executors.newSingleThreadScheduledExecutor(runnable ->
+		{
+			Thread thread = new Thread(runnable, "climate-metrics-dump");
+			thread.setDaemon(true);
+			return thread;
+		});
+		dumper.scheduleAtFixedRate(() -> output.print(dump()), periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+	}
+
+	public synchronized void stopPeriodicDump()
+	{
+		if (dumper != null)
+		{
+			dumper.shutdownNow();
+			dumper = null;
+		}
+	}
+
+	//
+	// The latencies and row counts of one query method or phase.
+	//
+	private static class Timer {
+		private LatencyHistogram latencies = new LatencyHistogram();
+		private LongAdder rowsScanned = new LongAdder();
+		private LongAdder rowsMatched = new LongAdder();
+
+		private TimerStatistics getStatistics(String name)
+		{
+			return new TimerStatistics(name, rowsScanned.sum(), rowsMatched.sum(), latencies);
+		}
+
+		private void reset()
+		{
+			latencies.reset();
+			rowsScanned.reset();
+			rowsMatched.reset();
+		}
+	}
+}
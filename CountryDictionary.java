@@ -0,0 +1,172 @@
+package climatechange;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class CountryDictionary {
+	// The dictionary that Temperature objects keep their countries in, shared by every thread.
+	private static final CountryDictionary SHARED = new CountryDictionary();
+
+	// The names and codes by id. The arrays are replaced by larger copies as countries are added, and anyone who got an id from the
+	// dictionary is guaranteed to see an array that holds it.
+	private volatile String[] countryNames;
+	private volatile String[] countryCodes;
+	private volatile int size;
+	private ConcurrentHashMap<String, Integer> idsByName;
+	// The id of a country without a name, since a ConcurrentHashMap cannot hold a null key.
+	private int nullNameId;
+	// The id in the shared dictionary of each id of this dictionary plus one, so Temperature objects can be created without looking up
+	// their country by name. 0 means not looked up yet, and -1 a country whose code differs from the shared one. Threads may fill it in
+	// at the same time, since they all write the same values.
+	private volatile int[] sharedIds = new int[0];
+
+	//
+	// Creates an empty dictionary. Countries can be looked up from any number of threads while others are being added.
+	//
+	public CountryDictionary()
+	{
+		countryNames = new String[16];
+		countryCodes = new String[16];
+		size = 0;
+		idsByName = new ConcurrentHashMap<String, Integer>();
+		nullNameId = -1;
+	}
+
+	//
+	// Gets the dictionary that every Temperature object interns its country in.
+	//
+	public static CountryDictionary getShared()
+	{
+		return SHARED;
+	}
+
+	//
+	// Gets the id of a country, adding the country to the dictionary if it has not been seen before. Ids start at 0 and are handed out
+	// in the order the countries are first seen, so they can be used directly as array indexes.
+	//
+	public int intern(String countryName, String countryCode)
+	{
+		int id = getId(countryName);
+		if (id >= 0)
+		{
+			return id;
+		}
+
+		synchronized (this)
+		{
+			id = getId(countryName); // Another thread may have added the country in the meantime.
+			if (id >= 0)
+			{
+				return id;
+			}
+
+			int newId = size;
+			if (newId == countryNames.length)
+			{
+				countryCodes = Arrays.copyOf(countryCodes, newId * 2);
+				countryNames = Arrays.copyOf(countryNames, newId * 2);
+			}
+			countryNames[newId] = countryName;
+			countryCodes[newId] = countryCode;
+			size = newId + 1;
+			if (countryName == null)
+			{
+				nullNameId = newId;
+			}
+			else
+			{
+				idsByName.put(countryName, newId);
+			}
+
+			return newId;
+		}
+	}
+
+	//
+	// Gets the id of a country, or -1 if the country is not in the dictionary.
+	//
+	public int getId(String countryName)
+	{
+		if (countryName == null)
+		{
+			synchronized (this)
+			{
+				return nullNameId;
+			}
+		}
+
+		Integer id = idsByName.get(countryName);
+		if (id == null)
+		{
+			return -1;
+		}
+
+		return id;
+	}
+
+	//
+	// Gets the name of the country with the given id.
+	//
+	public String getName(int id)
+	{
+		checkId(id);
+		return countryNames[id];
+	}
+
+	//
+	// Gets the 3-Letter Code of the country with the given id.
+	//
+	public String getCode(int id)
+	{
+		checkId(id);
+		return countryCodes[id];
+	}
+
+	//
+	// Gets the number of countries in the dictionary.
+	//
+	public int size()
+	{
+		return size;
+	}
+
+	//
+	// Gets the id a country of this dictionary has in the shared dictionary, adding it there the first time. Returns -1 if the shared
+	// dictionary holds a different 3-Letter Code for the country, since its Temperature objects then need to keep their own code.
+	//
+	public int getSharedId(int id)
+	{
+		int[] ids = sharedIds;
+		if (id < ids.length && ids[id] != 0)
+		{
+			return ids[id] < 0 ? -1 : ids[id] - 1;
+		}
+
+		checkId(id);
+		int sharedId = SHARED.intern(countryNames[id], countryCodes[id]);
+		if (!Objects.equals(SHARED.getCode(sharedId), countryCodes[id]))
+		{
+			sharedId = -1;
+		}
+
+		if (id >= ids.length)
+		{
+			ids = Arrays.copyOf(ids, Math.max(size, id + 1));
+		}
+		ids[id] = sharedId < 0 ? -1 : sharedId + 1;
+		sharedIds = ids;
+		return sharedId;
+	}
+
+	//
+	// Throws an IndexOutOfBoundsException for an id that was never handed out.
+	//
+	private void checkId(int id)
+	{
+		if (id < 0 || id >= size)
+		{
+			throw new IndexOutOfBoundsException("Index " + id + " out of bounds for length " + size);
+		}
+	}
+}
@@ -0,0 +1,313 @@
+package climatechange;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.SplittableRandom;
+
+public class DatasetGenerator {
+	// There are only 26^3 three letter country codes.
+	public static final int MAX_COUNTRIES = 26 * 26 * 26;
+	private static final String HEADER = "Temperature, Year, Month_Avg, Country, Country_Code\n";
+	private static final String[] SYLLABLES = { "ba", "ca", "da", "fa", "ga", "ha", "ka", "la", "ma", "na", "pa", "ra", "sa", "ta", "va", "za", "be", "de",
+			"fe", "ke", "le", "me", "ne", "re", "se", "te", "bi", "di", "ki", "li", "mi", "ni", "ri", "si", "ti", "vi", "bo", "do", "go", "lo", "mo", "no",
+			"ro", "so", "to", "bu", "du", "gu", "lu", "mu", "nu", "ru", "su", "tu", "an", "el", "in", "or", "us", "ia", "stan", "land" };
+	// The rows are written out in blocks of about this many bytes.
+	private static final int BLOCK_SIZE = 1 << 16;
+
+	private int numCountries;
+	private int firstYear;
+	private int lastYear;
+	private int stationsPerCountry;
+	private long seed;
+	// The yearly mean of each country is drawn from [meanTemperature - temperatureSpread, meanTemperature + temperatureSpread].
+	private double meanTemperature;
+	private double temperatureSpread;
+	// Half the difference between the warmest and coldest month is drawn from [0, maxSeasonalAmplitude].
+	private double maxSeasonalAmplitude;
+	// The warming of each country in degrees per decade is drawn from a normal distribution around trendPerDecade.
+	private double trendPerDecade;
+	private double trendSpread;
+	// The standard deviation of the noise added to every reading, and of the offset of each station from its country.
+	private double noise;
+	private double stationSpread;
+	// The chance that a reading is left out, so the data has the gaps real data has.
+	private double missingFraction;
+
+	//
+	// Creates a generator for a number of countries over the years [firstYear, lastYear], with the given number of readings per country for
+	// each month, as if each country had that many weather stations. The same seed always generates the same file.
+	//
+	public DatasetGenerator(int theNumCountries, int theFirstYear, int theLastYear, int theStationsPerCountry, long theSeed)
+	{
+		if (theNumCountries < 0 || theNumCountries > MAX_COUNTRIES)
+		{
+			throw new IllegalArgumentException("The number of countries must be between 0 and " + MAX_COUNTRIES);
+		}
+		if (theLastYear < theFirstYear || theStationsPerCountry < 1)
+		{
+			throw new IllegalArgumentException("The years must not be reversed and every country needs at least one station");
+		}
+
+		numCountries = theNumCountries;
+		firstYear = theFirstYear;
+		lastYear = theLastYear;
+		stationsPerCountry = theStationsPerCountry;
+		seed = theSeed;
+		meanTemperature = 12.0;
+		temperatureSpread = 15.0;
+		maxSeasonalAmplitude = 15.0;
+		trendPerDecade = 0.2;
+		trendSpread = 0.15;
+		noise = 1.0;
+		stationSpread = 0.5;
+		missingFraction = 0.0;
+	}
+
+	public void setMeanTemperature(double theMeanTemperature, double theTemperatureSpread)
+	{
+		meanTemperature = theMeanTemperature;
+		temperatureSpread = theTemperatureSpread;
+	}
+
+	public void setMaxSeasonalAmplitude(double theMaxSeasonalAmplitude)
+	{
+		maxSeasonalAmplitude = theMaxSeasonalAmplitude;
+	}
+
+	public void setTrendPerDecade(double theTrendPerDecade, double theTrendSpread)
+	{
+		trendPerDecade = theTrendPerDecade;
+		trendSpread = theTrendSpread;
+	}
+
+	public void setNoise(double theNoise, double theStationSpread)
+	{
+		noise = theNoise;
+		stationSpread = theStationSpread;
+	}
+
+	public void setMissingFraction(double theMissingFraction)
+	{
+		missingFraction = theMissingFraction;
+	}
+
+	//
+	// Gets the number of rows a file will have when no readings are left out.
+	//
+	public long getMaxRows()
+	{
+		return (long) numCountries * (lastYear - firstYear + 1) * 12 * stationsPerCountry;
+	}
+
+	//
+	// Writes the data to a file and returns the number of rows written.
+	//
+	public long write(String fileName) throws IOException
+	{
+		try (FileOutputStream output = new FileOutputStream(fileName))
+		{
+			return write(output);
+		}
+	}
+
+	//
+	// Writes the data in the format WeatherIO reads, a header and then one line per reading, sorted by country, year and month like the
+	// bundled data file. Rows are formatted into a reused buffer and written out in blocks, and only the country being written is held in
+	// memory, so files of any size can be generated.
+	//
+	public long write(OutputStream output) throws IOException
+	{
+		Charset charset = Charset.defaultCharset();
+		TemperatureFormatter formatter = new TemperatureFormatter();
+		byte[] separator = ", ".getBytes(charset);
+		formatter.appendString(HEADER);
+		String[] names = createCountryNames();
+		String[] codes = createCountryCodes(names);
+		long numRows = 0;
+		for (int countryId = 0; countryId < numCountries; countryId++)
+		{
+			// Each country gets its own random numbers, so its readings only depend on the seed and its position, not on the countries before it.
+			SplittableRandom random = new SplittableRandom(seed + countryId * 0x9E3779B97F4A7C15L);
+			double yearlyMean = meanTemperature + (random.nextDouble() * 2 - 1) * temperatureSpread;
+			double amplitude = random.nextDouble() * maxSeasonalAmplitude;
+			int warmestMonth = random.nextInt(4) == 0 ? 1 : 7; // A quarter of the countries are in the southern hemisphere.
+			double trendPerYear = (trendPerDecade + random.nextGaussian() * trendSpread) / 10.0;
+			double[] stationOffsets = new double[stationsPerCountry];
+			for (int station = 0; station < stationsPerCountry; station++)
+			{
+				stationOffsets[station] = random.nextGaussian() * stationSpread;
+			}
+
+			byte[] countryBytes = (", " + names[countryId] + ", " + codes[countryId] + "\n").getBytes(charset);
+			for (int year = firstYear; year <= lastYear; year++)
+			{
+				for (int month = 1; month <= 12; month++)
+				{
+					double monthlyMean = yearlyMean + amplitude * Math.cos(2 * Math.PI * (month - warmestMonth) / 12.0) + trendPerYear * (year - firstYear);
+					for (int station = 0; station < stationsPerCountry; station++)
+					{
+						if (missingFraction > 0 && random.nextDouble() < missingFraction)
+						{
+							continue;
+						}
+
+						formatter.appendDecimal(monthlyMean + stationOffsets[station] + random.nextGaussian() * noise, 4);
+						formatter.appendBytes(separator);
+						formatter.appendInt(year);
+						formatter.appendBytes(separator);
+						formatter.appendString(Months.toString(month));
+						formatter.appendBytes(countryBytes);
+						numRows++;
+						if (formatter.getLength() >= BLOCK_SIZE)
+						{
+							output.write(formatter.getBuffer(), 0, formatter.getLength());
+							formatter.reset();
+						}
+					}
+				}
+			}
+		}
+
+		output.write(formatter.getBuffer(), 0, formatter.getLength());
+		output.flush();
+		return numRows;
+	}
+
+	//
+	// Makes up a distinct name for every country out of a few syllables. The names are sorted, so the countries come out in the same
+	// alphabetical order as in the bundled file.
+	//
+	private String[] createCountryNames()
+	{
+		SplittableRandom random = new SplittableRandom(seed);
+		HashSet<String> usedNames = new HashSet<String>();
+		String[] names = new String[numCountries];
+		for (int countryId = 0; countryId < numCountries; countryId++)
+		{
+			String name;
+			do
+			{
+				StringBuilder builder = new StringBuilder();
+				int numSyllables = 2 + random.nextInt(3) + (usedNames.size() > 10000 ? 1 : 0); // Longer names once short ones get crowded.
+				for (int i = 0; i < numSyllables; i++)
+				{
+					builder.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+				}
+				builder.setCharAt(0, Character.toUpperCase(builder.charAt(0)));
+				name = builder.toString();
+			}
+			while (!usedNames.add(name));
+
+			names[countryId] = name;
+		}
+
+		Arrays.sort(names);
+		return names;
+	}
+
+	//
+	// Gives every country a distinct three letter code, taken from the start of its name when that code is still free.
+	//
+	private static String[] createCountryCodes(String[] names)
+	{
+		HashSet<String> usedCodes = new HashSet<String>();
+		String[] codes = new String[names.length];
+		int nextFreeCode = 0;
+		for (int countryId = 0; countryId < names.length; countryId++)
+		{
+			String code = names[countryId].substring(0, Math.min(3, names[countryId].length())).toUpperCase();
+			while (code.length() != 3 || !usedCodes.add(code))
+			{
+				code = "" + (char) ('A' + nextFreeCode / 676) + (char) ('A' + nextFreeCode / 26 % 26) + (char) ('A' + nextFreeCode % 26);
+				nextFreeCode++;
+			}
+
+			codes[countryId] = code;
+		}
+
+		return codes;
+	}
+
+	//
+	// Writes a copy of a weather data file that holds its readings the given number of times. Each copy after the first is moved forward by
+	// the number of years the file covers, so the larger file looks like a longer history of the same countries instead of duplicate rows.
+	//
+	public static File writeScaledCopy(String fileName, int copies) throws IOException
+	{
+		ArrayList<String[]> rows = new ArrayList<String[]>();
+		String header;
+		int firstYear = Integer.MAX_VALUE;
+		int lastYear = Integer.MIN_VALUE;
+		try (BufferedReader reader = new BufferedReader(new FileReader(fileName)))
+		{
+			header = reader.readLine();
+			String line;
+			while ((line = reader.readLine()) != null)
+			{
+				String[] fields = line.split(", ");
+				if (fields.length == 5)
+				{
+					rows.add(fields);
+					int year = Integer.parseInt(fields[1]);
+					firstYear = Math.min(firstYear, year);
+					lastYear = Math.max(lastYear, year);
+				}
+			}
+		}
+
+		File scaledFile = File.createTempFile("world_temp_x" + copies + "_", ".csv");
+		scaledFile.deleteOnExit();
+		new File(scaledFile.getPath() + TableSnapshot.FILE_EXTENSION).deleteOnExit(); // Loading the copy caches a snapshot next to it.
+		int yearSpan = rows.isEmpty() ? 0 : lastYear - firstYear + 1;
+		try (BufferedWriter writer = new BufferedWriter(new FileWriter(scaledFile)))
+		{
+			writer.write(header == null ? HEADER : header + "\n");
+			for (int copy = 0; copy < copies; copy++)
+			{
+				for (String[] fields : rows)
+				{
+					writer.write(fields[0] + ", " + (Integer.parseInt(fields[1]) + copy * yearSpan) + ", " + fields[2] + ", " + fields[3] + ", " + fields[4] + "\n");
+				}
+			}
+		}
+
+		return scaledFile;
+	}
+
+	//
+	// Generates a data file.
+	// Arguments: file name [countries, default 2000] [first year, default 1900] [last year, default 2016] [stations per country, default 1]
+	// [seed, default 1] [missing fraction, default 0]
+	//
+	public static void main(String[] args) throws IOException
+	{
+		String fileName = args.length > 0 ? args[0] : "data/synthetic_temp.csv";
+		int numCountries = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+		int firstYear = args.length > 2 ? Integer.parseInt(args[2]) : 1900;
+		int lastYear = args.length > 3 ? Integer.parseInt(args[3]) : 2016;
+		int stations = args.length > 4 ? Integer.parseInt(args[4]) : 1;
+		long seed = args.length > 5 ? Long.parseLong(args[5]) : 1;
+		DatasetGenerator generator = new DatasetGenerator(numCountries, firstYear, lastYear, stations, seed);
+		if (args.length > 6)
+		{
+			generator.setMissingFraction(Double.parseDouble(args[6]));
+		}
+
+		long start = System.nanoTime();
+		long numRows = generator.write(fileName);
+		double seconds = (System.nanoTime() - start) / 1e9;
+		double megabytes = new File(fileName).length() / (1024.0 * 1024.0);
+		System.out.println("Wrote " + numRows + " rows, " + String.format("%.1f", megabytes) + " MB to " + fileName + " in " + String.format("%.2f", seconds)
+				+ " s (" + String.format("%.1f", megabytes / seconds) + " MB/s)");
+	}
+}
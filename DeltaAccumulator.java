@@ -0,0 +1,85 @@
+package climatechange;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+public class DeltaAccumulator implements IAccumulator<ArrayList<ITemperature>> {
+	private CountryDictionary countries;
+	private int n;
+	private int month;
+	private int year1;
+	private int year2;
+	// The sum and number of readings of each country in the month of year1 and of year2, indexed by country id.
+	private double[] sums1;
+	private int[] counts1;
+	private double[] sums2;
+	private int[] counts2;
+
+	//
+	// Creates an accumulator for the n countries with the largest absolute change in temperature in a month between two years. Only the
+	// sums and counts of each country are kept, so it needs the same memory for any number of readings.
+	//
+	public DeltaAccumulator(CountryDictionary theCountries, int theN, int theMonth, int theYear1, int theYear2)
+	{
+		countries = theCountries;
+		n = theN;
+		month = theMonth;
+		year1 = theYear1;
+		year2 = theYear2;
+		int capacity = Math.max(countries.size(), 16);
+		sums1 = new double[capacity];
+		counts1 = new int[capacity];
+		sums2 = new double[capacity];
+		counts2 = new int[capacity];
+	}
+
+	@Override
+	public void accept(double temperature, int year, int theMonth, int countryId)
+	{
+		if (theMonth != month || (year != year1 && year != year2))
+		{
+			return;
+		}
+
+		if (countryId >= sums1.length)
+		{
+			int capacity = Math.max(sums1.length * 2, countryId + 1);
+			sums1 = Arrays.copyOf(sums1, capacity);
+			counts1 = Arrays.copyOf(counts1, capacity);
+			sums2 = Arrays.copyOf(sums2, capacity);
+			counts2 = Arrays.copyOf(counts2, capacity);
+		}
+
+		// When year1 and year2 are the same year, the reading counts for both.
+		if (year == year1)
+		{
+			sums1[countryId] += temperature;
+			counts1[countryId]++;
+		}
+		if (year == year2)
+		{
+			sums2[countryId] += temperature;
+			counts2[countryId]++;
+		}
+	}
+
+	//
+	// Gets the n countries with the largest changes, sorted from lowest to highest change, the same way DeltaEngine ranks them.
+	//
+	@Override
+	public ArrayList<ITemperature> getResult()
+	{
+		if (month < 1 || month > 12)
+		{
+			return new ArrayList<ITemperature>();
+		}
+
+		double[] deltas = new double[Math.min(sums1.length, countries.size())];
+		for (int countryId = 0; countryId < deltas.length; countryId++)
+		{
+			deltas[countryId] = counts1[countryId] > 0 && counts2[countryId] > 0 ? Math.abs(sums2[countryId] / counts2[countryId] - sums1[countryId] / counts1[countryId]) : Double.NaN;
+		}
+
+		return DeltaEngine.selectTopDeltas(countries, deltas, month, year1, year2, n);
+	}
+}
@@ -0,0 +1,182 @@
+package climatechange;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+public class DeltaCube {
+	private ITemperatureStore table;
+	private TemperatureIndex index;
+	private long maxBytes;
+	private int numCountries;
+	private int minYear;
+	private int numYears;
+	// The average temperature of each (country, year) pair of each month, indexed by [month - 1][countryId * numYears + year - minYear].
+	// A month stays null until it is first used, and NaN marks a (country, year, month) without readings.
+	private double[][] monthValues;
+
+	//
+	// Creates an empty cube over the rows of an index that will never use more than maxBytes of memory for its values. Each month is only
+	// built the first time it is used.
+	//
+	public DeltaCube(TemperatureIndex theIndex, long theMaxBytes)
+	{
+		index = theIndex;
+		table = theIndex.getTable();
+		maxBytes = theMaxBytes;
+		numCountries = table.getCountries().size();
+		minYear = Integer.MAX_VALUE;
+		int maxYear = Integer.MIN_VALUE;
+		for (int row = 0; row < table.size(); row++)
+		{
+			minYear = Math.min(minYear, table.getYear(row));
+			maxYear = Math.max(maxYear, table.getYear(row));
+		}
+
+		numYears = table.size() == 0 ? 0 : maxYear - minYear + 1;
+		monthValues = new double[12][];
+	}
+
+	//
+	// Gets the number of bytes that one month of the cube takes up.
+	//
+	public long getBytesPerMonth()
+	{
+		return (long) numCountries * numYears * Double.BYTES;
+	}
+
+	//
+	// Gets the number of bytes the months that have been built so far take up.
+	//
+	public synchronized long getMemoryBytes()
+	{
+		long bytes = 0;
+		for (double[] values : monthValues)
+		{
+			if (values != null)
+			{
+				bytes += (long) values.length * Double.BYTES;
+			}
+		}
+
+		return bytes;
+	}
+
+	//
+	// Gets the most memory the cube is allowed to use.
+	//
+	public long getMaxBytes()
+	{
+		return maxBytes;
+	}
+
+	//
+	// Checks if a month has been built already or can be built without going over the memory limit.
+	//
+	public synchronized boolean hasRoomFor(int month)
+	{
+		return month >= 1 && month <= 12 && (monthValues[month - 1] != null || getMemoryBytes() + getBytesPerMonth() <= maxBytes);
+	}
+
+	//
+	// Builds every month that has not been built yet. Throws an IllegalStateException if that would go over the memory limit.
+	//
+	public void buildAllMonths()
+	{
+		for (int month = 1; month <= 12; month++)
+		{
+			getMonthValues(month);
+		}
+	}
+
+	//
+	// Gets the n countries with the largest absolute change in temperature in a month between two years, sorted from lowest to highest
+	// change, in O(countries log n) without visiting any rows once the month is built.
+	//
+	public ArrayList<ITemperature> getTopDeltas(int month, int year1, int year2, int n)
+	{
+		if (month < 1 || month > 12)
+		{
+			return new ArrayList<ITemperature>();
+		}
+
+		double[] values = getMonthValues(month);
+		double[] deltas = new double[numCountries];
+		for (int countryId = 0; countryId < numCountries; countryId++)
+		{
+			deltas[countryId] = Math.abs(getValue(values, countryId, year2) - getValue(values, countryId, year1));
+		}
+
+		return DeltaEngine.selectTopDeltas(table.getCountries(), deltas, month, year1, year2, n);
+	}
+
+	//
+	// Gets the absolute change in temperature of a country between two years for each month. Position 0 holds January, and a month where
+	// the country is missing either year holds NaN.
+	//
+	public double[] getDeltaVector(int countryId, int year1, int year2)
+	{
+		double[] deltas = new double[12];
+		for (int month = 1; month <= 12; month++)
+		{
+			double[] values = getMonthValues(month);
+			deltas[month - 1] = Math.abs(getValue(values, countryId, year2) - getValue(values, countryId, year1));
+		}
+
+		return deltas;
+	}
+
+	//
+	// Gets the average temperature of a country in a month and year from a built month, or NaN if there is none.
+	//
+	private double getValue(double[] values, int countryId, int year)
+	{
+		if (countryId < 0 || countryId >= numCountries || year < minYear || year >= minYear + numYears)
+		{
+			return Double.NaN;
+		}
+
+		return values[countryId * numYears + year - minYear];
+	}
+
+	//
+	// Gets the values of a month, building them from the (country, month) index the first time.
+	//
+	private synchronized double[] getMonthValues(int month)
+	{
+		if (monthValues[month - 1] != null)
+		{
+			return monthValues[month - 1];
+		}
+
+		if (!hasRoomFor(month))
+		{
+			throw new IllegalStateException("Building month " + month + " of the delta cube would use more than " + maxBytes + " bytes");
+		}
+
+		double[] sums = new double[numCountries * numYears];
+		int[] counts = new int[numCountries * numYears];
+		for (int countryId = 0; countryId < numCountries; countryId++)
+		{
+			TemperatureIndex.RowList rows = index.getRowsByMonth(countryId, month);
+			for (int i = 0; i < rows.size(); i++)
+			{
+				int cell = countryId * numYears + table.getYear(rows.get(i)) - minYear;
+				sums[cell] += table.getTemperature(rows.get(i));
+				counts[cell]++;
+			}
+		}
+
+		double[] values = new double[numCountries * numYears];
+		Arrays.fill(values, Double.NaN);
+		for (int cell = 0; cell < values.length; cell++)
+		{
+			if (counts[cell] > 0)
+			{
+				values[cell] = sums[cell] / counts[cell];
+			}
+		}
+
+		monthValues[month - 1] = values;
+		return values;
+	}
+}
@@ -0,0 +1,266 @@
+package climatechange;
+
+import java.util.ArrayList;
+
+public class DeltaEngine {
+	private ITemperatureStore table;
+	private TemperatureIndex index;
+
+	//
+	// Creates an engine that finds the readings of each (country, year) pair through the given index.
+	//
+	public DeltaEngine(TemperatureIndex theIndex)
+	{
+		index = theIndex;
+		table = theIndex.getTable();
+	}
+
+	//
+	// Creates an engine without an index, which finds the readings of the two years with one pass over every row. Used for tables that are
+	// too large to index, such as a MappedTemperatureStore.
+	//
+	public DeltaEngine(ITemperatureStore theTable)
+	{
+		index = null;
+		table = theTable;
+	}
+
+	//
+	// Gets the n countries with the largest absolute change in temperature in a month between two years, sorted from lowest to highest
+	// change. Each result holds the change as its temperature and the number of years between year1 and year2 as its year.
+	//
+	public ArrayList<ITemperature> getTopDeltas(int month, int year1, int year2, int n)
+	{
+		if (month < 1 || month > 12)
+		{
+			return new ArrayList<ITemperature>();
+		}
+
+		double[][] deltas = computeDeltas(year1, year2);
+		return selectTopDeltas(table.getCountries(), deltas[month - 1], month, year1, year2, n);
+	}
+
+	//
+	// Gets the n countries with the largest absolute change in temperature between two years for every month at once. The list at
+	// position 0 holds the results for January, the list at position 11 the results for December.
+	//
+	public ArrayList<ArrayList<ITemperature>> getTopDeltasForAllMonths(int year1, int year2, int n)
+	{
+		double[][] deltas = computeDeltas(year1, year2);
+		ArrayList<ArrayList<ITemperature>> topDeltas = new ArrayList<ArrayList<ITemperature>>(12);
+		for (int month = 1; month <= 12; month++)
+		{
+			topDeltas.add(selectTopDeltas(table.getCountries(), deltas[month - 1], month, year1, year2, n));
+		}
+
+		return topDeltas;
+	}
+
+	//
+	// Computes the absolute change of every country in every month between two years. The readings of each year are joined by country id,
+	// with the average taken when a (country, year, month) has more than one reading. The result is indexed by [month - 1][country id] and
+	// holds NaN for a country that is missing either year. Only the rows of the two years are visited, through the (country, year) index,
+	// unless the engine has no index.
+	//
+	public double[][] computeDeltas(int year1, int year2)
+	{
+		int numCountries = table.getCountries().size();
+		double[][] deltas = new double[12][numCountries];
+		if (index == null)
+		{
+			scanDeltas(year1, year2, deltas);
+			return deltas;
+		}
+
+		double[] sums1 = new double[12];
+		int[] counts1 = new int[12];
+		double[] sums2 = new double[12];
+		int[] counts2 = new int[12];
+		for (int countryId = 0; countryId < numCountries; countryId++)
+		{
+			sumByMonth(index.getRowsByYear(countryId, year1), sums1, counts1);
+			sumByMonth(index.getRowsByYear(countryId, year2), sums2, counts2);
+			for (int month = 0; month < 12; month++)
+			{
+				if (counts1[month] > 0 && counts2[month] > 0)
+				{
+					deltas[month][countryId] = Math.abs(sums2[month] / counts2[month] - sums1[month] / counts1[month]);
+				}
+				else
+				{
+					deltas[month][countryId] = Double.NaN; // The country is missing one of the years in this month.
+				}
+			}
+		}
+
+		return deltas;
+	}
+
+	//
+	// Computes the same changes as computeDeltas() with one pass over every row. Only a sum and a count per (country, month) of each year are
+	// kept, and the rows of each (country, year, month) are added up in row order like the index would visit them, so the results match.
+	//
+	private void scanDeltas(int year1, int year2, double[][] deltas)
+	{
+		int numCountries = deltas[0].length;
+		double[][] sums1 = new double[12][numCountries];
+		int[][] counts1 = new int[12][numCountries];
+		double[][] sums2 = new double[12][numCountries];
+		int[][] counts2 = new int[12][numCountries];
+		for (int row = 0; row < table.size(); row++)
+		{
+			int year = table.getYear(row);
+			int month = table.getMonth(row);
+			if ((year != year1 && year != year2) || month < 1 || month > 12)
+			{
+				continue;
+			}
+
+			// When year1 and year2 are the same year, the reading counts for both.
+			int countryId = table.getCountryId(row);
+			if (year == year1)
+			{
+				sums1[month - 1][countryId] += table.getTemperature(row);
+				counts1[month - 1][countryId]++;
+			}
+			if (year == year2)
+			{
+				sums2[month - 1][countryId] += table.getTemperature(row);
+				counts2[month - 1][countryId]++;
+			}
+		}
+
+		for (int month = 0; month < 12; month++)
+		{
+			for (int countryId = 0; countryId < numCountries; countryId++)
+			{
+				if (counts1[month][countryId] > 0 && counts2[month][countryId] > 0)
+				{
+					deltas[month][countryId] = Math.abs(sums2[month][countryId] / counts2[month][countryId] - sums1[month][countryId] / counts1[month][countryId]);
+				}
+				else
+				{
+					deltas[month][countryId] = Double.NaN;
+				}
+			}
+		}
+	}
+
+	//
+	// Adds up the temperatures of a list of rows by month, after clearing the sums and counts.
+	//
+	private void sumByMonth(TemperatureIndex.RowList rows, double[] sums, int[] counts)
+	{
+		for (int month = 0; month < 12; month++)
+		{
+			sums[month] = 0.0;
+			counts[month] = 0;
+		}
+
+		for (int i = 0; i < rows.size(); i++)
+		{
+			int month = table.getMonth(rows.get(i));
+			if (month >= 1 && month <= 12)
+			{
+				sums[month - 1] += table.getTemperature(rows.get(i));
+				counts[month - 1]++;
+			}
+		}
+	}
+
+	//
+	// Selects the n countries with the largest changes with a bounded heap whose root is the smallest change kept so far. Changes are
+	// ranked the same way sorting Temperature objects of the changes would rank them: by change, then by country name. The changes are
+	// indexed by the country ids of the given dictionary.
+	//
+	public static ArrayList<ITemperature> selectTopDeltas(CountryDictionary countries, double[] deltas, int month, int year1, int year2, int n)
+	{
+		int[] heap = new int[Math.max(n, 0)];
+		int heapSize = 0;
+		for (int countryId = 0; countryId < deltas.length && n > 0; countryId++)
+		{
+			if (Double.isNaN(deltas[countryId]))
+			{
+				continue;
+			}
+
+			if (heapSize < n)
+			{
+				heap[heapSize] = countryId;
+				int position = heapSize++;
+				while (position > 0 && compareDeltas(countries, deltas, heap[position], heap[(position - 1) / 2]) < 0)
+				{
+					swap(heap, position, (position - 1) / 2);
+					position = (position - 1) / 2;
+				}
+			}
+			else if (compareDeltas(countries, deltas, countryId, heap[0]) > 0)
+			{
+				heap[0] = countryId;
+				siftDown(countries, deltas, heap, heapSize);
+			}
+		}
+
+		// Empties the heap smallest change first, which is the order the results are returned in.
+		ArrayList<ITemperature> topDeltas = new ArrayList<ITemperature>(heapSize);
+		for (int remaining = heapSize; remaining > 0; remaining--)
+		{
+			int countryId = heap[0];
+			heap[0] = heap[remaining - 1];
+			siftDown(countries, deltas, heap, remaining - 1);
+			topDeltas.add(new Temperature(deltas[countryId], Math.abs(year2 - year1), Months.toString(month), countries.getName(countryId), countries.getCode(countryId)));
+		}
+
+		return topDeltas;
+	}
+
+	//
+	// Moves the root of the heap down until both of its children have larger changes.
+	//
+	private static void siftDown(CountryDictionary countries, double[] deltas, int[] heap, int heapSize)
+	{
+		int position = 0;
+		while (true)
+		{
+			int smallest = position;
+			int left = 2 * position + 1;
+			int right = left + 1;
+			if (left < heapSize && compareDeltas(countries, deltas, heap[left], heap[smallest]) < 0)
+			{
+				smallest = left;
+			}
+			if (right < heapSize && compareDeltas(countries, deltas, heap[right], heap[smallest]) < 0)
+			{
+				smallest = right;
+			}
+			if (smallest == position)
+			{
+				return;
+			}
+
+			swap(heap, position, smallest);
+			position = smallest;
+		}
+	}
+
+	//
+	// Compares the changes of two countries, using the country names to break ties.
+	//
+	private static int compareDeltas(CountryDictionary countries, double[] deltas, int countryId1, int countryId2)
+	{
+		int result = Double.compare(deltas[countryId1], deltas[countryId2]);
+		if (result != 0)
+		{
+			return result;
+		}
+
+		return countries.getName(countryId1).compareTo(countries.getName(countryId2));
+	}
+
+	private static void swap(int[] array, int i, int j)
+	{
+		int temp = array[i];
+		array[i] = array[j];
+		array[j] = temp;
+	}
+}
@@ -0,0 +1,75 @@
+package climatechange;
+
+public class ExtremumAccumulator implements IAccumulator<ITemperature> {
+	private CountryDictionary countries;
+	private String country;
+	private int month;
+	private int year;
+	private boolean highest;
+	// The id of the country once it has been seen, and the number of country ids already checked for it before then, so the dictionary is
+	// only searched when a country is seen for the first time.
+	private int countryId;
+	private int numCheckedCountries;
+	private double bestTemperature;
+	private int bestYear;
+	private int bestMonth;
+
+	//
+	// Creates an accumulator for the lowest (or highest) reading of a country in the given month and year. TopKSelector.ANY_MONTH and
+	// TopKSelector.ANY_YEAR leave those filters out. Like a scan of every reading, the first reading wins a tie.
+	//
+	public ExtremumAccumulator(CountryDictionary theCountries, String theCountry, int theMonth, int theYear, boolean theHighest)
+	{
+		countries = theCountries;
+		country = theCountry;
+		month = theMonth;
+		year = theYear;
+		highest = theHighest;
+		countryId = -1;
+		bestTemperature = highest ? ClimateAnalyzer.MAX_TEMPERATURE : Double.MAX_VALUE;
+	}
+
+	@Override
+	public void accept(double temperature, int theYear, int theMonth, int theCountryId)
+	{
+		if ((month != TopKSelector.ANY_MONTH && theMonth != month) || (year != TopKSelector.ANY_YEAR && theYear != year) || !isCountry(theCountryId))
+		{
+			return;
+		}
+
+		if (highest ? temperature > bestTemperature : temperature < bestTemperature)
+		{
+			bestTemperature = temperature;
+			bestYear = theYear;
+			bestMonth = theMonth;
+		}
+	}
+
+	//
+	// Gets the lowest (or highest) reading, or null if no reading matched.
+	//
+	@Override
+	public ITemperature getResult()
+	{
+		if (countryId < 0 || (highest ? !(bestTemperature > ClimateAnalyzer.MAX_TEMPERATURE) : !(bestTemperature < Double.MAX_VALUE)))
+		{
+			return null;
+		}
+
+		return new Temperature(bestTemperature, bestYear, Months.toString(bestMonth), countries.getName(countryId), countries.getCode(countryId));
+	}
+
+	//
+	// Checks if a country id belongs to the country of this accumulator.
+	//
+	private boolean isCountry(int theCountryId)
+	{
+		if (countryId < 0 && theCountryId >= numCheckedCountries)
+		{
+			countryId = countries.getId(country);
+			numCheckedCountries = countries.size();
+		}
+
+		return theCountryId == countryId;
+	}
+}
@@ -0,0 +1,225 @@
+package climatechange;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+
+public class FileTailer {
+	// The number of bytes just before the offset that are kept to check that the file still starts with what has been read.
+	private static final int CHECKED_BYTES = 64;
+
+	private String fileName;
+	private ClimateAnalyzer analyzer;
+	private long pollMillis;
+	private volatile long offset;
+	private volatile long numMalformedLines;
+	private volatile Exception lastError;
+	private volatile boolean replaced;
+	// The identity of the file being read, such as its inode, or null if the file system has none.
+	private Object fileKey;
+	// The bytes just before the offset, or null before the first poll.
+	private byte[] bytesBeforeOffset;
+	private Thread thread;
+
+	//
+	// Creates a tailer that appends every line added to a weather data file after the given byte offset to an analyzer. Pass the length
+	// of the file when it was loaded as the offset, so readings that were already loaded are not appended again.
+	//
+	public FileTailer(String theFileName, long theOffset, ClimateAnalyzer theAnalyzer, long thePollMillis)
+	{
+		fileName = theFileName;
+		offset = theOffset;
+		analyzer = theAnalyzer;
+		pollMillis = thePollMillis;
+	}
+
+	//
+	// Reads the complete lines added since the last poll and appends them to the analyzer in one batch. Returns the number of readings
+	// appended. A line that is still being written is picked up by a later poll. A line that cannot be parsed is skipped, counted and kept
+	// for getLastError(), so it does not hold back the lines after it. A file that is missing throws a FileNotFoundException and keeps
+	// the offset, so a file that is only gone for a moment is read on from where it was.
+	//
+	// The analyzer cannot take back readings it already has, so a file that was replaced, truncated or rewritten is not read again from
+	// the start, which would add every reading twice. It throws an IOException saying the analyzer must be rebuilt, and so does every
+	// later poll. A file counts as replaced when its identity changes, when it is shorter than the offset, or when the bytes just before
+	// the offset are not the ones that were read.
+	//
+	public synchronized int poll() throws IOException
+	{
+		if (replaced)
+		{
+			throw replacedError();
+		}
+		File file = new File(fileName);
+		if (!file.isFile())
+		{
+			throw new FileNotFoundException(fileName + " (No such file)");
+		}
+		checkNotReplaced(file);
+
+		TemperatureTable newReadings = new TemperatureTable();
+		MappedCsvParser parser = new MappedCsvParser(newReadings);
+		parser.setSkipMalformedLines(true);
+		long newOffset = parser.parseFrom(fileName, offset);
+		if (newOffset != offset)
+		{
+			bytesBeforeOffset = readBytesBefore(file, newOffset);
+			offset = newOffset;
+		}
+		if (parser.getNumMalformedLines() > 0)
+		{
+			numMalformedLines += parser.getNumMalformedLines();
+			lastError = parser.getLastMalformedLine();
+		}
+		if (newReadings.size() > 0)
+		{
+			analyzer.appendAll(newReadings);
+		}
+
+		return newReadings.size();
+	}
+
+	//
+	// Checks that the file is still the one the readings came from. The first poll takes the identity of the file and the bytes before
+	// the offset it was given as they are, since it has nothing to compare them with.
+	//
+	private void checkNotReplaced(File file) throws IOException
+	{
+		BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+		Object key = attributes.fileKey();
+		if (attributes.size() < offset || (fileKey != null && !fileKey.equals(key)))
+		{
+			replaced = true;
+			throw replacedError();
+		}
+		fileKey = key;
+
+		byte[] bytes = readBytesBefore(file, offset);
+		if (bytesBeforeOffset != null && !Arrays.equals(bytes, bytesBeforeOffset))
+		{
+			replaced = true;
+			throw replacedError();
+		}
+		bytesBeforeOffset = bytes;
+	}
+
+	private byte[] readBytesBefore(File file, long position) throws IOException
+	{
+		byte[] bytes = new byte[(int) Math.min(CHECKED_BYTES, position)];
+		RandomAccessFile inputFile = new RandomAccessFile(file, "r");
+		try
+		{
+			inputFile.seek(position - bytes.length);
+			inputFile.readFully(bytes);
+		}
+		finally
+		{
+			inputFile.close();
+		}
+
+		return bytes;
+	}
+
+	private IOException replacedError()
+	{
+		return new IOException(fileName + " was replaced after " + offset + " bytes of it were read; rebuild the analyzer from it");
+	}
+
+	//
+	// Starts polling the file every pollMillis milliseconds on a daemon thread. An IOException or RuntimeException does not stop the polling,
+	// and the thread still waits pollMillis before trying again; the last one is kept for getLastError(). Polling stops once the file has
+	// been replaced, since nothing more can be appended until the analyzer is rebuilt.
+	//
+	public synchronized void start()
+	{
+		if (thread != null)
+		{
+			return;
+		}
+
+		thread = new Thread(() -> {
+			while (!Thread.currentThread().isInterrupted())
+			{
+				try
+				{
+					poll();
+				}
+				catch (IOException | RuntimeException e)
+				{
+					lastError = e;
+					if (replaced)
+					{
+						return;
+					}
+				}
+
+				try
+				{
+					Thread.sleep(pollMillis);
+				}
+				catch (InterruptedException e)
+				{
+					return;
+				}
+			}
+		}, "FileTailer-" + fileName);
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	//
+	// Stops polling and waits for the polling thread to finish.
+	//
+	public void stop() throws InterruptedException
+	{
+		Thread stoppedThread;
+		synchronized (this)
+		{
+			stoppedThread = thread;
+			thread = null;
+		}
+
+		if (stoppedThread != null)
+		{
+			stoppedThread.interrupt();
+			stoppedThread.join();
+		}
+	}
+
+	//
+	// Gets the byte offset just after the last line that has been appended.
+	//
+	public long getOffset()
+	{
+		return offset;
+	}
+
+	//
+	// Checks if the file was replaced, truncated or rewritten, so the analyzer no longer matches it and must be rebuilt from the file.
+	//
+	public boolean isReplaced()
+	{
+		return replaced;
+	}
+
+	//
+	// Gets the number of lines that were skipped because they could not be parsed.
+	//
+	public long getNumMalformedLines()
+	{
+		return numMalformedLines;
+	}
+
+	//
+	// Gets the last error the polling thread ran into, or null if there was none. This is an IOException when the file could not be read
+	// or was replaced, and an IllegalArgumentException naming the line when a line could not be parsed.
+	//
+	public Exception getLastError()
+	{
+		return lastError;
+	}
+}
@@ -0,0 +1,9 @@
+package climatechange;
+
+public interface IAccumulator<R> extends ITemperatureSink {
+
+	public R getResult();
+	// 1. get the answer for all readings accepted so far
+	// 2. an accumulator only keeps state per group (country, month, year), never per reading, unless its result is a list of readings
+
+}
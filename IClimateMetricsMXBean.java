@@ -0,0 +1,25 @@
+package climatechange;
+
+import java.util.List;
+
+public interface IClimateMetricsMXBean {
+
+	public boolean isEnabled();
+	// whether queries, loads and writes are being measured
+
+	public void setEnabled(boolean enabled);
+	// turn measuring on or off; while off, every measuring call returns right away
+
+	public List<TimerStatistics> getQueryStatistics();
+	// one entry for each IClimateAnalyzer query method, with its call count, rows scanned and matched, and latency percentiles
+
+	public List<TimerStatistics> getPhaseStatistics();
+	// one entry for each phase of loading data and writing results: parse, snapshot read, snapshot write, index build and result write
+
+	public String dump();
+	// all of the statistics above as a text table
+
+	public void reset();
+	// start every count and histogram over from zero
+
+}
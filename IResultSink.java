@@ -0,0 +1,25 @@
+package climatechange;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+public interface IResultSink extends Closeable {
+
+	public void writeSubjectHeader(String fileName, String subject) throws IOException;
+	// 1. append a subject header to a result file, the same way IWeatherIO.writeSubjectHeaderInFile() does
+	// 2. the file is opened the first time it is written to and stays open until close()
+
+	public void writeData(String fileName, String topic, List<? extends ITemperature> theWeatherList) throws IOException;
+	// append the topic and one row per reading to a result file, in the same format as IWeatherIO.writeDataToFile()
+
+	public void closeFile(String fileName) throws IOException;
+	// flush and close one result file once nothing more will be written to it; writing to it again opens it again
+
+	public void flush() throws IOException;
+	// make everything written so far reach the files
+
+	public void close() throws IOException;
+	// flush and close every file; an error from an earlier write that could not be reported yet is thrown here
+
+}
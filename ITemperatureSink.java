@@ -0,0 +1,8 @@
+package climatechange;
+
+public interface ITemperatureSink {
+
+	public void accept(double temperature, int year, int month, int countryId);
+	// receive one reading; month is from 1 to 12 and countryId refers to the CountryDictionary the readings are interned in
+
+}
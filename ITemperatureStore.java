@@ -0,0 +1,26 @@
+package climatechange;
+
+public interface ITemperatureStore {
+
+	public int size();
+	// get the number of rows; rows are numbered from 0 to size() - 1
+
+	public double getTemperature(int row);
+	// get the Celsius temperature of a row
+
+	public int getYear(int row);
+	// get the year of a row
+
+	public int getMonth(int row);
+	// get the month of a row as an integer from 1 to 12
+
+	public int getCountryId(int row);
+	// get the country id of a row; the id can be looked up in getCountries()
+
+	public CountryDictionary getCountries();
+	// get the dictionary that maps the country ids of the rows to the names and 3-Letter Codes of the countries
+
+	public ITemperature toTemperature(int row);
+	// create a Temperature object for a row; only rows that are returned to a caller need to be turned into objects
+
+}
@@ -8,6 +8,9 @@ public interface IWeatherIO {
 	 
 	 public ArrayList<ITemperature> readDataFromFile(String fileName) throws FileNotFoundException; 
 	// read all data from the weather data file 
+
+	 public TemperatureTable readTableFromFile(String fileName) throws FileNotFoundException; 
+	// read all data from the weather data file into a columnar table 
 	 	 
 	 public void writeSubjectHeaderInFile(String filename, String subject) throws IOException;
 	// 1. write the subject header before dumping data returned from each ClimateAnalyzer method 
@@ -0,0 +1,133 @@
+package climatechange;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+public class LatencyHistogram {
+	// Each power of two is split into 2^SUB_BUCKET_BITS buckets, so a recorded value is off by at most 1/32 (about 3%) of itself.
+	private static final int SUB_BUCKET_BITS = 5;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	// Values below SUB_BUCKETS get a bucket each. Every power of two from there up to 2^63 gets SUB_BUCKETS buckets.
+	private static final int NUM_BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+	private AtomicLongArray counts;
+	private LongAdder count;
+	private LongAdder sum;
+	private LongAccumulator max;
+
+	//
+	// Creates an empty histogram. Values can be recorded from any number of threads at once without locking.
+	//
+	public LatencyHistogram()
+	{
+		counts = new AtomicLongArray(NUM_BUCKETS);
+		count = new LongAdder();
+		sum = new LongAdder();
+		max = new LongAccumulator(Math::max, 0);
+	}
+
+	//
+	// Records a value, such as a latency in nanoseconds. Negative values are recorded as 0.
+	//
+	public void record(long value)
+	{
+		value = Math.max(value, 0);
+		counts.incrementAndGet(getBucket(value));
+		count.increment();
+		sum.add(value);
+		max.accumulate(value);
+	}
+
+	public long getCount()
+	{
+		return count.sum();
+	}
+
+	public double getMean()
+	{
+		long numValues = count.sum();
+		return numValues == 0 ? 0.0 : (double) sum.sum() / numValues;
+	}
+
+	public long getMax()
+	{
+		return max.get();
+	}
+
+	//
+	// Gets the value that the given fraction of the recorded values are at or below, such as 0.99 for the 99th percentile. The value is the
+	// highest one that falls into the same bucket, so it is never below the exact percentile and at most 3% above it.
+	//
+	public long getPercentile(double fraction)
+	{
+		long numValues = 0;
+		long[] snapshot = new long[NUM_BUCKETS];
+		for (int bucket = 0; bucket < NUM_BUCKETS; bucket++)
+		{
+			snapshot[bucket] = counts.get(bucket);
+			numValues += snapshot[bucket];
+		}
+
+		if (numValues == 0)
+		{
+			return 0;
+		}
+
+		long target = Math.max(1, (long) Math.ceil(fraction * numValues));
+		long seen = 0;
+		for (int bucket = 0; bucket < NUM_BUCKETS; bucket++)
+		{
+			seen += snapshot[bucket];
+			if (seen >= target)
+			{
+				return Math.min(getHighestValue(bucket), max.get());
+			}
+		}
+
+		return max.get();
+	}
+
+	//
+	// Empties the histogram. Values recorded while it is being emptied may or may not be kept.
+	//
+	public void reset()
+	{
+		for (int bucket = 0; bucket < NUM_BUCKETS; bucket++)
+		{
+			counts.set(bucket, 0);
+		}
+		count.reset();
+		sum.reset();
+		max.reset();
+	}
+
+	//
+	// Gets the bucket of a value: the value itself below SUB_BUCKETS, otherwise its power of two and its next SUB_BUCKET_BITS bits.
+	//
+	private static int getBucket(long value)
+	{
+		if (value < SUB_BUCKETS)
+		{
+			return (int) value;
+		}
+
+		int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+		return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) - SUB_BUCKETS);
+	}
+
+	//
+	// Gets the highest value that falls into a bucket.
+	//
+	private static long getHighestValue(int bucket)
+	{
+		if (bucket < SUB_BUCKETS)
+		{
+			return bucket;
+		}
+
+		int shift = bucket / SUB_BUCKETS - 1;
+		long lowestValue = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+		return lowestValue + (1L << shift) - 1;
+	}
+}
@@ -0,0 +1,535 @@
+package climatechange;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+public class MappedCsvParser {
+	// The largest part of a file that is mapped at once. A single mapping cannot be larger than Integer.MAX_VALUE bytes.
+	public static final int MAX_MAPPING_SIZE = 1 << 30;
+
+	// Powers of ten that are exactly representable as doubles, used by the fast path of parseTemperature().
+	private static final double[] POWERS_OF_TEN = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15,
+			1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+	private static final byte[] HEADER = "Temperature".getBytes(Charset.defaultCharset());
+
+	private ITemperatureSink sink;
+	private CountryDictionary countries;
+	// An open addressing hash table from the bytes of a country name to the country id in the dictionary, so each distinct country name
+	// and code is only turned into a String once.
+	private byte[][] internedNames;
+	private int[] internedIds;
+	private int numInterned;
+	// The trimmed start and end of each of the 5 fields of the line being parsed, reused for every line.
+	private int[] fieldBounds;
+	// Whether a line that cannot be parsed is skipped instead of stopping the parse, and how many were skipped and why the last one was.
+	private boolean skipMalformedLines;
+	private long numMalformedLines;
+	private IllegalArgumentException lastMalformedLine;
+
+	//
+	// Creates a parser that adds every parsed reading to the given table.
+	//
+	public MappedCsvParser(TemperatureTable theTable)
+	{
+		this(theTable, theTable.getCountries());
+	}
+
+	//
+	// Creates a parser that hands every parsed reading to a sink instead of storing it, with the countries interned in the given dictionary.
+	//
+	public MappedCsvParser(ITemperatureSink theSink, CountryDictionary theCountries)
+	{
+		sink = theSink;
+		countries = theCountries;
+		internedNames = new byte[256][];
+		internedIds = new int[256];
+		numInterned = 0;
+		fieldBounds = new int[10];
+	}
+
+	//
+	// Reads all the data from a weather data file into a new table by memory-mapping the file and parsing the fields straight from bytes.
+	//
+	public static TemperatureTable readTable(String fileName) throws FileNotFoundException, IOException
+	{
+		TemperatureTable table = new TemperatureTable();
+		new MappedCsvParser(table).parseFile(fileName);
+		return table;
+	}
+
+	//
+	// Parses every line of a weather data file. Files larger than MAX_MAPPING_SIZE are mapped one window at a time, with each window cut
+	// at the last line break in it. Nothing is kept per line, so files far larger than the heap can be streamed through a sink.
+	//
+	public void parseFile(String fileName) throws FileNotFoundException, IOException
+	{
+		RandomAccessFile inputFile = new RandomAccessFile(new File(fileName), "r"); // Throws a FileNotFoundException like a Scanner would.
+		try
+		{
+			FileChannel channel = inputFile.getChannel();
+			long fileSize = channel.size();
+			long position = 0;
+			while (position < fileSize)
+			{
+				int length = (int) Math.min(MAX_MAPPING_SIZE, fileSize - position);
+				MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+				int end = length;
+				if (position + length < fileSize)
+				{
+					end = lastLineEnd(buffer, 0, length);
+					if (end <= 0)
+					{
+						throw new IOException("A line of " + fileName + " is longer than " + MAX_MAPPING_SIZE + " bytes");
+					}
+				}
+
+				parseLines(buffer, 0, end);
+				position += end;
+			}
+		}
+		finally
+		{
+			inputFile.close();
+		}
+	}
+
+	//
+	// Parses the complete lines of a weather data file from a byte offset on, and returns the offset just after the last line that was
+	// parsed. A last line that has no line break yet is left for the next call, so a file that is still being written can be followed by
+	// calling this again with the returned offset. At most MAX_MAPPING_SIZE bytes are parsed per call.
+	//
+	public long parseFrom(String fileName, long offset) throws FileNotFoundException, IOException
+	{
+		RandomAccessFile inputFile = new RandomAccessFile(new File(fileName), "r");
+		try
+		{
+			FileChannel channel = inputFile.getChannel();
+			long fileSize = channel.size();
+			if (offset >= fileSize)
+			{
+				return offset;
+			}
+
+			int length = (int) Math.min(MAX_MAPPING_SIZE, fileSize - offset);
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+			int end = lastLineEnd(buffer, 0, length);
+			parseLines(buffer, 0, end);
+			return offset + end;
+		}
+		finally
+		{
+			inputFile.close();
+		}
+	}
+
+	//
+	// Gets the position just after the last line break in [start, end) of a buffer, or start if there is no line break.
+	//
+	static int lastLineEnd(ByteBuffer buffer, int start, int end)
+	{
+		for (int i = end - 1; i >= start; i--)
+		{
+			if (buffer.get(i) == '\n')
+			{
+				return i + 1;
+			}
+		}
+
+		return start;
+	}
+
+	//
+	// Makes a line that cannot be parsed be skipped and counted instead of throwing an IllegalArgumentException, so one bad line does not
+	// hold back the lines after it. Off by default.
+	//
+	public void setSkipMalformedLines(boolean skip)
+	{
+		skipMalformedLines = skip;
+	}
+
+	//
+	// Gets the number of lines that were skipped because they could not be parsed.
+	//
+	public long getNumMalformedLines()
+	{
+		return numMalformedLines;
+	}
+
+	//
+	// Gets the exception of the last line that was skipped, which names the line, or null if none was.
+	//
+	public IllegalArgumentException getLastMalformedLine()
+	{
+		return lastMalformedLine;
+	}
+
+	//
+	// Parses the lines in [start, end) of a buffer and hands each reading to the sink. Empty lines and the subject header are skipped.
+	//
+	public void parseLines(ByteBuffer buffer, int start, int end)
+	{
+		int lineStart = start;
+		while (lineStart < end)
+		{
+			int lineEnd = lineStart;
+			while (lineEnd < end && buffer.get(lineEnd) != '\n')
+			{
+				lineEnd++;
+			}
+
+			if (!skipMalformedLines)
+			{
+				parseLine(buffer, lineStart, lineEnd);
+			}
+			else
+			{
+				try
+				{
+					parseLine(buffer, lineStart, lineEnd);
+				}
+				catch (IllegalArgumentException e)
+				{
+					numMalformedLines++;
+					lastMalformedLine = e;
+				}
+			}
+			lineStart = lineEnd + 1;
+		}
+	}
+
+	//
+	// Parses one line of the form "temperature, year, month, country, code". Each field is trimmed the same way String.trim() would.
+	//
+	private void parseLine(ByteBuffer buffer, int lineStart, int lineEnd)
+	{
+		if (startsWith(buffer, lineStart, lineEnd, HEADER))
+		{
+			return; // Skips the subject header.
+		}
+
+		int numFields = 0;
+		int fieldStart = lineStart;
+		for (int i = lineStart; i <= lineEnd && numFields < 5; i++)
+		{
+			if (i == lineEnd || buffer.get(i) == ',')
+			{
+				fieldBounds[numFields * 2] = trimStart(buffer, fieldStart, i);
+				fieldBounds[numFields * 2 + 1] = trimEnd(buffer, fieldBounds[numFields * 2], i);
+				numFields++;
+				fieldStart = i + 1;
+			}
+		}
+
+		if (numFields == 1 && fieldBounds[0] == fieldBounds[1])
+		{
+			return; // Skips an empty line.
+		}
+
+		if (numFields < 5)
+		{
+			throw new IllegalArgumentException("Expected 5 fields but found " + numFields + " in line: " + toString(buffer, lineStart, lineEnd));
+		}
+
+		double temperature = parseTemperature(buffer, fieldBounds[0], fieldBounds[1]);
+		int year = parseYear(buffer, fieldBounds[2], fieldBounds[3]);
+		int month = parseMonth(buffer, fieldBounds[4], fieldBounds[5]);
+		int countryId = internCountry(buffer, fieldBounds[6], fieldBounds[7], fieldBounds[8], fieldBounds[9]);
+		sink.accept(temperature, year, month, countryId);
+	}
+
+	//
+	// Parses a temperature. Plain decimals with up to 15 digits are computed exactly from the digits, the same way Double.parseDouble()
+	// rounds them. Anything else, such as exponents or very long numbers, is handed to Double.parseDouble().
+	//
+	static double parseTemperature(ByteBuffer buffer, int start, int end)
+	{
+		int i = start;
+		boolean negative = false;
+		if (i < end && (buffer.get(i) == '-' || buffer.get(i) == '+'))
+		{
+			negative = buffer.get(i) == '-';
+			i++;
+		}
+
+		long mantissa = 0;
+		int numDigits = 0;
+		int numFractionDigits = 0;
+		boolean seenPoint = false;
+		for (; i < end; i++)
+		{
+			byte b = buffer.get(i);
+			if (b >= '0' && b <= '9')
+			{
+				mantissa = mantissa * 10 + (b - '0');
+				numDigits++;
+				if (seenPoint)
+				{
+					numFractionDigits++;
+				}
+			}
+			else if (b == '.' && !seenPoint)
+			{
+				seenPoint = true;
+			}
+			else
+			{
+				break;
+			}
+		}
+
+		if (i == end && numDigits > 0 && numDigits <= 15)
+		{
+			double value = mantissa / POWERS_OF_TEN[numFractionDigits]; // Both numbers are exact, so the division is correctly rounded.
+			return negative ? -value : value;
+		}
+
+		return Double.parseDouble(toString(buffer, start, end));
+	}
+
+	//
+	// Parses a year. Anything other than an optional sign followed by up to 9 digits is handed to Integer.parseInt().
+	//
+	static int parseYear(ByteBuffer buffer, int start, int end)
+	{
+		int i = start;
+		boolean negative = false;
+		if (i < end && (buffer.get(i) == '-' || buffer.get(i) == '+'))
+		{
+			negative = buffer.get(i) == '-';
+			i++;
+		}
+
+		int value = 0;
+		int numDigits = 0;
+		for (; i < end; i++)
+		{
+			byte b = buffer.get(i);
+			if (b < '0' || b > '9')
+			{
+				break;
+			}
+
+			value = value * 10 + (b - '0');
+			numDigits++;
+		}
+
+		if (i == end && numDigits > 0 && numDigits <= 9)
+		{
+			return negative ? -value : value;
+		}
+
+		return Integer.parseInt(toString(buffer, start, end));
+	}
+
+	//
+	// Parses a 3-letter month into an integer from 1 to 12, or 0 if the field is not a month.
+	//
+	static int parseMonth(ByteBuffer buffer, int start, int end)
+	{
+		if (end - start == 3)
+		{
+			for (int month = 1; month <= 12; month++)
+			{
+				String name = Months.toString(month);
+				if (buffer.get(start) == name.charAt(0) && buffer.get(start + 1) == name.charAt(1) && buffer.get(start + 2) == name.charAt(2))
+				{
+					return month;
+				}
+			}
+		}
+
+		return Months.toInteger(toString(buffer, start, end));
+	}
+
+	//
+	// Gets the country id of a country name, only creating Strings for the name and code the first time the name is seen.
+	//
+	private int internCountry(ByteBuffer buffer, int nameStart, int nameEnd, int codeStart, int codeEnd)
+	{
+		int hash = 0;
+		for (int i = nameStart; i < nameEnd; i++)
+		{
+			hash = 31 * hash + buffer.get(i);
+		}
+
+		int mask = internedNames.length - 1;
+		int slot = (hash ^ (hash >>> 16)) & mask;
+		while (internedNames[slot] != null)
+		{
+			if (equalBytes(buffer, nameStart, nameEnd, internedNames[slot]))
+			{
+				return internedIds[slot];
+			}
+
+			slot = (slot + 1) & mask;
+		}
+
+		byte[] name = new byte[nameEnd - nameStart];
+		for (int i = 0; i < name.length; i++)
+		{
+			name[i] = buffer.get(nameStart + i);
+		}
+
+		int countryId = countries.intern(new String(name, Charset.defaultCharset()), toString(buffer, codeStart, codeEnd));
+		internedNames[slot] = name;
+		internedIds[slot] = countryId;
+		numInterned++;
+		if (numInterned * 2 > internedNames.length)
+		{
+			growInternedNames();
+		}
+
+		return countryId;
+	}
+
+	//
+	// Doubles the size of the hash table of interned country names.
+	//
+	private void growInternedNames()
+	{
+		byte[][] oldNames = internedNames;
+		int[] oldIds = internedIds;
+		internedNames = new byte[oldNames.length * 2][];
+		internedIds = new int[oldNames.length * 2];
+		int mask = internedNames.length - 1;
+		for (int i = 0; i < oldNames.length; i++)
+		{
+			if (oldNames[i] != null)
+			{
+				int hash = hashOf(oldNames[i]);
+				int slot = (hash ^ (hash >>> 16)) & mask;
+				while (internedNames[slot] != null)
+				{
+					slot = (slot + 1) & mask;
+				}
+
+				internedNames[slot] = oldNames[i];
+				internedIds[slot] = oldIds[i];
+			}
+		}
+	}
+
+	//
+	// Gets the same hash of a byte array that internCountry() computes straight from the buffer.
+	//
+	private static int hashOf(byte[] bytes)
+	{
+		int hash = 0;
+		for (byte b : bytes)
+		{
+			hash = 31 * hash + b;
+		}
+
+		return hash;
+	}
+
+	//
+	// Checks if [start, end) of a buffer holds exactly the given bytes.
+	//
+	private static boolean equalBytes(ByteBuffer buffer, int start, int end, byte[] bytes)
+	{
+		if (end - start != bytes.length)
+		{
+			return false;
+		}
+
+		for (int i = 0; i < bytes.length; i++)
+		{
+			if (buffer.get(start + i) != bytes[i])
+			{
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	//
+	// Checks if [start, end) of a buffer starts with the given bytes.
+	//
+	private static boolean startsWith(ByteBuffer buffer, int start, int end, byte[] prefix)
+	{
+		return end - start >= prefix.length && equalBytes(buffer, start, start + prefix.length, prefix);
+	}
+
+	//
+	// Skips the leading bytes that String.trim() would remove.
+	//
+	private static int trimStart(ByteBuffer buffer, int start, int end)
+	{
+		while (start < end && (buffer.get(start) & 0xff) <= ' ')
+		{
+			start++;
+		}
+
+		return start;
+	}
+
+	//
+	// Skips the trailing bytes that String.trim() would remove.
+	//
+	private static int trimEnd(ByteBuffer buffer, int start, int end)
+	{
+		while (end > start && (buffer.get(end - 1) & 0xff) <= ' ')
+		{
+			end--;
+		}
+
+		return end;
+	}
+
+	//
+	// Creates a String from [start, end) of a buffer. This is only used for values that are seen for the first time and for error messages.
+	//
+	private static String toString(ByteBuffer buffer, int start, int end)
+	{
+		byte[] bytes = new byte[end - start];
+		for (int i = 0; i < bytes.length; i++)
+		{
+			bytes[i] = buffer.get(start + i);
+		}
+
+		return new String(bytes, Charset.defaultCharset());
+	}
+
+	//
+	// Measures the throughput in MB/s of loading a weather data file with the Scanner path and with the memory-mapped path.
+	//
+	public static void main(String[] args) throws IOException
+	{
+		String fileName = args.length > 0 ? args[0] : "data/world_temp_2000-2016.csv";
+		int repetitions = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+		double megabytes = new File(fileName).length() / (1024.0 * 1024.0);
+
+		for (int pass = 0; pass < 2; pass++) // The first pass warms up the JIT compiler and the page cache.
+		{
+			long scannerStart = System.nanoTime();
+			for (int i = 0; i < repetitions; i++)
+			{
+				new WeatherIO().readDataFromFileWithScanner(fileName);
+			}
+			double scannerSeconds = (System.nanoTime() - scannerStart) / 1e9;
+
+			long mappedStart = System.nanoTime();
+			int rows = 0;
+			for (int i = 0; i < repetitions; i++)
+			{
+				rows = readTable(fileName).size();
+			}
+			double mappedSeconds = (System.nanoTime() - mappedStart) / 1e9;
+
+			if (pass == 1)
+			{
+				System.out.println(fileName + ": " + rows + " rows, " + String.format("%.2f", megabytes) + " MB");
+				System.out.println("Scanner path:       " + String.format("%8.1f", megabytes * repetitions / scannerSeconds) + " MB/s");
+				System.out.println("Memory-mapped path: " + String.format("%8.1f", megabytes * repetitions / mappedSeconds) + " MB/s");
+			}
+		}
+	}
+}
@@ -0,0 +1,223 @@
+package climatechange;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+
+//
+// The readings of a TableSnapshot, read straight out of the memory-mapped columns of the snapshot instead of being copied into the heap.
+// The pages of the file are only read when a row on them is, and are kept by the page cache of the operating system rather than by the
+// JVM, so a table of tens of GB can be analyzed with a small heap, and the readings themselves never need to be garbage collected. Only the
+// country dictionary is read into the heap. The store cannot be changed.
+//
+public class MappedTemperatureStore implements ITemperatureStore {
+	// Each column is mapped in windows of 2^WINDOW_BITS rows, so the temperature windows are 1 GB, well below the 2 GB limit of a mapping.
+	private static final int WINDOW_BITS = 27;
+	private static final int ROWS_PER_WINDOW = 1 << WINDOW_BITS;
+	private static final int WINDOW_MASK = ROWS_PER_WINDOW - 1;
+
+	private File file;
+	private int size;
+	private CountryDictionary countries;
+	private DoubleBuffer[] temperatures;
+	private IntBuffer[] countryIds;
+	private ShortBuffer[] years;
+	private ByteBuffer[] months;
+
+	private MappedTemperatureStore(File theFile, FileChannel channel, TableSnapshot.Layout layout) throws IOException
+	{
+		file = theFile;
+		size = layout.numRows;
+		countries = layout.countries;
+		long position = layout.columnsPosition;
+		ByteBuffer[] temperatureWindows = mapColumn(channel, position, 8, size);
+		ByteBuffer[] countryIdWindows = mapColumn(channel, position += (long) size * 8, 4, size);
+		ByteBuffer[] yearWindows = mapColumn(channel, position += (long) size * 4, 2, size);
+		months = mapColumn(channel, position += (long) size * 2, 1, size);
+		temperatures = new DoubleBuffer[months.length];
+		countryIds = new IntBuffer[months.length];
+		years = new ShortBuffer[months.length];
+		for (int window = 0; window < months.length; window++)
+		{
+			temperatures[window] = temperatureWindows[window].asDoubleBuffer();
+			countryIds[window] = countryIdWindows[window].asIntBuffer();
+			years[window] = yearWindows[window].asShortBuffer();
+		}
+	}
+
+	//
+	// Maps a snapshot file, whatever file it was written for. The checksum is not verified, since that would read every page of the file.
+	//
+	public static MappedTemperatureStore open(File snapshotFile) throws FileNotFoundException, IOException
+	{
+		MappedTemperatureStore store = open(snapshotFile, null);
+		if (store == null)
+		{
+			throw new IOException(snapshotFile + " is not a snapshot of version " + TableSnapshot.VERSION);
+		}
+
+		return store;
+	}
+
+	//
+	// Maps the snapshot of a weather data file, first writing it with TableSnapshot.writeFromFile() if it does not exist yet or was written
+	// for an older version of the file. Neither step holds the rows in the heap, so the file can be larger than the heap.
+	//
+	public static MappedTemperatureStore loadOrBuild(String fileName) throws FileNotFoundException, IOException
+	{
+		File sourceFile = new File(fileName);
+		if (!sourceFile.isFile())
+		{
+			throw new FileNotFoundException(fileName + " (No such file)");
+		}
+
+		File snapshotFile = new File(fileName + TableSnapshot.FILE_EXTENSION);
+		MappedTemperatureStore store = snapshotFile.isFile() ? open(snapshotFile, sourceFile) : null;
+		if (store == null)
+		{
+			TableSnapshot.writeFromFile(fileName, snapshotFile);
+			store = open(snapshotFile, sourceFile);
+		}
+		if (store == null)
+		{
+			throw new IOException("The snapshot of " + fileName + " changed while it was being written");
+		}
+
+		return store;
+	}
+
+	//
+	// Maps a snapshot, or returns null if it is not a snapshot of this version or was not written for the current source file. The file is
+	// closed once it is mapped, since the mappings stay valid until they are garbage collected.
+	//
+	private static MappedTemperatureStore open(File snapshotFile, File sourceFile) throws FileNotFoundException, IOException
+	{
+		long start = ClimateMetrics.startTimer();
+		RandomAccessFile inputFile = new RandomAccessFile(snapshotFile, "r");
+		try
+		{
+			FileChannel channel = inputFile.getChannel();
+			TableSnapshot.Layout layout = TableSnapshot.readLayout(channel, sourceFile, false);
+			if (layout == null)
+			{
+				return null;
+			}
+
+			MappedTemperatureStore store = new MappedTemperatureStore(snapshotFile, channel, layout);
+			ClimateMetrics.recordPhase(ClimateMetrics.Phase.SNAPSHOT_READ, start, store.size);
+			return store;
+		}
+		finally
+		{
+			inputFile.close();
+		}
+	}
+
+	//
+	// Maps a column of numRows values of the given width, one window of ROWS_PER_WINDOW rows at a time.
+	//
+	private static ByteBuffer[] mapColumn(FileChannel channel, long position, int width, int numRows) throws IOException
+	{
+		int numWindows = (int) (((long) numRows + ROWS_PER_WINDOW - 1) >>> WINDOW_BITS);
+		ByteBuffer[] windows = new ByteBuffer[numWindows];
+		for (int window = 0; window < numWindows; window++)
+		{
+			long firstRow = (long) window << WINDOW_BITS;
+			long count = Math.min(ROWS_PER_WINDOW, numRows - firstRow);
+			windows[window] = channel.map(FileChannel.MapMode.READ_ONLY, position + firstRow * width, count * width).order(ByteOrder.LITTLE_ENDIAN);
+		}
+
+		return windows;
+	}
+
+	//
+	// Gets the snapshot file the rows are mapped from.
+	//
+	public File getFile()
+	{
+		return file;
+	}
+
+	@Override
+	public int size()
+	{
+		return size;
+	}
+
+	@Override
+	public double getTemperature(int row)
+	{
+		return temperatures[row >>> WINDOW_BITS].get(row & WINDOW_MASK);
+	}
+
+	@Override
+	public int getYear(int row)
+	{
+		return years[row >>> WINDOW_BITS].get(row & WINDOW_MASK);
+	}
+
+	@Override
+	public int getMonth(int row)
+	{
+		return months[row >>> WINDOW_BITS].get(row & WINDOW_MASK);
+	}
+
+	@Override
+	public int getCountryId(int row)
+	{
+		return countryIds[row >>> WINDOW_BITS].get(row & WINDOW_MASK);
+	}
+
+	@Override
+	public CountryDictionary getCountries()
+	{
+		return countries;
+	}
+
+	@Override
+	public ITemperature toTemperature(int row)
+	{
+		int countryId = getCountryId(row);
+		int sharedCountryId = countries.getSharedId(countryId);
+		if (sharedCountryId < 0)
+		{
+			return new Temperature(getTemperature(row), getYear(row), Months.toString(getMonth(row)), countries.getName(countryId), countries.getCode(countryId));
+		}
+
+		return new Temperature(getTemperature(row), getYear(row), getMonth(row), sharedCountryId);
+	}
+
+	//
+	// Analyzes a weather data file through its mapped snapshot, and prints how much of the heap the readings took.
+	// Arguments: file name
+	//
+	public static void main(String[] args) throws IOException
+	{
+		String fileName = args.length > 0 ? args[0] : "data/world_temp_2000-2016.csv";
+		long start = System.nanoTime();
+		MappedTemperatureStore store = loadOrBuild(fileName);
+		ClimateAnalyzer analyzer = new ClimateAnalyzer(store);
+		double loadMillis = (System.nanoTime() - start) / 1e6;
+
+		Runtime runtime = Runtime.getRuntime();
+		System.gc();
+		double heapMegabytes = (runtime.totalMemory() - runtime.freeMemory()) / (1024.0 * 1024.0);
+		double fileMegabytes = store.getFile().length() / (1024.0 * 1024.0);
+		System.out.println("Mapped " + store.size() + " rows (" + String.format("%.1f", fileMegabytes) + " MB) from " + store.getFile() + " in "
+				+ String.format("%.1f", loadMillis) + " ms, " + String.format("%.1f", heapMegabytes) + " MB of heap in use");
+
+		start = System.nanoTime();
+		System.out.println("Top 10 lowest temperatures: " + analyzer.allCountriesGetTop10LowestTemp());
+		System.out.println("Top 10 highest temperatures: " + analyzer.allCountriesGetTop10HighestTemp());
+		System.out.println("Readings within [40, 100]: " + analyzer.allCountriesGetAllDataWithinTempRange(40.0, 100.0).size());
+		System.out.println("Top 10 January changes 2000-2016: " + analyzer.allCountriesTop10TempDelta(1, 2000, 2016));
+		System.out.println("Queries took " + String.format("%.1f", (System.nanoTime() - start) / 1e6) + " ms");
+	}
+}
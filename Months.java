@@ -0,0 +1,40 @@
+package climatechange;
+
+public final class Months {
+	// The 3-letter month names used in the weather data file, indexed by the month number minus one.
+	private static final String[] MONTH_NAMES = {"Jan", "Feb", "Mar", "Apr", "May", "Jun", "Jul", "Aug", "Sep", "Oct", "Nov", "Dec"};
+
+	private Months()
+	{
+	}
+
+	//
+	// Gets the 3-letter String value of a month given its integer value from 1 to 12. Returns null for any other integer, the same way a
+	// lookup of a missing key in a HashMap would.
+	//
+	public static String toString(int monthNum)
+	{
+		if (monthNum < 1 || monthNum > 12)
+		{
+			return null;
+		}
+
+		return MONTH_NAMES[monthNum - 1];
+	}
+
+	//
+	// Gets the integer value from 1 to 12 of a 3-letter month. Returns 0 if the String is not one of the months in the weather data file.
+	//
+	public static int toInteger(String monthString)
+	{
+		for (int i = 0; i < MONTH_NAMES.length; i++)
+		{
+			if (MONTH_NAMES[i].equals(monthString))
+			{
+				return i + 1;
+			}
+		}
+
+		return 0;
+	}
+}
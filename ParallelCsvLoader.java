@@ -0,0 +1,210 @@
+package climatechange;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+public class ParallelCsvLoader {
+	// Files smaller than this are parsed on the calling thread, because starting the workers would cost more than it saves.
+	public static final long SEQUENTIAL_THRESHOLD = 16L * 1024 * 1024;
+	// Each worker gets several chunks, so a worker that finishes early can take over work from one that is still busy.
+	private static final int CHUNKS_PER_WORKER = 4;
+
+	private int parallelism;
+
+	//
+	// Creates a loader that uses one worker for each available processor.
+	//
+	public ParallelCsvLoader()
+	{
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	public ParallelCsvLoader(int theParallelism)
+	{
+		parallelism = Math.max(1, theParallelism);
+	}
+
+	//
+	// Reads all the data from a weather data file into a new table with one worker for each available processor.
+	//
+	public static TemperatureTable readTable(String fileName) throws FileNotFoundException, IOException
+	{
+		return new ParallelCsvLoader().load(fileName);
+	}
+
+	//
+	// Reads all the data from a weather data file into a new table. The file is split into byte ranges that start and end on line breaks,
+	// each range is parsed into its own table on a ForkJoinPool worker, and the tables are appended in file order, so the rows end up in
+	// exactly the same order as if the file had been parsed on one thread.
+	//
+	public TemperatureTable load(String fileName) throws FileNotFoundException, IOException
+	{
+		File inputFile = new File(fileName);
+		if (parallelism == 1 || inputFile.length() < SEQUENTIAL_THRESHOLD)
+		{
+			return MappedCsvParser.readTable(fileName);
+		}
+
+		RandomAccessFile randomAccessFile = new RandomAccessFile(inputFile, "r");
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try
+		{
+			FileChannel channel = randomAccessFile.getChannel();
+			long[] chunkStarts = findChunkStarts(channel);
+			List<ForkJoinTask<TemperatureTable>> tasks = new ArrayList<ForkJoinTask<TemperatureTable>>();
+			for (int chunk = 0; chunk + 1 < chunkStarts.length; chunk++)
+			{
+				long start = chunkStarts[chunk];
+				long end = chunkStarts[chunk + 1];
+				if (end > start)
+				{
+					tasks.add(pool.submit(() -> parseChunk(channel, start, end)));
+				}
+			}
+
+			List<TemperatureTable> partialTables = new ArrayList<TemperatureTable>();
+			int numRows = 0;
+			for (ForkJoinTask<TemperatureTable> task : tasks)
+			{
+				TemperatureTable partialTable = task.get();
+				partialTables.add(partialTable);
+				numRows += partialTable.size();
+			}
+
+			TemperatureTable table = new TemperatureTable(numRows);
+			for (TemperatureTable partialTable : partialTables)
+			{
+				table.appendAll(partialTable);
+			}
+
+			return table;
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while loading " + fileName, e);
+		}
+		catch (ExecutionException e)
+		{
+			if (e.getCause() instanceof IOException)
+			{
+				throw (IOException) e.getCause();
+			}
+			if (e.getCause() instanceof RuntimeException)
+			{
+				throw (RuntimeException) e.getCause();
+			}
+			throw new IOException("Could not load " + fileName, e.getCause());
+		}
+		finally
+		{
+			pool.shutdown();
+			randomAccessFile.close();
+		}
+	}
+
+	//
+	// Splits a file into chunks of about equal size. Every chunk but the first starts just after a line break, and no chunk is larger than
+	// can be mapped at once. The returned array holds the start of each chunk followed by the size of the file.
+	//
+	private long[] findChunkStarts(FileChannel channel) throws IOException
+	{
+		long fileSize = channel.size();
+		int numChunks = (int) Math.max(parallelism * CHUNKS_PER_WORKER, fileSize / (MappedCsvParser.MAX_MAPPING_SIZE / 2) + 1);
+		long[] chunkStarts = new long[numChunks + 1];
+		chunkStarts[numChunks] = fileSize;
+		for (int chunk = 1; chunk < numChunks; chunk++)
+		{
+			long guess = Math.max(fileSize / numChunks * chunk, chunkStarts[chunk - 1]);
+			chunkStarts[chunk] = findNextLineStart(channel, guess, fileSize);
+		}
+
+		return chunkStarts;
+	}
+
+	//
+	// Finds the start of the first line that begins at or after a position, or the size of the file if there is none.
+	//
+	private static long findNextLineStart(FileChannel channel, long position, long fileSize) throws IOException
+	{
+		if (position == 0)
+		{
+			return 0;
+		}
+
+		long searchStart = position - 1; // A line starts at the position if the byte before it is a line break.
+		while (searchStart < fileSize)
+		{
+			int length = (int) Math.min(64 * 1024, fileSize - searchStart);
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, searchStart, length);
+			for (int i = 0; i < length; i++)
+			{
+				if (buffer.get(i) == '\n')
+				{
+					return searchStart + i + 1;
+				}
+			}
+
+			searchStart += length;
+		}
+
+		return fileSize;
+	}
+
+	//
+	// Parses the lines in [start, end) of a file into a new table.
+	//
+	private static TemperatureTable parseChunk(FileChannel channel, long start, long end) throws IOException
+	{
+		int length = (int) (end - start);
+		MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+		TemperatureTable table = new TemperatureTable(length / 32); // A line of the weather data file is about 32 bytes long.
+		new MappedCsvParser(table).parseLines(buffer, 0, length);
+		return table;
+	}
+
+	//
+	// Measures the throughput in MB/s of loading a weather data file on one thread and with the parallel loader.
+	//
+	public static void main(String[] args) throws IOException
+	{
+		String fileName = args.length > 0 ? args[0] : "data/world_temp_2000-2016.csv";
+		int repetitions = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+		double megabytes = new File(fileName).length() / (1024.0 * 1024.0);
+		int processors = Runtime.getRuntime().availableProcessors();
+
+		for (int pass = 0; pass < 2; pass++) // The first pass warms up the JIT compiler and the page cache.
+		{
+			long sequentialStart = System.nanoTime();
+			for (int i = 0; i < repetitions; i++)
+			{
+				MappedCsvParser.readTable(fileName);
+			}
+			double sequentialSeconds = (System.nanoTime() - sequentialStart) / 1e9;
+
+			long parallelStart = System.nanoTime();
+			int rows = 0;
+			for (int i = 0; i < repetitions; i++)
+			{
+				rows = readTable(fileName).size();
+			}
+			double parallelSeconds = (System.nanoTime() - parallelStart) / 1e9;
+
+			if (pass == 1)
+			{
+				System.out.println(fileName + ": " + rows + " rows, " + String.format("%.2f", megabytes) + " MB, " + processors + " processors");
+				System.out.println("Sequential: " + String.format("%8.1f", megabytes * repetitions / sequentialSeconds) + " MB/s");
+				System.out.println("Parallel:   " + String.format("%8.1f", megabytes * repetitions / parallelSeconds) + " MB/s");
+			}
+		}
+	}
+}
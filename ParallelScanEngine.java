@@ -0,0 +1,208 @@
+package climatechange;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+public class ParallelScanEngine {
+	// A range of rows is not split up any further once it has this many rows or fewer.
+	public static final int MIN_ROWS_PER_TASK = 1 << 14;
+	// The number of ranges each worker gets, so a worker that finishes early can take over part of the work of a slower one.
+	private static final int TASKS_PER_WORKER = 4;
+
+	private ITemperatureStore table;
+	private TopKSelector topK;
+	private ForkJoinPool pool;
+
+	//
+	// Creates an engine that scans the rows of a table on its own ForkJoinPool with the given number of workers.
+	//
+	public ParallelScanEngine(ITemperatureStore theTable, int parallelism)
+	{
+		table = theTable;
+		topK = new TopKSelector(theTable);
+		pool = new ForkJoinPool(parallelism);
+	}
+
+	//
+	// Gets the rows of the k countries with the lowest readings, in the same order TopKSelector.selectLowest() returns them.
+	//
+	public int[] selectLowest(int k, int month, int year)
+	{
+		return topK.select(findBestRows(month, year, false), k, false);
+	}
+
+	//
+	// Gets the rows of the k countries with the highest readings, in the same order TopKSelector.selectHighest() returns them.
+	//
+	public int[] selectHighest(int k, int month, int year)
+	{
+		return topK.select(findBestRows(month, year, true), k, true);
+	}
+
+	//
+	// Finds the lowest (or highest) row of each country. Each task finds the best rows of its own range, and the results of two neighbouring
+	// ranges are merged with the left range winning ties, so the result is the same as one TopKSelector.findBestRows() over every row.
+	//
+	public int[] findBestRows(int month, int year, boolean highest)
+	{
+		return pool.invoke(new BestRowsTask(0, table.size(), getRowsPerTask(), month, year, highest));
+	}
+
+	//
+	// Gets the rows of all countries with a temperature within [lowTemp, highTemp], in the same order and with the same duplicates left out
+	// as SortedTemperatureIndex.findRowsWithinRange(), without sorting every row of the table first.
+	//
+	public int[] findRowsWithinRange(double lowTemp, double highTemp)
+	{
+		return findRows(-1, lowTemp, highTemp);
+	}
+
+	//
+	// Gets the rows of one country with a temperature within [lowTemp, highTemp]. Returns no rows for an unknown country.
+	//
+	public int[] findRowsWithinRange(int countryId, double lowTemp, double highTemp)
+	{
+		return countryId < 0 ? new int[0] : findRows(countryId, lowTemp, highTemp);
+	}
+
+	//
+	// Gets the number of workers.
+	//
+	public int getParallelism()
+	{
+		return pool.getParallelism();
+	}
+
+	//
+	// Stops the workers once the tasks that are running have finished.
+	//
+	public void shutdown()
+	{
+		pool.shutdown();
+	}
+
+	//
+	// Collects the matching rows of each range, sorts each range's rows, merges the sorted rows of neighbouring ranges, and finally leaves
+	// out rows equal to the row before them. A countryId of -1 matches every country.
+	//
+	private int[] findRows(int countryId, double lowTemp, double highTemp)
+	{
+		RowOrder order = new RowOrder(table);
+		int[] rows = pool.invoke(new RangeTask(0, table.size(), getRowsPerTask(), countryId, lowTemp, highTemp, order));
+		int numDistinct = 0;
+		for (int i = 0; i < rows.length; i++)
+		{
+			if (i == 0 || order.compare(rows[numDistinct - 1], rows[i]) != 0)
+			{
+				rows[numDistinct++] = rows[i];
+			}
+		}
+
+		return numDistinct == rows.length ? rows : Arrays.copyOf(rows, numDistinct);
+	}
+
+	private int getRowsPerTask()
+	{
+		return Math.max(MIN_ROWS_PER_TASK, table.size() / (pool.getParallelism() * TASKS_PER_WORKER) + 1);
+	}
+
+	//
+	// Finds the best row of each country in [start, end), splitting the range in half until it is small enough.
+	//
+	private class BestRowsTask extends RecursiveTask<int[]> {
+		private static final long serialVersionUID = 1L;
+
+		private int start;
+		private int end;
+		private int rowsPerTask;
+		private int month;
+		private int year;
+		private boolean highest;
+
+		private BestRowsTask(int theStart, int theEnd, int theRowsPerTask, int theMonth, int theYear, boolean theHighest)
+		{
+			start = theStart;
+			end = theEnd;
+			rowsPerTask = theRowsPerTask;
+			month = theMonth;
+			year = theYear;
+			highest = theHighest;
+		}
+
+		@Override
+		protected int[] compute()
+		{
+			if (end - start <= rowsPerTask)
+			{
+				return topK.findBestRows(start, end, month, year, highest);
+			}
+
+			int middle = (start + end) >>> 1;
+			BestRowsTask left = new BestRowsTask(start, middle, rowsPerTask, month, year, highest);
+			left.fork();
+			int[] rightBestRows = new BestRowsTask(middle, end, rowsPerTask, month, year, highest).compute();
+			int[] bestRows = left.join();
+			topK.mergeBestRows(bestRows, rightBestRows, highest);
+			return bestRows;
+		}
+	}
+
+	//
+	// Finds the matching rows in [start, end) in sorted order, splitting the range in half until it is small enough.
+	//
+	private class RangeTask extends RecursiveTask<int[]> {
+		private static final long serialVersionUID = 1L;
+
+		private int start;
+		private int end;
+		private int rowsPerTask;
+		private int countryId;
+		private double lowTemp;
+		private double highTemp;
+		private RowOrder order;
+
+		private RangeTask(int theStart, int theEnd, int theRowsPerTask, int theCountryId, double theLowTemp, double theHighTemp, RowOrder theOrder)
+		{
+			start = theStart;
+			end = theEnd;
+			rowsPerTask = theRowsPerTask;
+			countryId = theCountryId;
+			lowTemp = theLowTemp;
+			highTemp = theHighTemp;
+			order = theOrder;
+		}
+
+		@Override
+		protected int[] compute()
+		{
+			if (end - start <= rowsPerTask)
+			{
+				int[] matches = new int[16];
+				int numMatches = 0;
+				for (int row = start; row < end; row++)
+				{
+					double temperature = table.getTemperature(row);
+					if (temperature >= lowTemp && temperature <= highTemp && (countryId < 0 || table.getCountryId(row) == countryId))
+					{
+						if (numMatches == matches.length)
+						{
+							matches = Arrays.copyOf(matches, numMatches * 2);
+						}
+						matches[numMatches++] = row;
+					}
+				}
+
+				matches = Arrays.copyOf(matches, numMatches);
+				order.sort(matches);
+				return matches;
+			}
+
+			int middle = (start + end) >>> 1;
+			RangeTask left = new RangeTask(start, middle, rowsPerTask, countryId, lowTemp, highTemp, order);
+			left.fork();
+			int[] rightRows = new RangeTask(middle, end, rowsPerTask, countryId, lowTemp, highTemp, order).compute();
+			return order.merge(left.join(), rightRows);
+		}
+	}
+}
@@ -0,0 +1,180 @@
+package climatechange;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+//
+// The list of partitions of a weather data file that WeatherIO.writePartitions() has split into one file per year. It is kept as a small
+// text file named manifest.csv next to the year files, with one line per year:
+//
+//   Year, Rows, File
+//   2000, 2352, year_2000.csv
+//
+// Each year file is a weather data file of its own, with the rows of that year in the order they had in the original file.
+//
+public class PartitionManifest {
+	public static final String FILE_NAME = "manifest.csv";
+	private static final String HEADER = "Year, Rows, File";
+
+	private File directory;
+	// The years in ascending order, and the number of rows and the file name of each.
+	private int[] years;
+	private int[] numRows;
+	private String[] fileNames;
+
+	//
+	// Creates a manifest for the given years, which must be in ascending order, with the rows and file of each year at the same position.
+	//
+	public PartitionManifest(File theDirectory, int[] theYears, int[] theNumRows, String[] theFileNames)
+	{
+		for (int i = 1; i < theYears.length; i++)
+		{
+			if (theYears[i] <= theYears[i - 1])
+			{
+				throw new IllegalArgumentException("The years of a manifest must be in ascending order");
+			}
+		}
+
+		directory = theDirectory;
+		years = theYears.clone();
+		numRows = theNumRows.clone();
+		fileNames = theFileNames.clone();
+	}
+
+	//
+	// Reads the manifest of a partitioned directory. Throws a FileNotFoundException if the directory has no manifest, and an IOException if
+	// a line of it cannot be read.
+	//
+	public static PartitionManifest read(File directory) throws FileNotFoundException, IOException
+	{
+		File manifestFile = new File(directory, FILE_NAME);
+		if (!manifestFile.isFile())
+		{
+			throw new FileNotFoundException(manifestFile + " (No such file)");
+		}
+
+		List<String> lines = Files.readAllLines(manifestFile.toPath(), Charset.defaultCharset());
+		int[] years = new int[lines.size()];
+		int[] numRows = new int[lines.size()];
+		String[] fileNames = new String[lines.size()];
+		int numPartitions = 0;
+		for (String line : lines)
+		{
+			if (line.trim().isEmpty() || line.startsWith(HEADER))
+			{
+				continue;
+			}
+
+			String[] fields = line.split(",", 3);
+			try
+			{
+				years[numPartitions] = Integer.parseInt(fields[0].trim());
+				numRows[numPartitions] = Integer.parseInt(fields[1].trim());
+				fileNames[numPartitions] = fields[2].trim();
+			}
+			catch (NumberFormatException | ArrayIndexOutOfBoundsException e)
+			{
+				throw new IOException("Cannot read the line \"" + line + "\" of " + manifestFile, e);
+			}
+			numPartitions++;
+		}
+
+		try
+		{
+			return new PartitionManifest(directory, Arrays.copyOf(years, numPartitions), Arrays.copyOf(numRows, numPartitions),
+					Arrays.copyOf(fileNames, numPartitions));
+		}
+		catch (IllegalArgumentException e)
+		{
+			throw new IOException(manifestFile + " does not list its years in ascending order", e);
+		}
+	}
+
+	//
+	// Writes the manifest into its directory. It is written to a temporary file first and then moved into place, so a directory that is
+	// being partitioned again never has a manifest that lists only some of its files.
+	//
+	public void write() throws IOException
+	{
+		List<String> lines = new ArrayList<String>();
+		lines.add(HEADER);
+		for (int i = 0; i < years.length; i++)
+		{
+			lines.add(years[i] + ", " + numRows[i] + ", " + fileNames[i]);
+		}
+
+		File tempFile = File.createTempFile(FILE_NAME, ".tmp", directory);
+		try
+		{
+			Files.write(tempFile.toPath(), lines, Charset.defaultCharset());
+			Files.move(tempFile.toPath(), new File(directory, FILE_NAME).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+		finally
+		{
+			tempFile.delete(); // Only does something if the manifest was not moved into place.
+		}
+	}
+
+	public File getDirectory()
+	{
+		return directory;
+	}
+
+	//
+	// Gets the years that have a partition, in ascending order.
+	//
+	public int[] getYears()
+	{
+		return years.clone();
+	}
+
+	public boolean hasYear(int year)
+	{
+		return Arrays.binarySearch(years, year) >= 0;
+	}
+
+	//
+	// Gets the file that holds the rows of a year, or null if the year has no rows.
+	//
+	public File getFile(int year)
+	{
+		int i = Arrays.binarySearch(years, year);
+		return i < 0 ? null : new File(directory, fileNames[i]);
+	}
+
+	//
+	// Gets the number of rows of a year, which is 0 for a year without a partition.
+	//
+	public int getRows(int year)
+	{
+		int i = Arrays.binarySearch(years, year);
+		return i < 0 ? 0 : numRows[i];
+	}
+
+	//
+	// Gets the number of rows of all years together.
+	//
+	public long getTotalRows()
+	{
+		long totalRows = 0;
+		for (int rows : numRows)
+		{
+			totalRows += rows;
+		}
+
+		return totalRows;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "PartitionManifest(" + directory + ", " + years.length + " years, " + getTotalRows() + " rows)";
+	}
+}
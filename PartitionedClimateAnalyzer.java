@@ -0,0 +1,362 @@
+package climatechange;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.TreeSet;
+
+//
+// Answers the IClimateAnalyzer queries over a directory that WeatherIO.writePartitions() has split into one file per year. No partition is
+// read until a query needs it. Queries for a year, such as Task A-2 and Task C-1, only read the partitions of their years, so the per-year
+// reports never touch the rest of the data. Queries over all years read every partition once and analyze them together.
+//
+public class PartitionedClimateAnalyzer implements IClimateAnalyzer {
+	private PartitionManifest manifest;
+	// The tables and analyzers of the partitions that have been read so far, by year. Each partition is read through its TableSnapshot,
+	// so it is only parsed the first time any run reads it.
+	private HashMap<Integer, TemperatureTable> tables;
+	private HashMap<Integer, ClimateAnalyzer> analyzers;
+	// The analyzer over every partition, built the first time a query that is not for one year is asked. Once it exists, the tables of
+	// the years are merged into it and dropped, and the queries for a year are answered from it, so no reading is held twice.
+	private ClimateAnalyzer allYears;
+
+	//
+	// Opens a partitioned directory by reading its manifest. None of the partitions are read yet.
+	//
+	public PartitionedClimateAnalyzer(String directory) throws FileNotFoundException, IOException
+	{
+		this(PartitionManifest.read(new File(directory)));
+	}
+
+	public PartitionedClimateAnalyzer(PartitionManifest theManifest)
+	{
+		manifest = theManifest;
+		tables = new HashMap<Integer, TemperatureTable>();
+		analyzers = new HashMap<Integer, ClimateAnalyzer>();
+	}
+
+	public PartitionManifest getManifest()
+	{
+		return manifest;
+	}
+
+	//
+	// Gets the number of partitions that have been read so far.
+	//
+	public synchronized int getLoadedPartitions()
+	{
+		return allYears != null ? manifest.getYears().length : tables.size();
+	}
+
+	public synchronized boolean isLoaded(int year)
+	{
+		return allYears != null ? manifest.hasYear(year) : tables.containsKey(year);
+	}
+
+	//
+	// Months and countries are not partitioned, so these queries need every year.
+	//
+	@Override
+	public ITemperature getLowestTempByMonth(String country, int month)
+	{
+		return getAllYears().getLowestTempByMonth(country, month);
+	}
+
+	@Override
+	public ITemperature getHighestTempByMonth(String country, int month)
+	{
+		return getAllYears().getHighestTempByMonth(country, month);
+	}
+
+	//
+	// Gets the lowest temperature reading for a country in a year from the partition of the year alone. A year without a partition has no
+	// readings, which is answered with null like ClimateAnalyzer answers it.
+	//
+	@Override
+	public ITemperature getLowestTempByYear(String country, int year)
+	{
+		ClimateAnalyzer analyzer = getAnalyzer(year);
+		return analyzer == null ? null : analyzer.getLowestTempByYear(country, year);
+	}
+
+	@Override
+	public ITemperature getHighestTempByYear(String country, int year)
+	{
+		ClimateAnalyzer analyzer = getAnalyzer(year);
+		return analyzer == null ? null : analyzer.getHighestTempByYear(country, year);
+	}
+
+	@Override
+	public TreeSet<ITemperature> getTempWithinRange(String country, double rangeLowTemp, double rangeHighTemp)
+	{
+		return getAllYears().getTempWithinRange(country, rangeLowTemp, rangeHighTemp);
+	}
+
+	@Override
+	public ITemperature getLowestTempYearByCountry(String country)
+	{
+		return getAllYears().getLowestTempYearByCountry(country);
+	}
+
+	@Override
+	public ITemperature getHighestTempYearByCountry(String country)
+	{
+		return getAllYears().getHighestTempYearByCountry(country);
+	}
+
+	@Override
+	public ArrayList<ITemperature> allCountriesGetTop10LowestTemp(int month)
+	{
+		return getAllYears().allCountriesGetTop10LowestTemp(month);
+	}
+
+	@Override
+	public ArrayList<ITemperature> allCountriesGetTop10HighestTemp(int month)
+	{
+		return getAllYears().allCountriesGetTop10HighestTemp(month);
+	}
+
+	@Override
+	public ArrayList<ITemperature> allCountriesGetTop10LowestTemp()
+	{
+		return getAllYears().allCountriesGetTop10LowestTemp();
+	}
+
+	@Override
+	public ArrayList<ITemperature> allCountriesGetTop10HighestTemp()
+	{
+		return getAllYears().allCountriesGetTop10HighestTemp();
+	}
+
+	//
+	// Gets the k countries with the lowest readings of a month and year. A single year is answered from its partition alone.
+	//
+	public ArrayList<ITemperature> allCountriesGetTopKLowestTemp(int k, int month, int year)
+	{
+		if (year == TopKSelector.ANY_YEAR)
+		{
+			return getAllYears().allCountriesGetTopKLowestTemp(k, month, year);
+		}
+
+		ClimateAnalyzer analyzer = getAnalyzer(year);
+		return analyzer == null ? new ArrayList<ITemperature>() : analyzer.allCountriesGetTopKLowestTemp(k, month, year);
+	}
+
+	public ArrayList<ITemperature> allCountriesGetTopKHighestTemp(int k, int month, int year)
+	{
+		if (year == TopKSelector.ANY_YEAR)
+		{
+			return getAllYears().allCountriesGetTopKHighestTemp(k, month, year);
+		}
+
+		ClimateAnalyzer analyzer = getAnalyzer(year);
+		return analyzer == null ? new ArrayList<ITemperature>() : analyzer.allCountriesGetTopKHighestTemp(k, month, year);
+	}
+
+	@Override
+	public ArrayList<ITemperature> allCountriesGetAllDataWithinTempRange(double lowRangeTemp, double highRangeTemp)
+	{
+		return getAllYears().allCountriesGetAllDataWithinTempRange(lowRangeTemp, highRangeTemp);
+	}
+
+	@Override
+	public ArrayList<ITemperature> allCountriesTop10TempDelta(int month, int year1, int year2)
+	{
+		long start = ClimateMetrics.startTimer();
+		ArrayList<ITemperature> topDeltas = findTopNTempDelta(QueryDescriptor.Type.TOP_10_TEMP_DELTA, 10, month, year1, year2);
+		ClimateMetrics.recordQuery(QueryDescriptor.Type.TOP_10_TEMP_DELTA, start, topDeltas.size());
+		return topDeltas;
+	}
+
+	//
+	// Gets the n countries with the largest change in temperature in a month between two years.
+	//
+	public ArrayList<ITemperature> allCountriesTopNTempDelta(int n, int month, int year1, int year2)
+	{
+		return findTopNTempDelta(null, n, month, year1, year2);
+	}
+
+	//
+	// Runs the interactive analysis over every year.
+	//
+	@Override
+	public void runClimateAnalyzer() throws IOException
+	{
+		getAllYears().runClimateAnalyzer();
+	}
+
+	//
+	// Finds the n countries with the largest change in temperature in a month between two years. Only the partitions of the two years are
+	// read, and their rows are joined by country name in a DeltaAccumulator, which ranks the changes the same way ClimateAnalyzer does. The
+	// rows it reads are added to the metrics of the given query type, unless the type is null. Once every partition has been merged, the
+	// merged analyzer answers instead.
+	//
+	private ArrayList<ITemperature> findTopNTempDelta(QueryDescriptor.Type type, int n, int month, int year1, int year2)
+	{
+		ClimateAnalyzer merged = getMergedAnalyzer();
+		if (merged != null)
+		{
+			return merged.allCountriesTopNTempDelta(n, month, year1, year2);
+		}
+
+		CountryDictionary countries = new CountryDictionary();
+		DeltaAccumulator deltas = new DeltaAccumulator(countries, n, month, year1, year2);
+		long rows = accumulate(getTable(year1), countries, deltas);
+		if (year2 != year1)
+		{
+			rows += accumulate(getTable(year2), countries, deltas);
+		}
+
+		ClimateMetrics.addRowsScanned(type, rows);
+		return deltas.getResult();
+	}
+
+	//
+	// Hands every row of a partition to an accumulator, with the country ids of the partition translated to the given dictionary. Returns
+	// the number of rows, which is 0 for a year without a partition.
+	//
+	private static long accumulate(TemperatureTable table, CountryDictionary countries, IAccumulator<?> accumulator)
+	{
+		if (table == null)
+		{
+			return 0;
+		}
+
+		CountryDictionary tableCountries = table.getCountries();
+		int[] countryIdMap = new int[tableCountries.size()];
+		for (int countryId = 0; countryId < countryIdMap.length; countryId++)
+		{
+			countryIdMap[countryId] = countries.intern(tableCountries.getName(countryId), tableCountries.getCode(countryId));
+		}
+
+		for (int row = 0; row < table.size(); row++)
+		{
+			accumulator.accept(table.getTemperature(row), table.getYear(row), table.getMonth(row), countryIdMap[table.getCountryId(row)]);
+		}
+
+		return table.size();
+	}
+
+	//
+	// Gets the table of a year, reading its partition the first time. Returns null for a year without a partition.
+	//
+	private synchronized TemperatureTable getTable(int year)
+	{
+		TemperatureTable table = tables.get(year);
+		if (table == null && manifest.hasYear(year))
+		{
+			table = readPartition(year);
+			tables.put(year, table);
+		}
+
+		return table;
+	}
+
+	private TemperatureTable readPartition(int year)
+	{
+		try
+		{
+			return TableSnapshot.loadOrParse(manifest.getFile(year).getPath());
+		}
+		catch (FileNotFoundException e)
+		{
+			throw new IllegalStateException("The partition of " + year + " listed in the manifest is missing", e);
+		}
+	}
+
+	//
+	// Gets the analyzer of a year, building it over the table of the year the first time. Returns null for a year without a partition.
+	// Once every partition has been merged, the merged analyzer is returned for every year.
+	//
+	private synchronized ClimateAnalyzer getAnalyzer(int year)
+	{
+		if (allYears != null)
+		{
+			return allYears;
+		}
+
+		ClimateAnalyzer analyzer = analyzers.get(year);
+		if (analyzer == null)
+		{
+			TemperatureTable table = getTable(year);
+			if (table == null)
+			{
+				return null;
+			}
+
+			analyzer = new ClimateAnalyzer(table);
+			analyzers.put(year, analyzer);
+		}
+
+		return analyzer;
+	}
+
+	//
+	// Gets the analyzer over every partition, appended in year order, building it the first time. Each year table is dropped as soon as it
+	// has been appended, and partitions that were not read yet are read without being kept, so at most one year is held twice while the
+	// merged table is built.
+	//
+	private synchronized ClimateAnalyzer getAllYears()
+	{
+		if (allYears == null)
+		{
+			TemperatureTable table = new TemperatureTable((int) Math.min(manifest.getTotalRows(), Integer.MAX_VALUE - 8));
+			analyzers.clear();
+			for (int year : manifest.getYears())
+			{
+				TemperatureTable yearTable = tables.remove(year);
+				table.appendAll(yearTable != null ? yearTable : readPartition(year));
+			}
+
+			allYears = new ClimateAnalyzer(table);
+		}
+
+		return allYears;
+	}
+
+	//
+	// Gets the analyzer over every partition if it has been built, or null.
+	//
+	private synchronized ClimateAnalyzer getMergedAnalyzer()
+	{
+		return allYears;
+	}
+
+	@Override
+	public synchronized String toString()
+	{
+		return "PartitionedClimateAnalyzer(" + manifest + ", " + getLoadedPartitions() + " partitions read)";
+	}
+
+	//
+	// Splits a weather data file into a directory of year partitions, unless the directory already has a manifest, and shows how few
+	// partitions the per-year queries read.
+	// Arguments: file name, directory
+	//
+	public static void main(String[] args) throws IOException
+	{
+		String fileName = args.length > 0 ? args[0] : "data/world_temp_2000-2016.csv";
+		String directory = args.length > 1 ? args[1] : "data/partitions";
+		WeatherIO weatherIO = new WeatherIO();
+		if (!new File(directory, PartitionManifest.FILE_NAME).isFile())
+		{
+			long start = System.nanoTime();
+			PartitionManifest manifest = weatherIO.writePartitions(fileName, directory);
+			System.out.println("Wrote " + manifest + " in " + String.format("%.1f", (System.nanoTime() - start) / 1e6) + " ms");
+		}
+
+		PartitionedClimateAnalyzer analyzer = new PartitionedClimateAnalyzer(weatherIO.readPartitionManifest(directory));
+		long start = System.nanoTime();
+		System.out.println("Lowest temperature of Canada in 2008: " + analyzer.getLowestTempByYear("Canada", 2008));
+		System.out.println("Top 10 January changes 2000-2016: " + analyzer.allCountriesTop10TempDelta(1, 2000, 2016));
+		System.out.println("Per-year queries took " + String.format("%.1f", (System.nanoTime() - start) / 1e6) + " ms and read " + analyzer.getLoadedPartitions()
+				+ " of " + analyzer.getManifest().getYears().length + " partitions");
+
+		start = System.nanoTime();
+		System.out.println("Top 10 lowest temperatures: " + analyzer.allCountriesGetTop10LowestTemp());
+		System.out.println("A query over all years took " + String.format("%.1f", (System.nanoTime() - start) / 1e6) + " ms and read "
+				+ analyzer.getLoadedPartitions() + " partitions");
+	}
+}
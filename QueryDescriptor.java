@@ -0,0 +1,267 @@
+package climatechange;
+
+import java.util.Objects;
+import java.util.TreeSet;
+
+public class QueryDescriptor {
+	//
+	// The IClimateAnalyzer methods a query can stand for.
+	//
+	public enum Type {
+		LOWEST_TEMP_BY_MONTH, HIGHEST_TEMP_BY_MONTH, // TASK A-1
+		LOWEST_TEMP_BY_YEAR, HIGHEST_TEMP_BY_YEAR, // TASK A-2
+		TEMP_WITHIN_RANGE, // TASK A-3
+		LOWEST_TEMP_YEAR_BY_COUNTRY, HIGHEST_TEMP_YEAR_BY_COUNTRY, // TASK A-4
+		TOP_10_LOWEST_TEMP_BY_MONTH, TOP_10_HIGHEST_TEMP_BY_MONTH, // TASK B-1
+		TOP_10_LOWEST_TEMP, TOP_10_HIGHEST_TEMP, // TASK B-2
+		ALL_DATA_WITHIN_TEMP_RANGE, // TASK B-3
+		TOP_10_TEMP_DELTA // TASK C-1
+	}
+
+	// Passed as a month or year filter that no reading matches, for months and years that cannot be answered.
+	static final int NO_MATCH = Integer.MIN_VALUE;
+
+	private Type type;
+	private String country;
+	private int month;
+	private int year;
+	private int year2;
+	private double lowTemp;
+	private double highTemp;
+
+	private QueryDescriptor(Type theType, String theCountry, int theMonth, int theYear, int theYear2, double theLowTemp, double theHighTemp)
+	{
+		type = theType;
+		country = theCountry;
+		month = theMonth;
+		year = theYear;
+		year2 = theYear2;
+		lowTemp = theLowTemp;
+		highTemp = theHighTemp;
+	}
+
+	public static QueryDescriptor lowestTempByMonth(String country, int month)
+	{
+		return new QueryDescriptor(Type.LOWEST_TEMP_BY_MONTH, country, month, 0, 0, 0.0, 0.0);
+	}
+
+	public static QueryDescriptor highestTempByMonth(String country, int month)
+	{
+		return new QueryDescriptor(Type.HIGHEST_TEMP_BY_MONTH, country, month, 0, 0, 0.0, 0.0);
+	}
+
+	public static QueryDescriptor lowestTempByYear(String country, int year)
+	{
+		return new QueryDescriptor(Type.LOWEST_TEMP_BY_YEAR, country, 0, year, 0, 0.0, 0.0);
+	}
+
+	public static QueryDescriptor highestTempByYear(String country, int year)
+	{
+		return new QueryDescriptor(Type.HIGHEST_TEMP_BY_YEAR, country, 0, year, 0, 0.0, 0.0);
+	}
+
+	public static QueryDescriptor tempWithinRange(String country, double rangeLowTemp, double rangeHighTemp)
+	{
+		return new QueryDescriptor(Type.TEMP_WITHIN_RANGE, country, 0, 0, 0, rangeLowTemp, rangeHighTemp);
+	}
+
+	public static QueryDescriptor lowestTempYearByCountry(String country)
+	{
+		return new QueryDescriptor(Type.LOWEST_TEMP_YEAR_BY_COUNTRY, country, 0, 0, 0, 0.0, 0.0);
+	}
+
+	public static QueryDescriptor highestTempYearByCountry(String country)
+	{
+		return new QueryDescriptor(Type.HIGHEST_TEMP_YEAR_BY_COUNTRY, country, 0, 0, 0, 0.0, 0.0);
+	}
+
+	public static QueryDescriptor top10LowestTemp(int month)
+	{
+		return new QueryDescriptor(Type.TOP_10_LOWEST_TEMP_BY_MONTH, null, month, 0, 0, 0.0, 0.0);
+	}
+
+	public static QueryDescriptor top10HighestTemp(int month)
+	{
+		return new QueryDescriptor(Type.TOP_10_HIGHEST_TEMP_BY_MONTH, null, month, 0, 0, 0.0, 0.0);
+	}
+
+	public static QueryDescriptor top10LowestTemp()
+	{
+		return new QueryDescriptor(Type.TOP_10_LOWEST_TEMP, null, 0, 0, 0, 0.0, 0.0);
+	}
+
+	public static QueryDescriptor top10HighestTemp()
+	{
+		return new QueryDescriptor(Type.TOP_10_HIGHEST_TEMP, null, 0, 0, 0, 0.0, 0.0);
+	}
+
+	public static QueryDescriptor allDataWithinTempRange(double lowRangeTemp, double highRangeTemp)
+	{
+		return new QueryDescriptor(Type.ALL_DATA_WITHIN_TEMP_RANGE, null, 0, 0, 0, lowRangeTemp, highRangeTemp);
+	}
+
+	public static QueryDescriptor top10TempDelta(int month, int year1, int year2)
+	{
+		return new QueryDescriptor(Type.TOP_10_TEMP_DELTA, null, month, year1, year2, 0.0, 0.0);
+	}
+
+	//
+	// Creates the accumulator that answers this query from the readings of a dictionary's countries. Feeding it every reading once gives
+	// the same answer as the IClimateAnalyzer method the query stands for; see getResult() for the type of the answer.
+	//
+	public IAccumulator<?> createAccumulator(CountryDictionary countries)
+	{
+		switch (type)
+		{
+			case LOWEST_TEMP_BY_MONTH:
+				return new ExtremumAccumulator(countries, country, toMonthFilter(month), TopKSelector.ANY_YEAR, false);
+			case HIGHEST_TEMP_BY_MONTH:
+				return new ExtremumAccumulator(countries, country, toMonthFilter(month), TopKSelector.ANY_YEAR, true);
+			case LOWEST_TEMP_BY_YEAR:
+				return new ExtremumAccumulator(countries, country, TopKSelector.ANY_MONTH, toYearFilter(year), false);
+			case HIGHEST_TEMP_BY_YEAR:
+				return new ExtremumAccumulator(countries, country, TopKSelector.ANY_MONTH, toYearFilter(year), true);
+			case TEMP_WITHIN_RANGE:
+				return new RangeAccumulator(countries, country == null ? "" : country, lowTemp, highTemp);
+			case LOWEST_TEMP_YEAR_BY_COUNTRY:
+				return new ExtremumAccumulator(countries, country, TopKSelector.ANY_MONTH, TopKSelector.ANY_YEAR, false);
+			case HIGHEST_TEMP_YEAR_BY_COUNTRY:
+				return new ExtremumAccumulator(countries, country, TopKSelector.ANY_MONTH, TopKSelector.ANY_YEAR, true);
+			case TOP_10_LOWEST_TEMP_BY_MONTH:
+				return new TopKAccumulator(countries, 10, toMonthFilter(month), TopKSelector.ANY_YEAR, false);
+			case TOP_10_HIGHEST_TEMP_BY_MONTH:
+				return new TopKAccumulator(countries, 10, toMonthFilter(month), TopKSelector.ANY_YEAR, true);
+			case TOP_10_LOWEST_TEMP:
+				return new TopKAccumulator(countries, 10, TopKSelector.ANY_MONTH, TopKSelector.ANY_YEAR, false);
+			case TOP_10_HIGHEST_TEMP:
+				return new TopKAccumulator(countries, 10, TopKSelector.ANY_MONTH, TopKSelector.ANY_YEAR, true);
+			case ALL_DATA_WITHIN_TEMP_RANGE:
+				return new RangeAccumulator(countries, null, lowTemp, highTemp);
+			default:
+				return new DeltaAccumulator(countries, 10, month, year, year2);
+		}
+	}
+
+	//
+	// Turns what the accumulator of this query collected into what the IClimateAnalyzer method returns: an ITemperature (or null) for
+	// TASK A-1, A-2 and A-4, a TreeSet<ITemperature> for TASK A-3, and an ArrayList<ITemperature> for everything else.
+	//
+	public Object getResult(IAccumulator<?> accumulator)
+	{
+		if (type == Type.TEMP_WITHIN_RANGE)
+		{
+			TreeSet<ITemperature> tempsInRange = new TreeSet<ITemperature>();
+			tempsInRange.addAll(((RangeAccumulator) accumulator).getResult());
+			return tempsInRange;
+		}
+
+		return accumulator.getResult();
+	}
+
+	public Type getType()
+	{
+		return type;
+	}
+
+	public String getCountry()
+	{
+		return country;
+	}
+
+	public int getMonth()
+	{
+		return month;
+	}
+
+	//
+	// Gets the year of TASK A-2, or the first year of TASK C-1.
+	//
+	public int getYear()
+	{
+		return year;
+	}
+
+	//
+	// Gets the second year of TASK C-1.
+	//
+	public int getYear2()
+	{
+		return year2;
+	}
+
+	public double getLowTemp()
+	{
+		return lowTemp;
+	}
+
+	public double getHighTemp()
+	{
+		return highTemp;
+	}
+
+	@Override
+	public String toString()
+	{
+		switch (type)
+		{
+			case LOWEST_TEMP_BY_MONTH:
+			case HIGHEST_TEMP_BY_MONTH:
+				return type + "(" + country + ", " + month + ")";
+			case LOWEST_TEMP_BY_YEAR:
+			case HIGHEST_TEMP_BY_YEAR:
+				return type + "(" + country + ", " + year + ")";
+			case TEMP_WITHIN_RANGE:
+				return type + "(" + country + ", " + lowTemp + ", " + highTemp + ")";
+			case LOWEST_TEMP_YEAR_BY_COUNTRY:
+			case HIGHEST_TEMP_YEAR_BY_COUNTRY:
+				return type + "(" + country + ")";
+			case TOP_10_LOWEST_TEMP_BY_MONTH:
+			case TOP_10_HIGHEST_TEMP_BY_MONTH:
+				return type + "(" + month + ")";
+			case ALL_DATA_WITHIN_TEMP_RANGE:
+				return type + "(" + lowTemp + ", " + highTemp + ")";
+			case TOP_10_TEMP_DELTA:
+				return type + "(" + month + ", " + year + ", " + year2 + ")";
+			default:
+				return type.toString();
+		}
+	}
+
+	//
+	// Two queries are equal when they stand for the same method with the same parameters, so queries can be used as keys of a cache.
+	//
+	@Override
+	public boolean equals(Object other)
+	{
+		if (!(other instanceof QueryDescriptor))
+		{
+			return false;
+		}
+
+		QueryDescriptor that = (QueryDescriptor) other;
+		return type == that.type && Objects.equals(country, that.country) && month == that.month && year == that.year && year2 == that.year2
+				&& Double.compare(lowTemp, that.lowTemp) == 0 && Double.compare(highTemp, that.highTemp) == 0;
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return Objects.hash(type, country, month, year, year2, lowTemp, highTemp);
+	}
+
+	//
+	// Gets the month filter of a month from 1 to 12, or a filter that matches nothing for any other month.
+	//
+	static int toMonthFilter(int month)
+	{
+		return month >= 1 && month <= 12 ? month : NO_MATCH;
+	}
+
+	//
+	// Gets the year filter of a year. TopKSelector.ANY_YEAR is a year no reading has, not a request for every year.
+	//
+	static int toYearFilter(int year)
+	{
+		return year == TopKSelector.ANY_YEAR ? NO_MATCH : year;
+	}
+}
@@ -0,0 +1,68 @@
+package climatechange;
+
+import java.util.ArrayList;
+
+public class RangeAccumulator implements IAccumulator<ArrayList<ITemperature>> {
+	private CountryDictionary countries;
+	private String country;
+	private double lowTemp;
+	private double highTemp;
+	private int countryId;
+	private int numCheckedCountries;
+	// The matching readings, kept as rows of a table that shares the dictionary of the readings.
+	private TemperatureTable matches;
+
+	//
+	// Creates an accumulator that collects the readings of a country with a temperature within [lowTemp, highTemp]. A null country collects
+	// the readings of all countries. Only matching readings are kept, in a columnar table.
+	//
+	public RangeAccumulator(CountryDictionary theCountries, String theCountry, double theLowTemp, double theHighTemp)
+	{
+		countries = theCountries;
+		country = theCountry;
+		lowTemp = theLowTemp;
+		highTemp = theHighTemp;
+		countryId = -1;
+		matches = new TemperatureTable(16, countries);
+	}
+
+	@Override
+	public void accept(double temperature, int year, int month, int theCountryId)
+	{
+		if (temperature >= lowTemp && temperature <= highTemp && (country == null || isCountry(theCountryId)))
+		{
+			matches.add(temperature, year, month, theCountryId);
+		}
+	}
+
+	//
+	// Gets the matching readings sorted from lowest to highest temperature, leaving out duplicates the same way a TreeSet would. The
+	// matches are sorted by a SortedTemperatureIndex, so the order is exactly the order of Temperature.compareTo().
+	//
+	@Override
+	public ArrayList<ITemperature> getResult()
+	{
+		int[] rows = new SortedTemperatureIndex(matches).findRowsWithinRange(lowTemp, highTemp);
+		ArrayList<ITemperature> temperatures = new ArrayList<ITemperature>(rows.length);
+		for (int row : rows)
+		{
+			temperatures.add(matches.toTemperature(row));
+		}
+
+		return temperatures;
+	}
+
+	//
+	// Checks if a country id belongs to the country of this accumulator, searching the dictionary only for countries not seen before.
+	//
+	private boolean isCountry(int theCountryId)
+	{
+		if (countryId < 0 && theCountryId >= numCheckedCountries)
+		{
+			countryId = countries.getId(country);
+			numCheckedCountries = countries.size();
+		}
+
+		return theCountryId == countryId;
+	}
+}
@@ -0,0 +1,56 @@
+package climatechange;
+
+public class RangeCountAccumulator implements IAccumulator<Long> {
+	private CountryDictionary countries;
+	private String country;
+	private double lowTemp;
+	private double highTemp;
+	private int countryId;
+	private int numCheckedCountries;
+	private long count;
+
+	//
+	// Creates an accumulator that counts the readings of a country with a temperature within [lowTemp, highTemp]. A null country counts
+	// the readings of all countries.
+	//
+	public RangeCountAccumulator(CountryDictionary theCountries, String theCountry, double theLowTemp, double theHighTemp)
+	{
+		countries = theCountries;
+		country = theCountry;
+		lowTemp = theLowTemp;
+		highTemp = theHighTemp;
+		countryId = -1;
+	}
+
+	@Override
+	public void accept(double temperature, int year, int month, int theCountryId)
+	{
+		if (temperature >= lowTemp && temperature <= highTemp && (country == null || isCountry(theCountryId)))
+		{
+			count++;
+		}
+	}
+
+	//
+	// Gets the number of matching readings so far. Every matching reading is counted, even when it is a duplicate of an earlier one.
+	//
+	@Override
+	public Long getResult()
+	{
+		return count;
+	}
+
+	//
+	// Checks if a country id belongs to the country of this accumulator, searching the dictionary only for countries not seen before.
+	//
+	private boolean isCountry(int theCountryId)
+	{
+		if (countryId < 0 && theCountryId >= numCheckedCountries)
+		{
+			countryId = countries.getId(country);
+			numCheckedCountries = countries.size();
+		}
+
+		return theCountryId == countryId;
+	}
+}
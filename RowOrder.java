@@ -0,0 +1,137 @@
+package climatechange;
+
+import java.util.Arrays;
+
+//
+// The order of Temperature.compareTo() on the rows of a table: by temperature, then country name, then year, then month. The country names
+// are ranked once, so rows can be compared without comparing Strings. Every class that sorts or ranks rows uses this order, so they all
+// break ties the same way.
+//
+public class RowOrder {
+	private ITemperatureStore table;
+	// The rank of each country id when the country names are sorted, for the countries the table had when the order was created.
+	private int[] countryRanks;
+
+	public RowOrder(ITemperatureStore theTable)
+	{
+		table = theTable;
+		int numCountries = table.getCountries().size();
+		Integer[] countriesByName = new Integer[numCountries];
+		for (int countryId = 0; countryId < numCountries; countryId++)
+		{
+			countriesByName[countryId] = countryId;
+		}
+		Arrays.sort(countriesByName, (id1, id2) -> table.getCountries().getName(id1).compareTo(table.getCountries().getName(id2)));
+		// Countries with the same name and different codes get the same rank, since Temperature.compareTo() only compares the names.
+		countryRanks = new int[numCountries];
+		int rank = 0;
+		for (int i = 0; i < numCountries; i++)
+		{
+			if (i > 0 && !table.getCountries().getName(countriesByName[i]).equals(table.getCountries().getName(countriesByName[i - 1])))
+			{
+				rank++;
+			}
+			countryRanks[countriesByName[i]] = rank;
+		}
+	}
+
+	//
+	// Gets the number of countries that were ranked. Countries added to the table later are compared by name instead.
+	//
+	public int getNumRankedCountries()
+	{
+		return countryRanks.length;
+	}
+
+	//
+	// Compares two rows in the same order as Temperature.compareTo().
+	//
+	public int compare(int row1, int row2)
+	{
+		int result = Double.compare(table.getTemperature(row1), table.getTemperature(row2));
+		if (result != 0)
+		{
+			return result;
+		}
+
+		int countryId1 = table.getCountryId(row1);
+		int countryId2 = table.getCountryId(row2);
+		if (countryId1 != countryId2)
+		{
+			if (countryId1 < countryRanks.length && countryId2 < countryRanks.length)
+			{
+				result = Integer.compare(countryRanks[countryId1], countryRanks[countryId2]);
+			}
+			else
+			{
+				result = table.getCountries().getName(countryId1).compareTo(table.getCountries().getName(countryId2));
+			}
+			if (result != 0)
+			{
+				return result;
+			}
+		}
+
+		result = Integer.compare(table.getYear(row1), table.getYear(row2));
+		if (result != 0)
+		{
+			return result;
+		}
+
+		return Integer.compare(table.getMonth(row1), table.getMonth(row2));
+	}
+
+	//
+	// Sorts rows with a bottom-up merge sort. Equal rows keep their order.
+	//
+	public void sort(int[] rows)
+	{
+		int[] source = rows;
+		int[] target = new int[rows.length];
+		for (int width = 1; width < rows.length; width *= 2)
+		{
+			for (int left = 0; left < rows.length; left += 2 * width)
+			{
+				int middle = Math.min(left + width, rows.length);
+				int right = Math.min(left + 2 * width, rows.length);
+				mergeInto(source, left, middle, source, middle, right, target, left);
+			}
+
+			int[] swap = source;
+			source = target;
+			target = swap;
+		}
+
+		if (source != rows)
+		{
+			System.arraycopy(source, 0, rows, 0, rows.length);
+		}
+	}
+
+	//
+	// Merges two sorted arrays of rows into a new array. Rows of the first array go first when two rows are equal.
+	//
+	public int[] merge(int[] rows1, int[] rows2)
+	{
+		int[] merged = new int[rows1.length + rows2.length];
+		mergeInto(rows1, 0, rows1.length, rows2, 0, rows2.length, merged, 0);
+		return merged;
+	}
+
+	private void mergeInto(int[] rows1, int from1, int to1, int[] rows2, int from2, int to2, int[] target, int position)
+	{
+		int i = from1;
+		int j = from2;
+		while (i < to1 || j < to2)
+		{
+			if (i < to1 && (j >= to2 || compare(rows1[i], rows2[j]) <= 0))
+			{
+				target[position++] = rows1[i++];
+			}
+			else
+			{
+				target[position++] = rows2[j++];
+			}
+		}
+	}
+}
@@ -0,0 +1,371 @@
+package climatechange;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+public class SortedTemperatureIndex {
+	// The fewest appended rows that are kept apart from the sorted rows before they are merged in.
+	public static final int MIN_PENDING_ROWS = 4096;
+
+	private ITemperatureStore table;
+	// The order of the rows, with the country names ranked when the rows were last sorted.
+	private RowOrder order;
+	// Every row id in the order of Temperature.compareTo(), with the temperature of each of those rows for binary searches.
+	private int[] sortedRows;
+	private double[] sortedTemperatures;
+	// The same order split up by country: the rows of country c are at [countryStarts[c], countryStarts[c + 1]).
+	private int[] countryStarts;
+	private int[] countrySortedRows;
+	private double[] countrySortedTemperatures;
+	// Rows appended since the last merge, sorted the same way and kept apart so that each append only merges into this small array. They
+	// are merged into the sorted rows once there are more than maxPendingRows() of them, so appending n rows one at a time costs about
+	// n * sqrt(n) instead of n * n.
+	private int[] pendingRows;
+	private double[] pendingTemperatures;
+
+	//
+	// Sorts every row that is currently in the table, then splits the sorted rows up by country.
+	//
+	public SortedTemperatureIndex(ITemperatureStore theTable)
+	{
+		table = theTable;
+		rebuild();
+	}
+
+	//
+	// Throws away the sorted rows and sorts every row of the table again.
+	//
+	public void rebuild()
+	{
+		int numRows = table.size();
+		order = new RowOrder(table);
+		sortedRows = new int[numRows];
+		for (int row = 0; row < numRows; row++)
+		{
+			sortedRows[row] = row;
+		}
+		order.sort(sortedRows);
+		pendingRows = new int[0];
+		pendingTemperatures = new double[0];
+		splitByCountry();
+	}
+
+	//
+	// Adds the rows in [start, end) of the table, which must come after every row already in the index. Only the new rows are sorted, and
+	// they are merged into the pending rows. The pending rows are merged into the sorted rows in a single pass once there are enough of
+	// them. New countries change the ranks of the country names, so they sort every row again instead.
+	//
+	public void addRows(int start, int end)
+	{
+		if (table.getCountries().size() != order.getNumRankedCountries())
+		{
+			rebuild();
+			return;
+		}
+
+		int[] newRows = new int[end - start];
+		for (int i = 0; i < newRows.length; i++)
+		{
+			newRows[i] = start + i;
+		}
+		order.sort(newRows);
+
+		int[] mergedPendingRows = order.merge(pendingRows, newRows);
+		if (mergedPendingRows.length > maxPendingRows())
+		{
+			sortedRows = order.merge(sortedRows, mergedPendingRows);
+			pendingRows = new int[0];
+			pendingTemperatures = new double[0];
+			splitByCountry();
+			return;
+		}
+
+		pendingRows = mergedPendingRows;
+		pendingTemperatures = new double[pendingRows.length];
+		for (int i = 0; i < pendingRows.length; i++)
+		{
+			pendingTemperatures[i] = table.getTemperature(pendingRows[i]);
+		}
+	}
+
+	//
+	// Gets the number of appended rows that are kept apart before they are merged into the sorted rows. Keeping about sqrt(n) of them
+	// balances the cost of merging each append into them against the cost of merging them into all n sorted rows.
+	//
+	private int maxPendingRows()
+	{
+		return Math.max(MIN_PENDING_ROWS, (int) Math.sqrt(sortedRows.length));
+	}
+
+	//
+	// Copies the temperatures of the sorted rows for binary searches and splits the sorted rows up by country.
+	//
+	private void splitByCountry()
+	{
+		int numRows = sortedRows.length;
+		int numCountries = order.getNumRankedCountries();
+		sortedTemperatures = new double[numRows];
+		for (int i = 0; i < numRows; i++)
+		{
+			sortedTemperatures[i] = table.getTemperature(sortedRows[i]);
+		}
+
+		// A counting sort by country keeps the sorted order within each country.
+		countryStarts = new int[numCountries + 1];
+		for (int row = 0; row < numRows; row++)
+		{
+			countryStarts[table.getCountryId(row) + 1]++;
+		}
+		for (int countryId = 0; countryId < numCountries; countryId++)
+		{
+			countryStarts[countryId + 1] += countryStarts[countryId];
+		}
+		int[] nextPositions = Arrays.copyOf(countryStarts, numCountries);
+		countrySortedRows = new int[numRows];
+		countrySortedTemperatures = new double[numRows];
+		for (int i = 0; i < numRows; i++)
+		{
+			int position = nextPositions[table.getCountryId(sortedRows[i])]++;
+			countrySortedRows[position] = sortedRows[i];
+			countrySortedTemperatures[position] = sortedTemperatures[i];
+		}
+	}
+
+	//
+	// Gets the rows of all countries with a temperature within [lowTemp, highTemp], sorted from lowest to highest temperature. Rows that are
+	// equal to the row before them under Temperature.compareTo() are left out, the same way a TreeSet would leave them out.
+	//
+	public int[] findRowsWithinRange(double lowTemp, double highTemp)
+	{
+		return copyDistinctRows(mergeWithinRange(lowTemp, highTemp));
+	}
+
+	//
+	// Gets the rows of one country with a temperature within [lowTemp, highTemp], sorted from lowest to highest temperature.
+	//
+	public int[] findRowsWithinRange(int countryId, double lowTemp, double highTemp)
+	{
+		return copyDistinctRows(mergeWithinRange(countryId, lowTemp, highTemp));
+	}
+
+	//
+	// Iterates over the readings of all countries within [lowTemp, highTemp] from lowest to highest temperature, creating each Temperature
+	// object only when it is reached, so very wide ranges never have to be held in memory at once. The iterator reads the table as it goes,
+	// so it is not safe to use while rows are appended unless the caller holds off the appends for each step, as ClimateAnalyzer does.
+	//
+	public Iterator<ITemperature> iterateWithinRange(double lowTemp, double highTemp)
+	{
+		return new RangeIterator(mergeWithinRange(lowTemp, highTemp));
+	}
+
+	//
+	// Iterates over the readings of one country within [lowTemp, highTemp] from lowest to highest temperature, with the same caveat about
+	// appends.
+	//
+	public Iterator<ITemperature> iterateWithinRange(int countryId, double lowTemp, double highTemp)
+	{
+		return new RangeIterator(mergeWithinRange(countryId, lowTemp, highTemp));
+	}
+
+	//
+	// Finds the sorted and pending rows of all countries within [lowTemp, highTemp].
+	//
+	private MergedRows mergeWithinRange(double lowTemp, double highTemp)
+	{
+		int end = upperBound(sortedTemperatures, 0, sortedRows.length, highTemp);
+		int start = lowerBound(sortedTemperatures, 0, end, lowTemp);
+		int pendingEnd = upperBound(pendingTemperatures, 0, pendingRows.length, highTemp);
+		int pendingStart = lowerBound(pendingTemperatures, 0, pendingEnd, lowTemp);
+		return new MergedRows(sortedRows, start, end, pendingRows, pendingStart, pendingEnd);
+	}
+
+	//
+	// Finds the sorted and pending rows of one country within [lowTemp, highTemp]. The pending rows are not split up by country, so the rows
+	// of the country are picked out of the few that are within the range.
+	//
+	private MergedRows mergeWithinRange(int countryId, double lowTemp, double highTemp)
+	{
+		if (countryId < 0 || countryId + 1 >= countryStarts.length)
+		{
+			return new MergedRows(countrySortedRows, 0, 0, pendingRows, 0, 0);
+		}
+
+		int end = upperBound(countrySortedTemperatures, countryStarts[countryId], countryStarts[countryId + 1], highTemp);
+		int start = lowerBound(countrySortedTemperatures, countryStarts[countryId], end, lowTemp);
+		int pendingEnd = upperBound(pendingTemperatures, 0, pendingRows.length, highTemp);
+		int pendingStart = lowerBound(pendingTemperatures, 0, pendingEnd, lowTemp);
+		int[] countryPendingRows = new int[pendingEnd - pendingStart];
+		int numCountryPending = 0;
+		for (int i = pendingStart; i < pendingEnd; i++)
+		{
+			if (table.getCountryId(pendingRows[i]) == countryId)
+			{
+				countryPendingRows[numCountryPending++] = pendingRows[i];
+			}
+		}
+
+		return new MergedRows(countrySortedRows, start, end, countryPendingRows, 0, numCountryPending);
+	}
+
+	//
+	// Compares two rows in the same order as Temperature.compareTo(): by temperature, then country name, then year, then month.
+	//
+	public int compareRows(int row1, int row2)
+	{
+		return order.compare(row1, row2);
+	}
+
+	//
+	// Finds the first position in [from, to) whose temperature is at least lowTemp. The temperatures in [from, to) must be in ascending order
+	// and must not be NaN.
+	//
+	private static int lowerBound(double[] temperatures, int from, int to, double lowTemp)
+	{
+		if (Double.isNaN(lowTemp))
+		{
+			return to;
+		}
+
+		while (from < to)
+		{
+			int middle = (from + to) >>> 1;
+			if (temperatures[middle] >= lowTemp)
+			{
+				to = middle;
+			}
+			else
+			{
+				from = middle + 1;
+			}
+		}
+
+		return from;
+	}
+
+	//
+	// Finds the first position in [from, to) whose temperature is not at most highTemp. Since NaN is sorted last and is never at most
+	// highTemp, the positions before the result never hold NaN.
+	//
+	private static int upperBound(double[] temperatures, int from, int to, double highTemp)
+	{
+		while (from < to)
+		{
+			int middle = (from + to) >>> 1;
+			if (temperatures[middle] <= highTemp)
+			{
+				from = middle + 1;
+			}
+			else
+			{
+				to = middle;
+			}
+		}
+
+		return from;
+	}
+
+	//
+	// Copies the rows that are left in a merge into an array.
+	//
+	private static int[] copyDistinctRows(MergedRows rows)
+	{
+		int[] distinctRows = new int[rows.maxRemaining()];
+		int numDistinct = 0;
+		while (rows.hasNext())
+		{
+			distinctRows[numDistinct++] = rows.nextRow();
+		}
+
+		return numDistinct == distinctRows.length ? distinctRows : Arrays.copyOf(distinctRows, numDistinct);
+	}
+
+	//
+	// Walks over the rows in [start, end) of a sorted array and the rows in [pendingStart, pendingEnd) of the pending rows in sorted order,
+	// skipping rows that are equal to the row before them. It keeps the arrays it was given, which are replaced rather than changed when
+	// rows are added, so it goes on walking the rows that were there when it was created.
+	//
+	private class MergedRows {
+		private int[] rows;
+		private int position;
+		private int end;
+		private int[] pendingRows;
+		private int pendingPosition;
+		private int pendingEnd;
+
+		private MergedRows(int[] theRows, int theStart, int theEnd, int[] thePendingRows, int thePendingStart, int thePendingEnd)
+		{
+			rows = theRows;
+			position = theStart;
+			end = theEnd;
+			pendingRows = thePendingRows;
+			pendingPosition = thePendingStart;
+			pendingEnd = thePendingEnd;
+		}
+
+		private boolean hasNext()
+		{
+			return position < end || pendingPosition < pendingEnd;
+		}
+
+		//
+		// Gets the number of rows that are left, counting the ones that will be skipped.
+		//
+		private int maxRemaining()
+		{
+			return end - position + pendingEnd - pendingPosition;
+		}
+
+		private int nextRow()
+		{
+			if (!hasNext())
+			{
+				throw new NoSuchElementException();
+			}
+
+			int row;
+			if (pendingPosition >= pendingEnd || (position < end && compareRows(rows[position], pendingRows[pendingPosition]) <= 0))
+			{
+				row = rows[position++];
+			}
+			else
+			{
+				row = pendingRows[pendingPosition++];
+			}
+			while (position < end && compareRows(row, rows[position]) == 0)
+			{
+				position++;
+			}
+			while (pendingPosition < pendingEnd && compareRows(row, pendingRows[pendingPosition]) == 0)
+			{
+				pendingPosition++;
+			}
+
+			return row;
+		}
+	}
+
+	//
+	// Turns the rows of a merge into Temperature objects as they are reached.
+	//
+	private class RangeIterator implements Iterator<ITemperature> {
+		private MergedRows rows;
+
+		private RangeIterator(MergedRows theRows)
+		{
+			rows = theRows;
+		}
+
+		@Override
+		public boolean hasNext()
+		{
+			return rows.hasNext();
+		}
+
+		@Override
+		public ITemperature next()
+		{
+			return table.toTemperature(rows.nextRow());
+		}
+	}
+}
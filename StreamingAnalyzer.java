@@ -0,0 +1,203 @@
+package climatechange;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+public class StreamingAnalyzer implements ITemperatureSink {
+	private CountryDictionary countries;
+	private IAccumulator<?>[] accumulators;
+	private int numAccumulators;
+	private long numReadings;
+
+	//
+	// Creates an analyzer that answers queries in one pass over a weather data file without loading it into memory. Queries are
+	// registered first, each one returning the accumulator that will hold its answer, and are all answered by a single call to run().
+	// Memory use depends only on the number of countries and queries, not on the size of the file.
+	//
+	public StreamingAnalyzer()
+	{
+		countries = new CountryDictionary();
+		accumulators = new IAccumulator<?>[8];
+		numAccumulators = 0;
+	}
+
+	//
+	// Registers any accumulator, such as the one QueryDescriptor.createAccumulator() creates. It must be created with the dictionary of
+	// getCountries().
+	//
+	public <A extends IAccumulator<?>> A add(A accumulator)
+	{
+		if (numAccumulators == accumulators.length)
+		{
+			accumulators = Arrays.copyOf(accumulators, numAccumulators * 2);
+		}
+
+		accumulators[numAccumulators++] = accumulator;
+		return accumulator;
+	}
+
+	//
+	// TASK A-1
+	//
+	public IAccumulator<ITemperature> addLowestTempByMonth(String country, int month)
+	{
+		return add(new ExtremumAccumulator(countries, country, QueryDescriptor.toMonthFilter(month), TopKSelector.ANY_YEAR, false));
+	}
+
+	//
+	// TASK A-1
+	//
+	public IAccumulator<ITemperature> addHighestTempByMonth(String country, int month)
+	{
+		return add(new ExtremumAccumulator(countries, country, QueryDescriptor.toMonthFilter(month), TopKSelector.ANY_YEAR, true));
+	}
+
+	//
+	// TASK A-2
+	//
+	public IAccumulator<ITemperature> addLowestTempByYear(String country, int year)
+	{
+		return add(new ExtremumAccumulator(countries, country, TopKSelector.ANY_MONTH, QueryDescriptor.toYearFilter(year), false));
+	}
+
+	//
+	// TASK A-2
+	//
+	public IAccumulator<ITemperature> addHighestTempByYear(String country, int year)
+	{
+		return add(new ExtremumAccumulator(countries, country, TopKSelector.ANY_MONTH, QueryDescriptor.toYearFilter(year), true));
+	}
+
+	//
+	// TASK A-3, counting the readings instead of keeping them. A null country counts the readings of all countries.
+	//
+	public IAccumulator<Long> addTempWithinRangeCount(String country, double rangeLowTemp, double rangeHighTemp)
+	{
+		return add(new RangeCountAccumulator(countries, country, rangeLowTemp, rangeHighTemp));
+	}
+
+	//
+	// TASK A-4
+	//
+	public IAccumulator<ITemperature> addLowestTempYearByCountry(String country)
+	{
+		return add(new ExtremumAccumulator(countries, country, TopKSelector.ANY_MONTH, TopKSelector.ANY_YEAR, false));
+	}
+
+	//
+	// TASK A-4
+	//
+	public IAccumulator<ITemperature> addHighestTempYearByCountry(String country)
+	{
+		return add(new ExtremumAccumulator(countries, country, TopKSelector.ANY_MONTH, TopKSelector.ANY_YEAR, true));
+	}
+
+	//
+	// TASK B-1 and B-2. TopKSelector.ANY_MONTH and TopKSelector.ANY_YEAR leave those filters out.
+	//
+	public IAccumulator<ArrayList<ITemperature>> addTopKLowestTemp(int k, int month, int year)
+	{
+		return add(new TopKAccumulator(countries, k, month == TopKSelector.ANY_MONTH ? month : QueryDescriptor.toMonthFilter(month), year, false));
+	}
+
+	//
+	// TASK B-1 and B-2. TopKSelector.ANY_MONTH and TopKSelector.ANY_YEAR leave those filters out.
+	//
+	public IAccumulator<ArrayList<ITemperature>> addTopKHighestTemp(int k, int month, int year)
+	{
+		return add(new TopKAccumulator(countries, k, month == TopKSelector.ANY_MONTH ? month : QueryDescriptor.toMonthFilter(month), year, true));
+	}
+
+	//
+	// TASK C-1
+	//
+	public IAccumulator<ArrayList<ITemperature>> addTopNTempDelta(int n, int month, int year1, int year2)
+	{
+		return add(new DeltaAccumulator(countries, n, month, year1, year2));
+	}
+
+	//
+	// Streams every reading of a weather data file through the registered accumulators. Only one window of the file is mapped at a time.
+	//
+	public void run(String fileName) throws FileNotFoundException, IOException
+	{
+		new MappedCsvParser(this, countries).parseFile(fileName);
+	}
+
+	//
+	// Streams readings that come from somewhere other than a file through the registered accumulators.
+	//
+	public void run(Iterable<? extends ITemperature> readings)
+	{
+		for (ITemperature reading : readings)
+		{
+			int countryId = countries.intern(reading.getCountry(), reading.getCountry3LetterCode());
+			accept(reading.getTemperature(false), reading.getYear(), Months.toInteger(reading.getMonth()), countryId);
+		}
+	}
+
+	//
+	// Hands one reading to every registered accumulator.
+	//
+	@Override
+	public void accept(double temperature, int year, int month, int countryId)
+	{
+		numReadings++;
+		for (int i = 0; i < numAccumulators; i++)
+		{
+			accumulators[i].accept(temperature, year, month, countryId);
+		}
+	}
+
+	//
+	// Gets the dictionary that the countries of the streamed readings are interned in.
+	//
+	public CountryDictionary getCountries()
+	{
+		return countries;
+	}
+
+	//
+	// Gets the number of readings streamed so far.
+	//
+	public long getNumReadings()
+	{
+		return numReadings;
+	}
+
+	//
+	// Answers a few queries over a weather data file in one streaming pass and reports the throughput and the heap that was used, which
+	// stays the same for any size of file.
+	//
+	public static void main(String[] args) throws IOException
+	{
+		String fileName = args.length > 0 ? args[0] : "data/world_temp_2000-2016.csv";
+		double megabytes = new File(fileName).length() / (1024.0 * 1024.0);
+
+		StreamingAnalyzer analyzer = new StreamingAnalyzer();
+		IAccumulator<ITemperature> lowest = analyzer.addLowestTempYearByCountry("Canada");
+		IAccumulator<ITemperature> highest = analyzer.addHighestTempYearByCountry("Canada");
+		IAccumulator<ArrayList<ITemperature>> topLowest = analyzer.addTopKLowestTemp(10, TopKSelector.ANY_MONTH, TopKSelector.ANY_YEAR);
+		IAccumulator<ArrayList<ITemperature>> topDeltas = analyzer.addTopNTempDelta(10, 1, 2000, 2016);
+		IAccumulator<Long> inRange = analyzer.addTempWithinRangeCount(null, 20.0, 30.0);
+
+		Runtime runtime = Runtime.getRuntime();
+		System.gc();
+		long usedBefore = runtime.totalMemory() - runtime.freeMemory();
+		long start = System.nanoTime();
+		analyzer.run(fileName);
+		double seconds = (System.nanoTime() - start) / 1e9;
+		long usedAfter = runtime.totalMemory() - runtime.freeMemory();
+
+		System.out.println(fileName + ": " + analyzer.getNumReadings() + " readings, " + String.format("%.1f", megabytes / seconds) + " MB/s, about "
+				+ Math.max(0, (usedAfter - usedBefore) / 1024) + " KB of heap allocated");
+		System.out.println("Lowest in Canada: " + lowest.getResult());
+		System.out.println("Highest in Canada: " + highest.getResult());
+		System.out.println("Top 10 lowest: " + topLowest.getResult());
+		System.out.println("Top 10 January changes 2000-2016: " + topDeltas.getResult());
+		System.out.println("Readings within [20, 30]: " + inRange.getResult());
+	}
+}
@@ -0,0 +1,556 @@
+package climatechange;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.CRC32;
+
+//
+// A compact binary copy of a TemperatureTable that is written after a weather data file is parsed for the first time, so later runs can
+// map the columns straight into memory instead of parsing the file again. The layout, in little-endian byte order, is:
+//
+//   header      magic, version, row count, country count (4 bytes each), source file size, source file last-modified time and a CRC32
+//               of everything after the header (8 bytes each)
+//   dictionary  for each country, the length and UTF-8 bytes of its name and of its 3-Letter Code, padded to a multiple of 8 bytes
+//   columns     the temperatures (8 bytes each), country ids (4 bytes each), years (2 bytes each) and months (1 byte each) of every row
+//
+// Every value has a fixed width, so a MappedTemperatureStore can also read the rows of a snapshot where they are, without copying them.
+//
+public class TableSnapshot {
+	public static final String FILE_EXTENSION = ".snapshot";
+	public static final int MAGIC = 0x434c494d; // "CLIM"
+	public static final int VERSION = 1;
+	public static final int HEADER_SIZE = 40;
+	// The bytes every row takes across the four columns.
+	public static final int ROW_SIZE = 8 + 4 + 2 + 1;
+
+	// The number of bytes that is written or mapped at a time.
+	private static final int BLOCK_SIZE = 1 << 20;
+	private static final int MAX_WINDOW_SIZE = 1 << 30;
+
+	private TableSnapshot()
+	{
+	}
+
+	//
+	// Gets the table of a weather data file from its snapshot if the snapshot was written for the file at its current size and last-modified
+	// time. Otherwise the file is parsed and a new snapshot is written next to it. A snapshot that cannot be written, for example because
+	// the directory is read-only, only means the next run will parse the file again.
+	//
+	public static TemperatureTable loadOrParse(String fileName) throws FileNotFoundException
+	{
+		File sourceFile = new File(fileName);
+		if (!sourceFile.isFile())
+		{
+			throw new FileNotFoundException(fileName + " (No such file)");
+		}
+
+		File snapshotFile = new File(fileName + FILE_EXTENSION);
+		TemperatureTable table = null;
+		long start = ClimateMetrics.startTimer();
+		try
+		{
+			table = read(snapshotFile, sourceFile);
+		}
+		catch (IOException e)
+		{
+			table = null; // A snapshot that cannot be read is treated the same as a missing one.
+		}
+
+		if (table != null)
+		{
+			ClimateMetrics.recordPhase(ClimateMetrics.Phase.SNAPSHOT_READ, start, table.size());
+			return table;
+		}
+
+		table = new WeatherIO().readTableFromFile(fileName);
+		try
+		{
+			start = ClimateMetrics.startTimer();
+			write(table, snapshotFile, sourceFile);
+			ClimateMetrics.recordPhase(ClimateMetrics.Phase.SNAPSHOT_WRITE, start, table.size());
+		}
+		catch (IOException e)
+		{
+			// The analyzer still works without a snapshot.
+		}
+
+		return table;
+	}
+
+	//
+	// Reads a snapshot. Returns null if the snapshot does not exist, is not a snapshot of this version, fails its checksum, or was written
+	// for a different size or last-modified time of the source file.
+	//
+	public static TemperatureTable read(File snapshotFile, File sourceFile) throws IOException
+	{
+		if (!snapshotFile.isFile() || snapshotFile.length() < HEADER_SIZE)
+		{
+			return null;
+		}
+
+		RandomAccessFile inputFile = new RandomAccessFile(snapshotFile, "r");
+		try
+		{
+			FileChannel channel = inputFile.getChannel();
+			Layout layout = readLayout(channel, sourceFile, true);
+			if (layout == null)
+			{
+				return null;
+			}
+
+			int numRows = layout.numRows;
+			long position = layout.columnsPosition;
+			double[] temperatures = new double[Math.max(numRows, 1)];
+			int[] countryIds = new int[Math.max(numRows, 1)];
+			short[] years = new short[Math.max(numRows, 1)];
+			byte[] months = new byte[Math.max(numRows, 1)];
+			position = readColumn(channel, position, 8, numRows, (buffer, offset, count) -> buffer.asDoubleBuffer().get(temperatures, offset, count));
+			position = readColumn(channel, position, 4, numRows, (buffer, offset, count) -> buffer.asIntBuffer().get(countryIds, offset, count));
+			position = readColumn(channel, position, 2, numRows, (buffer, offset, count) -> buffer.asShortBuffer().get(years, offset, count));
+			readColumn(channel, position, 1, numRows, (buffer, offset, count) -> buffer.get(months, offset, count));
+
+			return new TemperatureTable(temperatures, years, months, countryIds, numRows, layout.countries);
+		}
+		finally
+		{
+			inputFile.close();
+		}
+	}
+
+	//
+	// Writes a snapshot of a table for a source file. The snapshot is written to a temporary file first and then moved into place, so another
+	// process never sees a half-written snapshot.
+	//
+	public static void write(ITemperatureStore table, File snapshotFile, File sourceFile) throws IOException
+	{
+		writeSnapshot(snapshotFile, sourceFile, table.getCountries(), table.size(), (channel, block, crc) ->
+		{
+			for (int row = 0; row < table.size(); row++)
+			{
+				ensureRoom(channel, block, crc, 8);
+				block.putDouble(table.getTemperature(row));
+			}
+			for (int row = 0; row < table.size(); row++)
+			{
+				ensureRoom(channel, block, crc, 4);
+				block.putInt(table.getCountryId(row));
+			}
+			for (int row = 0; row < table.size(); row++)
+			{
+				ensureRoom(channel, block, crc, 2);
+				block.putShort((short) table.getYear(row));
+			}
+			for (int row = 0; row < table.size(); row++)
+			{
+				ensureRoom(channel, block, crc, 1);
+				block.put((byte) table.getMonth(row));
+			}
+		});
+	}
+
+	//
+	// Parses a weather data file straight into a snapshot, without ever holding its rows in memory. Each column is streamed to a temporary
+	// file next to the snapshot while the file is parsed, and the columns are copied after the dictionary once the number of rows is known.
+	// This is how files larger than the heap are made ready for a MappedTemperatureStore.
+	//
+	public static void writeFromFile(String fileName, File snapshotFile) throws FileNotFoundException, IOException
+	{
+		long start = ClimateMetrics.startTimer();
+		File directory = snapshotFile.getAbsoluteFile().getParentFile();
+		ColumnWriter columns = new ColumnWriter(directory);
+		try
+		{
+			CountryDictionary countries = new CountryDictionary();
+			new MappedCsvParser(columns, countries).parseFile(fileName);
+			columns.finish();
+			writeSnapshot(snapshotFile, new File(fileName), countries, columns.numRows, (channel, block, crc) -> columns.copyTo(channel, block, crc));
+			ClimateMetrics.recordPhase(ClimateMetrics.Phase.SNAPSHOT_WRITE, start, columns.numRows);
+		}
+		finally
+		{
+			columns.delete();
+		}
+	}
+
+	//
+	// Checks the header of a snapshot and reads its dictionary. Returns null if the file is not a snapshot of this version, was written for a
+	// different size or last-modified time of the source file, has a dictionary that does not fit its header, or is not as long as its
+	// header says. The source file is not checked if it is
+	// null, and the checksum only if verifyChecksum is true, since checking it reads every byte of the file.
+	//
+	static Layout readLayout(FileChannel channel, File sourceFile, boolean verifyChecksum) throws IOException
+	{
+		if (channel.size() < HEADER_SIZE)
+		{
+			return null;
+		}
+
+		ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		int magic = header.getInt();
+		int version = header.getInt();
+		int numRows = header.getInt();
+		int numCountries = header.getInt();
+		long sourceSize = header.getLong();
+		long sourceLastModified = header.getLong();
+		long checksum = header.getLong();
+		if (magic != MAGIC || version != VERSION || numRows < 0 || numCountries < 0)
+		{
+			return null;
+		}
+		if (sourceFile != null && (sourceSize != sourceFile.length() || sourceLastModified != sourceFile.lastModified()))
+		{
+			return null;
+		}
+		if (verifyChecksum && checksum != computeChecksum(channel, HEADER_SIZE, channel.size()))
+		{
+			return null;
+		}
+
+		long position = HEADER_SIZE;
+		CountryDictionary countries = new CountryDictionary();
+		ByteBuffer dictionary = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(channel.size() - position, MAX_WINDOW_SIZE)).order(ByteOrder.LITTLE_ENDIAN);
+		if (numCountries > dictionary.remaining() / 8)
+		{
+			return null; // Each country takes at least the two lengths.
+		}
+		for (int countryId = 0; countryId < numCountries; countryId++)
+		{
+			String countryName = readString(dictionary);
+			String countryCode = countryName == null ? null : readString(dictionary);
+			if (countryCode == null)
+			{
+				return null;
+			}
+			countries.intern(countryName, countryCode);
+		}
+		position += align(dictionary.position());
+
+		if (position + (long) numRows * ROW_SIZE != channel.size())
+		{
+			return null;
+		}
+
+		return new Layout(numRows, countries, position);
+	}
+
+	//
+	// The number of rows, the dictionary and the position of the first column of a snapshot.
+	//
+	static class Layout {
+		final int numRows;
+		final CountryDictionary countries;
+		final long columnsPosition;
+
+		private Layout(int theNumRows, CountryDictionary theCountries, long theColumnsPosition)
+		{
+			numRows = theNumRows;
+			countries = theCountries;
+			columnsPosition = theColumnsPosition;
+		}
+	}
+
+	//
+	// Writes the columns of a snapshot through the block, which is flushed to the file and added to the checksum as it fills up.
+	//
+	private interface ColumnSource {
+		void writeColumns(FileChannel channel, ByteBuffer block, CRC32 crc) throws IOException;
+	}
+
+	//
+	// Writes a snapshot with the given dictionary and columns to a temporary file, and then moves it into place.
+	//
+	private static void writeSnapshot(File snapshotFile, File sourceFile, CountryDictionary countries, int numRows, ColumnSource columns) throws IOException
+	{
+		File absoluteFile = snapshotFile.getAbsoluteFile();
+		File tempFile = File.createTempFile(absoluteFile.getName(), ".tmp", absoluteFile.getParentFile());
+		try
+		{
+			RandomAccessFile outputFile = new RandomAccessFile(tempFile, "rw");
+			try
+			{
+				FileChannel channel = outputFile.getChannel();
+				channel.position(HEADER_SIZE);
+				ByteBuffer block = ByteBuffer.allocateDirect(BLOCK_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+				CRC32 crc = new CRC32();
+
+				long dictionarySize = 0;
+				for (int countryId = 0; countryId < countries.size(); countryId++)
+				{
+					byte[] countryName = countries.getName(countryId).getBytes(StandardCharsets.UTF_8);
+					byte[] countryCode = countries.getCode(countryId).getBytes(StandardCharsets.UTF_8);
+					ensureRoom(channel, block, crc, 8 + countryName.length + countryCode.length);
+					block.putInt(countryName.length).put(countryName).putInt(countryCode.length).put(countryCode);
+					dictionarySize += 8 + countryName.length + countryCode.length;
+				}
+				for (long i = dictionarySize; i < align(dictionarySize); i++)
+				{
+					ensureRoom(channel, block, crc, 1);
+					block.put((byte) 0);
+				}
+
+				columns.writeColumns(channel, block, crc);
+				flush(channel, block, crc);
+
+				ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+				header.putInt(MAGIC).putInt(VERSION).putInt(numRows).putInt(countries.size());
+				header.putLong(sourceFile.length()).putLong(sourceFile.lastModified()).putLong(crc.getValue());
+				header.flip();
+				while (header.hasRemaining())
+				{
+					channel.write(header, header.position());
+				}
+			}
+			finally
+			{
+				outputFile.close();
+			}
+
+			Files.move(tempFile.toPath(), absoluteFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+		finally
+		{
+			tempFile.delete(); // Only does something if the snapshot was not moved into place.
+		}
+	}
+
+	//
+	// Streams each column of the parsed readings to its own temporary file, so the rows never have to be held in memory.
+	//
+	private static class ColumnWriter implements ITemperatureSink {
+		private static final int[] WIDTHS = { 8, 4, 2, 1 };
+
+		private File[] files;
+		private FileChannel[] channels;
+		private ByteBuffer[] blocks;
+		private int numRows;
+		// An error from accept(), which cannot throw an IOException, kept until finish().
+		private IOException error;
+
+		private ColumnWriter(File directory) throws IOException
+		{
+			files = new File[WIDTHS.length];
+			channels = new FileChannel[WIDTHS.length];
+			blocks = new ByteBuffer[WIDTHS.length];
+			try
+			{
+				for (int column = 0; column < WIDTHS.length; column++)
+				{
+					files[column] = File.createTempFile("column" + column, ".tmp", directory);
+					channels[column] = new RandomAccessFile(files[column], "rw").getChannel();
+					blocks[column] = ByteBuffer.allocateDirect(BLOCK_SIZE / 8 * WIDTHS[column]).order(ByteOrder.LITTLE_ENDIAN);
+				}
+			}
+			catch (IOException e)
+			{
+				delete();
+				throw e;
+			}
+		}
+
+		@Override
+		public void accept(double temperature, int year, int month, int countryId)
+		{
+			if (error != null)
+			{
+				return;
+			}
+
+			try
+			{
+				if (numRows == Integer.MAX_VALUE)
+				{
+					throw new IOException("A snapshot cannot hold more than " + Integer.MAX_VALUE + " rows");
+				}
+
+				// Every block holds the same number of rows, so they all fill up on the same row.
+				if (!blocks[0].hasRemaining())
+				{
+					for (int column = 0; column < WIDTHS.length; column++)
+					{
+						writeBlock(column);
+					}
+				}
+
+				blocks[0].putDouble(temperature);
+				blocks[1].putInt(countryId);
+				blocks[2].putShort((short) year);
+				blocks[3].put((byte) month);
+				numRows++;
+			}
+			catch (IOException e)
+			{
+				error = e;
+			}
+		}
+
+		//
+		// Writes out what is left in the blocks, or throws the first error accept() ran into.
+		//
+		private void finish() throws IOException
+		{
+			if (error != null)
+			{
+				throw error;
+			}
+
+			for (int column = 0; column < WIDTHS.length; column++)
+			{
+				writeBlock(column);
+			}
+		}
+
+		//
+		// Copies every column file, in order, through the block of the snapshot.
+		//
+		private void copyTo(FileChannel channel, ByteBuffer block, CRC32 crc) throws IOException
+		{
+			for (FileChannel column : channels)
+			{
+				column.position(0);
+				while (column.read(block) >= 0)
+				{
+					if (!block.hasRemaining())
+					{
+						flush(channel, block, crc);
+					}
+				}
+			}
+		}
+
+		private void writeBlock(int column) throws IOException
+		{
+			ByteBuffer block = blocks[column];
+			block.flip();
+			while (block.hasRemaining())
+			{
+				channels[column].write(block);
+			}
+			block.clear();
+		}
+
+		//
+		// Closes and deletes the column files.
+		//
+		private void delete()
+		{
+			for (int column = 0; column < WIDTHS.length; column++)
+			{
+				try
+				{
+					if (channels[column] != null)
+					{
+						channels[column].close();
+					}
+				}
+				catch (IOException e)
+				{
+					// The file is deleted either way.
+				}
+				if (files[column] != null)
+				{
+					files[column].delete();
+				}
+			}
+		}
+	}
+
+	//
+	// Copies part of a column out of a mapped window of the snapshot.
+	//
+	private interface ColumnReader {
+		void read(ByteBuffer buffer, int offset, int count);
+	}
+
+	//
+	// Reads a column of numRows values of the given width, mapping at most MAX_WINDOW_SIZE bytes at a time. Returns the position just after
+	// the column.
+	//
+	private static long readColumn(FileChannel channel, long position, int width, int numRows, ColumnReader reader) throws IOException
+	{
+		int rowsPerWindow = MAX_WINDOW_SIZE / width;
+		for (int offset = 0; offset < numRows; offset += rowsPerWindow)
+		{
+			int count = Math.min(rowsPerWindow, numRows - offset);
+			MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position + (long) offset * width, (long) count * width);
+			reader.read(window.order(ByteOrder.LITTLE_ENDIAN), offset, count);
+		}
+
+		return position + (long) numRows * width;
+	}
+
+	//
+	// Computes the CRC32 of [start, end) of a file, mapping at most MAX_WINDOW_SIZE bytes at a time.
+	//
+	private static long computeChecksum(FileChannel channel, long start, long end) throws IOException
+	{
+		CRC32 crc = new CRC32();
+		for (long position = start; position < end; position += MAX_WINDOW_SIZE)
+		{
+			crc.update(channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAX_WINDOW_SIZE, end - position)));
+		}
+
+		return crc.getValue();
+	}
+
+	//
+	// Reads a length-prefixed UTF-8 String. Returns null if the length is negative or runs past the end of the buffer, which the header
+	// fields outside the checksum can cause.
+	//
+	private static String readString(ByteBuffer buffer)
+	{
+		if (buffer.remaining() < 4)
+		{
+			return null;
+		}
+		int length = buffer.getInt();
+		if (length < 0 || length > buffer.remaining())
+		{
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	//
+	// Writes out the block first if it does not have room for the given number of bytes.
+	//
+	private static void ensureRoom(FileChannel channel, ByteBuffer block, CRC32 crc, int numBytes) throws IOException
+	{
+		if (block.remaining() < numBytes)
+		{
+			flush(channel, block, crc);
+		}
+	}
+
+	//
+	// Writes the bytes of the block to the end of the file and adds them to the checksum.
+	//
+	private static void flush(FileChannel channel, ByteBuffer block, CRC32 crc) throws IOException
+	{
+		block.flip();
+		crc.update(block.duplicate());
+		while (block.hasRemaining())
+		{
+			channel.write(block);
+		}
+		block.clear();
+	}
+
+	//
+	// Rounds a size up to a multiple of 8 bytes.
+	//
+	private static long align(long size)
+	{
+		return (size + 7) & ~7L;
+	}
+}
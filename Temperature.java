@@ -1,21 +1,47 @@
 package climatechange;
 
-import java.util.HashMap;
+import java.util.Objects;
 
 public class Temperature implements ITemperature, Comparable<Temperature>{
 	private double temperature;
 	private int year;
-	private String month;
-	private String countryName;
-	private String countryCode;
+	// The month from 1 to 12, so months are compared without looking up their names.
+	private byte month;
+	// The id of the country in the shared CountryDictionary, which holds its name and 3-Letter Code once for every Temperature object.
+	private int countryId;
+	// The month and the 3-Letter Code as they were given, kept only in the rare case the month is not one of the 3-letter months of the
+	// weather data file or the code is not the one the dictionary holds for the country. Otherwise both are null.
+	private String otherMonth;
+	private String otherCountryCode;
 	
 	public Temperature(double theTemperature, int theYear, String theMonth, String theCountryName, String theCountryCode)
 	{
 		temperature = theTemperature;
 		year = theYear;
-		month = theMonth;
-		countryName = theCountryName;
-		countryCode = theCountryCode;
+		month = (byte) Months.toInteger(theMonth);
+		if (month == 0)
+		{
+			otherMonth = theMonth;
+		}
+
+		CountryDictionary countries = CountryDictionary.getShared();
+		countryId = countries.intern(theCountryName, theCountryCode);
+		if (!Objects.equals(countries.getCode(countryId), theCountryCode))
+		{
+			otherCountryCode = theCountryCode;
+		}
+	}
+
+	//
+	// Creates a reading of a country that is already in the shared CountryDictionary, with the month as a number from 1 to 12. Used by
+	// TemperatureTable, which knows the shared ids of its countries, so nothing has to be looked up by name.
+	//
+	Temperature(double theTemperature, int theYear, int theMonth, int theCountryId)
+	{
+		temperature = theTemperature;
+		year = theYear;
+		month = (byte) (theMonth >= 1 && theMonth <= 12 ? theMonth : 0); // Any other month reads back as null, like Months.toString() gives.
+		countryId = theCountryId;
 	}
 	
 	//
@@ -23,7 +49,7 @@ public class Temperature implements ITemperature, Comparable<Temperature>{
 	//
 	@Override
 	public String getCountry() {
-		return countryName;
+		return CountryDictionary.getShared().getName(countryId);
 	}
 
 	//
@@ -31,7 +57,12 @@ public class Temperature implements ITemperature, Comparable<Temperature>{
 	//
 	@Override
 	public String getCountry3LetterCode() {
-		return countryCode;
+		if (otherCountryCode != null)
+		{
+			return otherCountryCode;
+		}
+
+		return CountryDictionary.getShared().getCode(countryId);
 	}
 
 	//
@@ -39,7 +70,12 @@ public class Temperature implements ITemperature, Comparable<Temperature>{
 	//
 	@Override
 	public String getMonth() {
-		return month;
+		if (month == 0)
+		{
+			return otherMonth;
+		}
+
+		return Months.toString(month);
 	}
 
 	//
@@ -71,41 +107,25 @@ public class Temperature implements ITemperature, Comparable<Temperature>{
 	{
 		String allTemps = "Temperature: " + temperature + " / ";
 		String allYears = "Year: " + year + " / ";
-		String allMonths = "Month: " + month + " / ";
-		String allCountries = "Country Name: " + countryName + " / ";
-		String allCodes = "Country Code: " + countryCode;
+		String allMonths = "Month: " + getMonth() + " / ";
+		String allCountries = "Country Name: " + getCountry() + " / ";
+		String allCodes = "Country Code: " + getCountry3LetterCode();
 		return allTemps + allYears + allMonths + allCountries + allCodes;
 	}
 	
 	//
-	// Maps String values of months to integer values. This will be used in the compareTo() method, so we can compare the earliest months 
-	// based on their integer values as opposed to their String values.
+	// Maps String values of months to integer values, from 1 for "Jan" to 12 for "Dec". Returns 0 for any other String.
 	//
 	public int mapMonthsToIntegers(String monthString)
 	{
-		HashMap<String, Integer> stringMonthToIntegerMonth = new HashMap<String, Integer>();
-		// Each String key is unique and corresponds to a unique integer value.
-		stringMonthToIntegerMonth.put("Jan", 1);
-		stringMonthToIntegerMonth.put("Feb", 2);
-		stringMonthToIntegerMonth.put("Mar", 3);
-		stringMonthToIntegerMonth.put("Apr", 4);
-		stringMonthToIntegerMonth.put("May", 5);
-		stringMonthToIntegerMonth.put("Jun", 6);
-		stringMonthToIntegerMonth.put("Jul", 7);
-		stringMonthToIntegerMonth.put("Aug", 8);
-		stringMonthToIntegerMonth.put("Sep", 9);
-		stringMonthToIntegerMonth.put("Oct", 10);
-		stringMonthToIntegerMonth.put("Nov", 11);
-		stringMonthToIntegerMonth.put("Dec", 12);
-				
-		int monthInteger = stringMonthToIntegerMonth.get(monthString);
-		return monthInteger;
+		return Months.toInteger(monthString);
 	}
 
 	//
 	// Compares two Temperature objects by their temperatures. If the temperatures are the same, then we compare by the names of the
 	// countries. If the names of the countries are the same, then we compare by the years. If the years are the same, then we compare
-	// by the months.
+	// by the months. Only the country names are Strings, and they are only compared when the countries differ, so comparing allocates
+	// nothing.
 	//
 	public int compareTo(Temperature other) {
 		if (Double.compare(this.temperature, other.temperature) != 0)
@@ -113,9 +133,10 @@ public class Temperature implements ITemperature, Comparable<Temperature>{
 			return Double.compare(this.temperature, other.temperature);
 		}
 		
-		if (this.countryName.compareTo(other.countryName) != 0)
+		if (this.countryId != other.countryId)
 		{
-			return this.countryName.compareTo(other.countryName);
+			// Ids are handed out in the order countries are first seen, so only the names give the alphabetical order.
+			return this.getCountry().compareTo(other.getCountry());
 		}
 		
 		if (Integer.compare(this.year, other.year) != 0)
@@ -123,25 +144,33 @@ public class Temperature implements ITemperature, Comparable<Temperature>{
 			return Integer.compare(this.year, other.year);
 		}
 		
-		return Integer.compare(mapMonthsToIntegers(this.month), mapMonthsToIntegers(other.month));
+		return Integer.compare(this.month, other.month);
 	}
 	
 	//
-	// Tests if 2 Temperature objects are equal to each other.
+	// Tests if 2 Temperature objects are equal to each other, which is when compareTo() finds them the same.
 	//
 	public boolean equals(Object other)
 	{
+		if (!(other instanceof Temperature))
+		{
+			return false;
+		}
+
 		Temperature that = (Temperature) other;
-		return this.compareTo(that) == 0;
+		return Double.compare(this.temperature, that.temperature) == 0 && this.countryId == that.countryId && this.year == that.year
+				&& this.month == that.month;
 	}
 	
 	//
-	// Gets the sum of all the hashCodes.
+	// Combines the hashCodes of the fields that equals() compares.
 	//
 	public int hashCode()
 	{
-		int temperatureInteger = (int) temperature;
-		return temperatureInteger + year + month.hashCode() + countryName.hashCode() + countryCode.hashCode();
+		int hash = Double.hashCode(temperature);
+		hash = 31 * hash + countryId;
+		hash = 31 * hash + year;
+		return 31 * hash + month;
 	}
 	
 }
@@ -0,0 +1,324 @@
+package climatechange;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+public class TemperatureFormatter {
+	// A rounded value of 10^7 or more is printed in scientific notation by Double.toString(), so those values are left to it.
+	private static final long MAX_PLAIN_HUNDREDTHS = 1000000000L;
+	// Strings are only cached up to this many, so a stream of readings with ever new names cannot grow the cache without end.
+	private static final int MAX_CACHED_STRINGS = 4096;
+	private static final byte[] CELSIUS_SEPARATOR = "(C) ".getBytes(Charset.defaultCharset());
+	private static final byte[] FAHRENHEIT_SEPARATOR = "(F), ".getBytes(Charset.defaultCharset());
+	private static final byte[] SEPARATOR = ", ".getBytes(Charset.defaultCharset());
+
+	private Charset charset;
+	// The bytes of the row being formatted. The array is reused for every row and only grows.
+	private byte[] buffer;
+	private int length;
+	// The encoded bytes of months, country names and codes, so each distinct String is only encoded once.
+	private HashMap<String, byte[]> encodedStrings;
+
+	//
+	// Creates a formatter that encodes text in the default charset, the same charset a FileWriter uses.
+	//
+	public TemperatureFormatter()
+	{
+		charset = Charset.defaultCharset();
+		buffer = new byte[256];
+		length = 0;
+		encodedStrings = new HashMap<String, byte[]>();
+	}
+
+	//
+	// Empties the buffer so the next row starts at position 0.
+	//
+	public void reset()
+	{
+		length = 0;
+	}
+
+	//
+	// Gets the buffer that holds the formatted bytes. Only the first getLength() bytes are valid.
+	//
+	public byte[] getBuffer()
+	{
+		return buffer;
+	}
+
+	public int getLength()
+	{
+		return length;
+	}
+
+	//
+	// Appends one reading as a row like "21.34(C) 70.42(F), 2005, Jan, Canada, CAN" and a line break, byte for byte the same as the row
+	// IWeatherIO.writeDataToFile() writes, without creating any objects once its Strings have been seen.
+	//
+	public void appendRow(ITemperature temp)
+	{
+		appendRounded(temp.getTemperature(false));
+		appendBytes(CELSIUS_SEPARATOR);
+		appendRounded(temp.getTemperature(true));
+		appendBytes(FAHRENHEIT_SEPARATOR);
+		appendInt(temp.getYear());
+		appendBytes(SEPARATOR);
+		appendString(temp.getMonth());
+		appendBytes(SEPARATOR);
+		appendString(temp.getCountry());
+		appendBytes(SEPARATOR);
+		appendString(temp.getCountry3LetterCode());
+		appendByte('\n');
+	}
+
+	//
+	// Appends a row of a table the same way appendRow() appends the Temperature object of that row, without creating the object.
+	//
+	public void appendRow(ITemperatureStore table, int row)
+	{
+		double temperature = table.getTemperature(row);
+		appendRounded(temperature);
+		appendBytes(CELSIUS_SEPARATOR);
+		appendRounded((1.8 * temperature) + 32); // The same expression Temperature.getTemperature(true) uses.
+		appendBytes(FAHRENHEIT_SEPARATOR);
+		appendInt(table.getYear(row));
+		appendBytes(SEPARATOR);
+		appendString(Months.toString(table.getMonth(row)));
+		appendBytes(SEPARATOR);
+		appendString(table.getCountries().getName(table.getCountryId(row)));
+		appendBytes(SEPARATOR);
+		appendString(table.getCountries().getCode(table.getCountryId(row)));
+		appendByte('\n');
+	}
+
+	//
+	// Appends a value rounded to 2 decimal places exactly as Math.round(value * 100.0) / 100.0 + "" prints it: the rounded value divided
+	// by 100.0 is the closest double to a number with at most 2 decimals, and Double.toString() prints that number with its trailing zeros
+	// dropped but at least one decimal. So the text can be written straight from the rounded long, digit by digit.
+	//
+	public void appendRounded(double value)
+	{
+		long hundredths = Math.round(value * 100.0);
+		if (hundredths >= MAX_PLAIN_HUNDREDTHS || hundredths <= -MAX_PLAIN_HUNDREDTHS)
+		{
+			appendString(Double.toString(hundredths / 100.0)); // Scientific notation, which no reading comes close to.
+			return;
+		}
+
+		appendScaled(hundredths, 100, 2);
+	}
+
+	//
+	// Appends a value rounded to the given number of decimal places (0 to 9), with its trailing zeros dropped but at least one decimal kept,
+	// like "-3.5" or "12.0421". Values too large to round that way are appended with Double.toString().
+	//
+	public void appendDecimal(double value, int decimals)
+	{
+		if (decimals < 0 || decimals > 9)
+		{
+			throw new IllegalArgumentException("Cannot round to " + decimals + " decimal places");
+		}
+
+		long scale = 1;
+		for (int i = 0; i < decimals; i++)
+		{
+			scale *= 10;
+		}
+
+		if (Double.isNaN(value) || Math.abs(value) >= 1e9)
+		{
+			appendString(Double.toString(value));
+			return;
+		}
+
+		appendScaled(Math.round(value * scale), scale, decimals);
+	}
+
+	//
+	// Appends a value that was multiplied by scale = 10^decimals and rounded: its whole part, a dot, then its decimals without trailing zeros.
+	//
+	private void appendScaled(long scaled, long scale, int decimals)
+	{
+		if (scaled < 0)
+		{
+			appendByte('-');
+			scaled = -scaled;
+		}
+
+		appendLong(scaled / scale);
+		appendByte('.');
+		long fraction = scaled % scale;
+		int numDigits = Math.max(decimals, 1);
+		while (numDigits > 1 && fraction % 10 == 0)
+		{
+			fraction /= 10;
+			numDigits--;
+		}
+
+		ensureCapacity(numDigits);
+		for (int i = length + numDigits - 1; i >= length; i--)
+		{
+			buffer[i] = (byte) ('0' + fraction % 10);
+			fraction /= 10;
+		}
+		length += numDigits;
+	}
+
+	public void appendInt(int value)
+	{
+		appendLong(value);
+	}
+
+	//
+	// Appends the decimal digits of a value, with a minus sign if it is negative.
+	//
+	public void appendLong(long value)
+	{
+		if (value == Long.MIN_VALUE)
+		{
+			appendString(Long.toString(value)); // Cannot be negated.
+			return;
+		}
+
+		if (value < 0)
+		{
+			appendByte('-');
+			value = -value;
+		}
+
+		int numDigits = 1;
+		for (long bound = 10; numDigits < 19 && value >= bound; bound *= 10)
+		{
+			numDigits++;
+		}
+
+		ensureCapacity(numDigits);
+		for (int i = length + numDigits - 1; i >= length; i--)
+		{
+			buffer[i] = (byte) ('0' + value % 10);
+			value /= 10;
+		}
+		length += numDigits;
+	}
+
+	//
+	// Appends the encoded bytes of a String, or "null" like String concatenation would.
+	//
+	public void appendString(String value)
+	{
+		if (value == null)
+		{
+			value = "null";
+		}
+
+		byte[] bytes = encodedStrings.get(value);
+		if (bytes == null)
+		{
+			bytes = value.getBytes(charset);
+			if (encodedStrings.size() < MAX_CACHED_STRINGS)
+			{
+				encodedStrings.put(value, bytes);
+			}
+		}
+
+		appendBytes(bytes);
+	}
+
+	//
+	// Appends bytes that are already encoded, such as a name that is written many times.
+	//
+	public void appendBytes(byte[] bytes)
+	{
+		ensureCapacity(bytes.length);
+		System.arraycopy(bytes, 0, buffer, length, bytes.length);
+		length += bytes.length;
+	}
+
+	private void appendByte(int value)
+	{
+		ensureCapacity(1);
+		buffer[length++] = (byte) value;
+	}
+
+	private void ensureCapacity(int extraBytes)
+	{
+		if (length + extraBytes > buffer.length)
+		{
+			buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + extraBytes));
+		}
+	}
+
+	//
+	// Formats every reading of a weather data file the way writeDataToFile() used to, with String concatenation, and with a formatter,
+	// checks that both give the same bytes, and reports the time and the bytes allocated per row for each.
+	//
+	public static void main(String[] args) throws Exception
+	{
+		String fileName = args.length > 0 ? args[0] : "data/world_temp_2000-2016.csv";
+		int repetitions = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+		ArrayList<ITemperature> readings = new WeatherIO().readDataFromFile(fileName);
+		Charset charset = Charset.defaultCharset();
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long threadId = Thread.currentThread().getId();
+		TemperatureFormatter formatter = new TemperatureFormatter();
+
+		for (ITemperature temp : readings)
+		{
+			byte[] expected = (Math.round(temp.getTemperature(false) * 100.0) / 100.0 + "(C) " + Math.round(temp.getTemperature(true) * 100.0) / 100.0 + "(F)"
+					+ ", " + temp.getYear() + ", " + temp.getMonth() + ", " + temp.getCountry() + ", " + temp.getCountry3LetterCode() + "\n").getBytes(charset);
+			formatter.reset();
+			formatter.appendRow(temp);
+			if (!Arrays.equals(expected, 0, expected.length, formatter.getBuffer(), 0, formatter.getLength()))
+			{
+				throw new IllegalStateException("Formatted differently: " + new String(expected, charset));
+			}
+		}
+
+		long checksum = 0;
+		for (int pass = 0; pass < 2; pass++) // The first pass warms up the JIT compiler.
+		{
+			long concatBytes = threads.getThreadAllocatedBytes(threadId);
+			long concatStart = System.nanoTime();
+			for (int i = 0; i < repetitions; i++)
+			{
+				for (ITemperature temp : readings)
+				{
+					checksum += (Math.round(temp.getTemperature(false) * 100.0) / 100.0 + "(C) " + Math.round(temp.getTemperature(true) * 100.0) / 100.0 + "(F)"
+							+ ", " + temp.getYear() + ", " + temp.getMonth() + ", " + temp.getCountry() + ", " + temp.getCountry3LetterCode() + "\n").getBytes(charset).length;
+				}
+			}
+			long concatNanos = System.nanoTime() - concatStart;
+			concatBytes = threads.getThreadAllocatedBytes(threadId) - concatBytes;
+
+			long formatterBytes = threads.getThreadAllocatedBytes(threadId);
+			long formatterStart = System.nanoTime();
+			for (int i = 0; i < repetitions; i++)
+			{
+				for (ITemperature temp : readings)
+				{
+					formatter.reset();
+					formatter.appendRow(temp);
+					checksum += formatter.getLength();
+				}
+			}
+			long formatterNanos = System.nanoTime() - formatterStart;
+			formatterBytes = threads.getThreadAllocatedBytes(threadId) - formatterBytes;
+
+			if (pass == 1)
+			{
+				double rows = (double) readings.size() * repetitions;
+				System.out.println(fileName + ": " + readings.size() + " rows x " + repetitions + ", identical output");
+				System.out.println(String.format("String concatenation: %8.1f ns/row %8.1f bytes allocated/row", concatNanos / rows, concatBytes / rows));
+				System.out.println(String.format("TemperatureFormatter: %8.1f ns/row %8.1f bytes allocated/row", formatterNanos / rows, formatterBytes / rows));
+			}
+		}
+
+		if (checksum == 42)
+		{
+			System.out.println(); // Keeps the JIT compiler from dropping the loops.
+		}
+	}
+}
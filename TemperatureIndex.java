@@ -0,0 +1,227 @@
+package climatechange;
+
+import java.util.Arrays;
+
+public class TemperatureIndex {
+	private ITemperatureStore table;
+	private int minYear;
+	private int numYears;
+	// The row ids of each country, of each (country, month) pair, and of each (country, year) pair, in row order.
+	private RowList[] countryRows;
+	private RowList[] countryMonthRows;
+	private RowList[] countryYearRows;
+
+	//
+	// Builds the index over every row that is currently in the table. Each posting list is sized exactly by counting the rows first.
+	//
+	public TemperatureIndex(ITemperatureStore theTable)
+	{
+		table = theTable;
+		rebuild();
+	}
+
+	//
+	// Throws away all posting lists and builds them again from the rows of the table.
+	//
+	public void rebuild()
+	{
+		int numCountries = table.getCountries().size();
+
+		minYear = Integer.MAX_VALUE;
+		int maxYear = Integer.MIN_VALUE;
+		for (int row = 0; row < table.size(); row++)
+		{
+			minYear = Math.min(minYear, table.getYear(row));
+			maxYear = Math.max(maxYear, table.getYear(row));
+		}
+
+		numYears = table.size() == 0 ? 0 : maxYear - minYear + 1;
+
+		int[] countryCounts = new int[numCountries];
+		int[] countryMonthCounts = new int[numCountries * 12];
+		int[] countryYearCounts = new int[numCountries * numYears];
+		for (int row = 0; row < table.size(); row++)
+		{
+			int countryId = table.getCountryId(row);
+			countryCounts[countryId]++;
+			int month = table.getMonth(row);
+			if (month >= 1 && month <= 12)
+			{
+				countryMonthCounts[countryId * 12 + month - 1]++;
+			}
+			countryYearCounts[countryId * numYears + table.getYear(row) - minYear]++;
+		}
+
+		countryRows = createRowLists(countryCounts);
+		countryMonthRows = createRowLists(countryMonthCounts);
+		countryYearRows = createRowLists(countryYearCounts);
+		for (int row = 0; row < table.size(); row++)
+		{
+			int countryId = table.getCountryId(row);
+			countryRows[countryId].add(row);
+			int month = table.getMonth(row);
+			if (month >= 1 && month <= 12)
+			{
+				countryMonthRows[countryId * 12 + month - 1].add(row);
+			}
+			countryYearRows[countryId * numYears + table.getYear(row) - minYear].add(row);
+		}
+	}
+
+	//
+	// Adds the rows in [start, end) of the table, which must come after every row already in the index. New countries get new posting
+	// lists; a row outside of the range of years in the index rebuilds the whole index, which happens at most once per new year.
+	//
+	public void addRows(int start, int end)
+	{
+		for (int row = start; row < end; row++)
+		{
+			if (table.getYear(row) < minYear || table.getYear(row) >= minYear + numYears)
+			{
+				rebuild();
+				return;
+			}
+		}
+
+		int numCountries = table.getCountries().size();
+		if (numCountries > countryRows.length)
+		{
+			countryRows = growRowLists(countryRows, numCountries);
+			countryMonthRows = growRowLists(countryMonthRows, numCountries * 12);
+			countryYearRows = growRowLists(countryYearRows, numCountries * numYears);
+		}
+
+		for (int row = start; row < end; row++)
+		{
+			int countryId = table.getCountryId(row);
+			countryRows[countryId].add(row);
+			int month = table.getMonth(row);
+			if (month >= 1 && month <= 12)
+			{
+				countryMonthRows[countryId * 12 + month - 1].add(row);
+			}
+			countryYearRows[countryId * numYears + table.getYear(row) - minYear].add(row);
+		}
+	}
+
+	//
+	// Copies posting lists into a longer array, filling the new keys with empty lists. Keys are country-major, so the keys of new countries
+	// always go at the end.
+	//
+	private static RowList[] growRowLists(RowList[] rowLists, int length)
+	{
+		RowList[] grown = Arrays.copyOf(rowLists, length);
+		for (int key = rowLists.length; key < length; key++)
+		{
+			grown[key] = new RowList(0);
+		}
+
+		return grown;
+	}
+
+	//
+	// Creates one empty RowList for each key with room for exactly the counted number of rows.
+	//
+	private static RowList[] createRowLists(int[] counts)
+	{
+		RowList[] rowLists = new RowList[counts.length];
+		for (int key = 0; key < counts.length; key++)
+		{
+			rowLists[key] = new RowList(counts[key]);
+		}
+
+		return rowLists;
+	}
+
+	//
+	// Gets the rows of a country. Returns an empty list for an unknown country.
+	//
+	public RowList getRows(int countryId)
+	{
+		if (countryId < 0 || countryId >= countryRows.length)
+		{
+			return RowList.EMPTY;
+		}
+
+		return countryRows[countryId];
+	}
+
+	//
+	// Gets the rows of a country in a given month from 1 to 12. Returns an empty list for an unknown country or month.
+	//
+	public RowList getRowsByMonth(int countryId, int month)
+	{
+		if (countryId < 0 || countryId >= countryRows.length || month < 1 || month > 12)
+		{
+			return RowList.EMPTY;
+		}
+
+		return countryMonthRows[countryId * 12 + month - 1];
+	}
+
+	//
+	// Gets the rows of a country in a given year. Returns an empty list for an unknown country or a year without data.
+	//
+	public RowList getRowsByYear(int countryId, int year)
+	{
+		if (countryId < 0 || countryId >= countryRows.length || year < minYear || year >= minYear + numYears)
+		{
+			return RowList.EMPTY;
+		}
+
+		return countryYearRows[countryId * numYears + year - minYear];
+	}
+
+	//
+	// Gets the table this index was built over.
+	//
+	public ITemperatureStore getTable()
+	{
+		return table;
+	}
+
+	//
+	// A list of row ids in ascending order.
+	//
+	public static class RowList {
+		public static final RowList EMPTY = new RowList(0);
+
+		private int[] rows;
+		private int size;
+
+		public RowList(int capacity)
+		{
+			rows = new int[capacity];
+			size = 0;
+		}
+
+		//
+		// Adds a row id to the end of the list.
+		//
+		void add(int row)
+		{
+			if (size == rows.length)
+			{
+				rows = Arrays.copyOf(rows, Math.max(4, rows.length * 2));
+			}
+
+			rows[size++] = row;
+		}
+
+		//
+		// Gets the number of row ids in the list.
+		//
+		public int size()
+		{
+			return size;
+		}
+
+		//
+		// Gets the row id at a position in the list.
+		//
+		public int get(int index)
+		{
+			return rows[index];
+		}
+	}
+}
@@ -0,0 +1,224 @@
+package climatechange;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class TemperatureTable implements ITemperatureStore, ITemperatureSink {
+	public static final int DEFAULT_CAPACITY = 1024;
+
+	// Each reading is stored as one row across these parallel arrays instead of as a separate Temperature object.
+	private double[] temperatures;
+	private short[] years;
+	private byte[] months;
+	private int[] countryIds;
+	private int size;
+	private CountryDictionary countries;
+
+	public TemperatureTable()
+	{
+		this(DEFAULT_CAPACITY);
+	}
+
+	public TemperatureTable(int capacity)
+	{
+		this(capacity, new CountryDictionary());
+	}
+
+	//
+	// Creates an empty table whose country ids refer to the given dictionary.
+	//
+	public TemperatureTable(int capacity, CountryDictionary theCountries)
+	{
+		int initialCapacity = Math.max(capacity, 1);
+		temperatures = new double[initialCapacity];
+		years = new short[initialCapacity];
+		months = new byte[initialCapacity];
+		countryIds = new int[initialCapacity];
+		size = 0;
+		countries = theCountries;
+	}
+
+	//
+	// Creates a table that takes over columns that have already been filled, such as the columns read from a TableSnapshot.
+	//
+	TemperatureTable(double[] theTemperatures, short[] theYears, byte[] theMonths, int[] theCountryIds, int theSize, CountryDictionary theCountries)
+	{
+		temperatures = theTemperatures;
+		years = theYears;
+		months = theMonths;
+		countryIds = theCountryIds;
+		size = theSize;
+		countries = theCountries;
+	}
+
+	//
+	// Builds a table from a list of temperature readings, keeping the order of the list.
+	//
+	public static TemperatureTable fromList(List<? extends ITemperature> theWeatherList)
+	{
+		TemperatureTable table = new TemperatureTable(theWeatherList.size());
+		for (ITemperature value : theWeatherList)
+		{
+			table.add(value);
+		}
+
+		return table;
+	}
+
+	//
+	// Adds a reading as a new row at the end of the table and returns its row id.
+	//
+	public int add(double temperature, int year, int month, String countryName, String countryCode)
+	{
+		return add(temperature, year, month, countries.intern(countryName, countryCode));
+	}
+
+	//
+	// Adds a reading whose country is already in this table's dictionary and returns its row id.
+	//
+	public int add(double temperature, int year, int month, int countryId)
+	{
+		if (size == temperatures.length)
+		{
+			grow();
+		}
+
+		temperatures[size] = temperature;
+		years[size] = (short) year;
+		months[size] = (byte) month;
+		countryIds[size] = countryId;
+		return size++;
+	}
+
+	//
+	// Adds a reading as a new row, so a table can be filled by anything that streams readings to an ITemperatureSink.
+	//
+	@Override
+	public void accept(double temperature, int year, int month, int countryId)
+	{
+		add(temperature, year, month, countryId);
+	}
+
+	//
+	// Adds an ITemperature as a new row at the end of the table and returns its row id.
+	//
+	public int add(ITemperature value)
+	{
+		return add(value.getTemperature(false), value.getYear(), Months.toInteger(value.getMonth()), value.getCountry(), value.getCountry3LetterCode());
+	}
+
+	//
+	// Adds every row of another table to the end of this table, in order. The country ids of the other table are translated to the ids
+	// of this table's dictionary, adding any country this table has not seen yet.
+	//
+	public void appendAll(TemperatureTable other)
+	{
+		int[] countryIdMap = new int[other.countries.size()];
+		for (int otherId = 0; otherId < countryIdMap.length; otherId++)
+		{
+			countryIdMap[otherId] = countries.intern(other.countries.getName(otherId), other.countries.getCode(otherId));
+		}
+
+		for (int row = 0; row < other.size; row++)
+		{
+			add(other.temperatures[row], other.years[row], other.months[row], countryIdMap[other.countryIds[row]]);
+		}
+	}
+
+	//
+	// Doubles the capacity of every column.
+	//
+	private void grow()
+	{
+		int newCapacity = temperatures.length * 2;
+		temperatures = Arrays.copyOf(temperatures, newCapacity);
+		years = Arrays.copyOf(years, newCapacity);
+		months = Arrays.copyOf(months, newCapacity);
+		countryIds = Arrays.copyOf(countryIds, newCapacity);
+	}
+
+	//
+	// Gets the number of rows in the table.
+	//
+	@Override
+	public int size()
+	{
+		return size;
+	}
+
+	//
+	// Gets the Celsius temperature of a row.
+	//
+	@Override
+	public double getTemperature(int row)
+	{
+		return temperatures[row];
+	}
+
+	//
+	// Gets the year of a row.
+	//
+	@Override
+	public int getYear(int row)
+	{
+		return years[row];
+	}
+
+	//
+	// Gets the month of a row as an integer from 1 to 12.
+	//
+	@Override
+	public int getMonth(int row)
+	{
+		return months[row];
+	}
+
+	//
+	// Gets the country id of a row. The id can be looked up in getCountries().
+	//
+	@Override
+	public int getCountryId(int row)
+	{
+		return countryIds[row];
+	}
+
+	//
+	// Gets the dictionary that maps the country ids of this table to the names and 3-Letter Codes of the countries.
+	//
+	@Override
+	public CountryDictionary getCountries()
+	{
+		return countries;
+	}
+
+	//
+	// Creates a Temperature object for a row. Only rows that are returned to a caller need to be turned into objects.
+	//
+	@Override
+	public ITemperature toTemperature(int row)
+	{
+		int countryId = countryIds[row];
+		int sharedCountryId = countries.getSharedId(countryId);
+		if (sharedCountryId < 0)
+		{
+			return new Temperature(temperatures[row], years[row], Months.toString(months[row]), countries.getName(countryId), countries.getCode(countryId));
+		}
+
+		return new Temperature(temperatures[row], years[row], months[row], sharedCountryId);
+	}
+
+	//
+	// Creates a Temperature object for every row, in row order.
+	//
+	public ArrayList<ITemperature> toList()
+	{
+		ArrayList<ITemperature> allData = new ArrayList<ITemperature>(size);
+		for (int row = 0; row < size; row++)
+		{
+			allData.add(toTemperature(row));
+		}
+
+		return allData;
+	}
+}
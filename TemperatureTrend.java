@@ -0,0 +1,101 @@
+package climatechange;
+
+//
+// The least-squares warming trend of one country, either in one month or over the whole year, as TrendAnalyzer fits it.
+//
+public class TemperatureTrend {
+	// The month of an annual trend, which covers every month.
+	public static final int ANNUAL = 0;
+
+	private String country;
+	private String countryCode;
+	private int month;
+	private double slopePerDecade;
+	private double standardError;
+	private double pValue;
+	private long numReadings;
+	private int firstYear;
+	private int lastYear;
+
+	public TemperatureTrend(String theCountry, String theCountryCode, int theMonth, double theSlopePerDecade, double theStandardError, double thePValue,
+			long theNumReadings, int theFirstYear, int theLastYear)
+	{
+		country = theCountry;
+		countryCode = theCountryCode;
+		month = theMonth;
+		slopePerDecade = theSlopePerDecade;
+		standardError = theStandardError;
+		pValue = thePValue;
+		numReadings = theNumReadings;
+		firstYear = theFirstYear;
+		lastYear = theLastYear;
+	}
+
+	public String getCountry()
+	{
+		return country;
+	}
+
+	public String getCountry3LetterCode()
+	{
+		return countryCode;
+	}
+
+	//
+	// Gets the month of the trend from 1 to 12, or ANNUAL for a trend over the whole year.
+	//
+	public int getMonth()
+	{
+		return month;
+	}
+
+	//
+	// Gets the change in temperature in degrees Celsius per decade. A positive slope means the country is warming.
+	//
+	public double getSlopePerDecade()
+	{
+		return slopePerDecade;
+	}
+
+	//
+	// Gets the standard error of the slope, also in degrees Celsius per decade.
+	//
+	public double getStandardError()
+	{
+		return standardError;
+	}
+
+	//
+	// Gets the two-sided p-value of the slope: the chance of a slope at least this steep if the country had no trend at all. A small
+	// p-value, such as below 0.05, means the trend is unlikely to be noise.
+	//
+	public double getPValue()
+	{
+		return pValue;
+	}
+
+	public long getNumReadings()
+	{
+		return numReadings;
+	}
+
+	public int getFirstYear()
+	{
+		return firstYear;
+	}
+
+	public int getLastYear()
+	{
+		return lastYear;
+	}
+
+	@Override
+	public String toString()
+	{
+		String allSlopes = "Trend: " + String.format("%.3f", slopePerDecade) + " C/decade (+/- " + String.format("%.3f", standardError) + ", p = "
+				+ String.format("%.4f", pValue) + ") / ";
+		String allMonths = "Month: " + (month == ANNUAL ? "Annual" : Months.toString(month)) + " / ";
+		String allYears = "Years: " + firstYear + "-" + lastYear + " (" + numReadings + " readings) / ";
+		return allSlopes + allMonths + allYears + "Country Name: " + country + " / Country Code: " + countryCode;
+	}
+}
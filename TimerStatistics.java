@@ -0,0 +1,98 @@
+package climatechange;
+
+//
+// The statistics of one timed query method or load phase at one point in time. Latencies are in microseconds.
+//
+public class TimerStatistics {
+	// The column names that line up with toString().
+	public static final String HEADER = String.format("%-30s %10s %14s %12s %10s %10s %10s %10s %10s %10s", "Name", "count", "rows scanned", "rows matched",
+			"mean us", "p50 us", "p90 us", "p99 us", "p99.9 us", "max us");
+
+	private String name;
+	private long count;
+	private long rowsScanned;
+	private long rowsMatched;
+	private double meanMicros;
+	private double p50Micros;
+	private double p90Micros;
+	private double p99Micros;
+	private double p999Micros;
+	private double maxMicros;
+
+	public TimerStatistics(String theName, long theRowsScanned, long theRowsMatched, LatencyHistogram theLatencies)
+	{
+		name = theName;
+		count = theLatencies.getCount();
+		rowsScanned = theRowsScanned;
+		rowsMatched = theRowsMatched;
+		meanMicros = theLatencies.getMean() / 1e3;
+		p50Micros = theLatencies.getPercentile(0.50) / 1e3;
+		p90Micros = theLatencies.getPercentile(0.90) / 1e3;
+		p99Micros = theLatencies.getPercentile(0.99) / 1e3;
+		p999Micros = theLatencies.getPercentile(0.999) / 1e3;
+		maxMicros = theLatencies.getMax() / 1e3;
+	}
+
+	public String getName()
+	{
+		return name;
+	}
+
+	public long getCount()
+	{
+		return count;
+	}
+
+	//
+	// Gets the number of rows the query read to find its answers. For a load phase, the number of rows it loaded or wrote.
+	//
+	public long getRowsScanned()
+	{
+		return rowsScanned;
+	}
+
+	//
+	// Gets the number of readings the query answered with. For a load phase, the same as getRowsScanned().
+	//
+	public long getRowsMatched()
+	{
+		return rowsMatched;
+	}
+
+	public double getMeanMicros()
+	{
+		return meanMicros;
+	}
+
+	public double getP50Micros()
+	{
+		return p50Micros;
+	}
+
+	public double getP90Micros()
+	{
+		return p90Micros;
+	}
+
+	public double getP99Micros()
+	{
+		return p99Micros;
+	}
+
+	public double getP999Micros()
+	{
+		return p999Micros;
+	}
+
+	public double getMaxMicros()
+	{
+		return maxMicros;
+	}
+
+	@Override
+	public String toString()
+	{
+		return String.format("%-30s %10d %14d %12d %10.1f %10.1f %10.1f %10.1f %10.1f %10.1f", name, count, rowsScanned, rowsMatched, meanMicros, p50Micros,
+				p90Micros, p99Micros, p999Micros, maxMicros);
+	}
+}
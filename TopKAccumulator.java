@@ -0,0 +1,104 @@
+package climatechange;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+public class TopKAccumulator implements IAccumulator<ArrayList<ITemperature>> {
+	private CountryDictionary countries;
+	private int k;
+	private int month;
+	private int year;
+	private boolean highest;
+	// The lowest (or highest) reading of each country so far, indexed by country id, and whether the country has a reading at all.
+	private double[] bestTemperatures;
+	private short[] bestYears;
+	private byte[] bestMonths;
+	private boolean[] hasBest;
+
+	//
+	// Creates an accumulator for the k countries with the lowest (or highest) readings in the given month and year, one reading per
+	// country. TopKSelector.ANY_MONTH and TopKSelector.ANY_YEAR leave those filters out, so ANY_MONTH also counts readings without a valid
+	// month, the same way TopKSelector counts them.
+	//
+	public TopKAccumulator(CountryDictionary theCountries, int theK, int theMonth, int theYear, boolean theHighest)
+	{
+		countries = theCountries;
+		k = theK;
+		month = theMonth;
+		year = theYear;
+		highest = theHighest;
+		bestTemperatures = new double[Math.max(countries.size(), 16)];
+		bestYears = new short[bestTemperatures.length];
+		bestMonths = new byte[bestTemperatures.length];
+		hasBest = new boolean[bestTemperatures.length];
+	}
+
+	@Override
+	public void accept(double temperature, int theYear, int theMonth, int countryId)
+	{
+		if ((month != TopKSelector.ANY_MONTH && theMonth != month) || (year != TopKSelector.ANY_YEAR && theYear != year))
+		{
+			return;
+		}
+
+		if (countryId >= bestTemperatures.length)
+		{
+			int capacity = Math.max(bestTemperatures.length * 2, countryId + 1);
+			bestTemperatures = Arrays.copyOf(bestTemperatures, capacity);
+			bestYears = Arrays.copyOf(bestYears, capacity);
+			bestMonths = Arrays.copyOf(bestMonths, capacity);
+			hasBest = Arrays.copyOf(hasBest, capacity);
+		}
+
+		if (!hasBest[countryId] || isBetter(temperature, theYear, theMonth, countryId))
+		{
+			hasBest[countryId] = true;
+			bestTemperatures[countryId] = temperature;
+			bestYears[countryId] = (short) theYear;
+			bestMonths[countryId] = (byte) theMonth;
+		}
+	}
+
+	//
+	// Gets the k countries with the lowest (or highest) readings, sorted from lowest to highest temperature. The best reading of each
+	// country is put in a small table so TopKSelector can pick them in exactly the order it picks them from a full table.
+	//
+	@Override
+	public ArrayList<ITemperature> getResult()
+	{
+		int numCountries = Math.min(bestTemperatures.length, countries.size());
+		TemperatureTable bestTable = new TemperatureTable(numCountries, countries);
+		int[] bestRows = new int[numCountries];
+		for (int countryId = 0; countryId < numCountries; countryId++)
+		{
+			bestRows[countryId] = !hasBest[countryId] ? -1 : bestTable.add(bestTemperatures[countryId], bestYears[countryId], bestMonths[countryId], countryId);
+		}
+
+		int[] selectedRows = new TopKSelector(bestTable).select(bestRows, k, highest);
+		ArrayList<ITemperature> temperatures = new ArrayList<ITemperature>(selectedRows.length);
+		for (int row : selectedRows)
+		{
+			temperatures.add(bestTable.toTemperature(row));
+		}
+
+		return temperatures;
+	}
+
+	//
+	// Checks if a reading ranks before the best reading of its country so far, in the order of Temperature.compareTo().
+	//
+	private boolean isBetter(double temperature, int theYear, int theMonth, int countryId)
+	{
+		int result = Double.compare(temperature, bestTemperatures[countryId]);
+		if (result == 0)
+		{
+			result = Integer.compare(theYear, bestYears[countryId]);
+		}
+		if (result == 0)
+		{
+			result = Integer.compare(theMonth, bestMonths[countryId]);
+		}
+
+		return highest ? result > 0 : result < 0;
+	}
+}
@@ -0,0 +1,230 @@
+package climatechange;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+public class TopKSelector {
+	// Pass these as the month or year to leave that filter out.
+	public static final int ANY_MONTH = 0;
+	public static final int ANY_YEAR = 0;
+
+	private ITemperatureStore table;
+	private RowOrder order;
+
+	public TopKSelector(ITemperatureStore theTable)
+	{
+		table = theTable;
+		order = new RowOrder(theTable);
+	}
+
+	//
+	// Gets the k countries with the lowest temperature readings, one reading per country, sorted from lowest to highest temperature.
+	// Only readings of the given month and year are considered, unless ANY_MONTH or ANY_YEAR is passed.
+	//
+	public ArrayList<ITemperature> getLowest(int k, int month, int year)
+	{
+		return toTemperatures(selectLowest(k, month, year));
+	}
+
+	//
+	// Gets the k countries with the highest temperature readings, one reading per country, sorted from lowest to highest temperature.
+	// Only readings of the given month and year are considered, unless ANY_MONTH or ANY_YEAR is passed.
+	//
+	public ArrayList<ITemperature> getHighest(int k, int month, int year)
+	{
+		return toTemperatures(selectHighest(k, month, year));
+	}
+
+	//
+	// Gets the rows of the k countries with the lowest readings, sorted in the order of Temperature.compareTo().
+	//
+	public int[] selectLowest(int k, int month, int year)
+	{
+		return select(findBestRows(0, table.size(), month, year, false), k, false);
+	}
+
+	//
+	// Gets the rows of the k countries with the highest readings, sorted in the order of Temperature.compareTo().
+	//
+	public int[] selectHighest(int k, int month, int year)
+	{
+		return select(findBestRows(0, table.size(), month, year, true), k, true);
+	}
+
+	//
+	// Finds the lowest (or highest) row of each country among the rows in [start, end) that match the filters. The result is indexed by
+	// country id and holds -1 for countries without a matching row. Rows are ranked in the order of Temperature.compareTo(), so when a
+	// country has the same temperature more than once, the earliest reading is its lowest and the latest reading is its highest, exactly
+	// as sorting every reading would pick them.
+	//
+	public int[] findBestRows(int start, int end, int month, int year, boolean highest)
+	{
+		int[] bestRows = new int[table.getCountries().size()];
+		Arrays.fill(bestRows, -1);
+		for (int row = start; row < end; row++)
+		{
+			if ((month != ANY_MONTH && table.getMonth(row) != month) || (year != ANY_YEAR && table.getYear(row) != year))
+			{
+				continue;
+			}
+
+			int countryId = table.getCountryId(row);
+			int bestRow = bestRows[countryId];
+			if (bestRow < 0 || isBetter(row, bestRow, highest))
+			{
+				bestRows[countryId] = row;
+			}
+		}
+
+		return bestRows;
+	}
+
+	//
+	// Combines the best rows of two parts of the table into the first array. Used to merge partial results that were found in parallel.
+	//
+	public void mergeBestRows(int[] bestRows, int[] otherBestRows, boolean highest)
+	{
+		for (int countryId = 0; countryId < bestRows.length; countryId++)
+		{
+			int otherRow = otherBestRows[countryId];
+			if (otherRow >= 0 && (bestRows[countryId] < 0 || isBetter(otherRow, bestRows[countryId], highest)))
+			{
+				bestRows[countryId] = otherRow;
+			}
+		}
+	}
+
+	//
+	// Selects the k best of the per-country rows with a bounded heap whose root is the worst row kept so far, then empties the heap worst
+	// row first into the order of Temperature.compareTo(). This costs O(countries log k) instead of sorting every row.
+	//
+	public int[] select(int[] bestRows, int k, boolean highest)
+	{
+		int[] heap = new int[Math.max(k, 0)];
+		int heapSize = 0;
+		for (int countryId = 0; countryId < bestRows.length && k > 0; countryId++)
+		{
+			int row = bestRows[countryId];
+			if (row < 0)
+			{
+				continue;
+			}
+
+			if (heapSize < k)
+			{
+				heap[heapSize] = row;
+				siftUp(heap, heapSize, highest);
+				heapSize++;
+			}
+			else if (isBetter(row, heap[0], highest))
+			{
+				heap[0] = row;
+				siftDown(heap, heapSize, highest);
+			}
+		}
+
+		int[] selectedRows = new int[heapSize];
+		for (int remaining = heapSize; remaining > 0; remaining--)
+		{
+			int worstRow = heap[0];
+			heap[0] = heap[remaining - 1];
+			siftDown(heap, remaining - 1, highest);
+			// The worst of the lowest rows is the highest one, which goes last. The worst of the highest rows is the lowest one, which goes first.
+			if (highest)
+			{
+				selectedRows[heapSize - remaining] = worstRow;
+			}
+			else
+			{
+				selectedRows[remaining - 1] = worstRow;
+			}
+		}
+
+		return selectedRows;
+	}
+
+	//
+	// Compares two rows in the same order as Temperature.compareTo(): by temperature, then country name, then year, then month.
+	//
+	public int compareRows(int row1, int row2)
+	{
+		return order.compare(row1, row2);
+	}
+
+	//
+	// Checks if a row ranks before another row when looking for the lowest (or highest) readings.
+	//
+	private boolean isBetter(int row, int otherRow, boolean highest)
+	{
+		int result = compareRows(row, otherRow);
+		return highest ? result > 0 : result < 0;
+	}
+
+	//
+	// Moves the row at a position up the heap until its parent is worse than it.
+	//
+	private void siftUp(int[] heap, int position, boolean highest)
+	{
+		while (position > 0)
+		{
+			int parent = (position - 1) / 2;
+			if (!isBetter(heap[parent], heap[position], highest))
+			{
+				return;
+			}
+
+			swap(heap, parent, position);
+			position = parent;
+		}
+	}
+
+	//
+	// Moves the root of the heap down until both of its children are better than it.
+	//
+	private void siftDown(int[] heap, int heapSize, boolean highest)
+	{
+		int position = 0;
+		while (true)
+		{
+			int worst = position;
+			int left = 2 * position + 1;
+			int right = left + 1;
+			if (left < heapSize && isBetter(heap[worst], heap[left], highest))
+			{
+				worst = left;
+			}
+			if (right < heapSize && isBetter(heap[worst], heap[right], highest))
+			{
+				worst = right;
+			}
+			if (worst == position)
+			{
+				return;
+			}
+
+			swap(heap, position, worst);
+			position = worst;
+		}
+	}
+
+	private static void swap(int[] array, int i, int j)
+	{
+		int temp = array[i];
+		array[i] = array[j];
+		array[j] = temp;
+	}
+
+	//
+	// Creates a Temperature object for each selected row.
+	//
+	private ArrayList<ITemperature> toTemperatures(int[] rows)
+	{
+		ArrayList<ITemperature> temperatures = new ArrayList<ITemperature>(rows.length);
+		for (int row : rows)
+		{
+			temperatures.add(table.toTemperature(row));
+		}
+
+		return temperatures;
+	}
+}
@@ -0,0 +1,483 @@
+package climatechange;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+//
+// Fits a least-squares warming trend to every country, for each month and for the whole year, and ranks the countries by how fast they
+// are warming or cooling. Unlike Task C-1, which compares one month of two years, a trend uses every year of the data.
+//
+// The rows are read once. Each range of rows is summed on a ForkJoinPool worker into primitive accumulators per (country, month) that
+// belong to the thread running it, so the sums take memory per thread rather than per range, which matters with thousands of countries.
+// The sums of the threads are added together at the end, and the trends are then fitted from them, in parallel across countries. The
+// annual trend of a country is the slope of all its readings with the mean of each month taken out first, so the seasons do not count as
+// a trend. It is fitted from the same monthly sums, by adding up the centered sums of the months.
+//
+public class TrendAnalyzer {
+	// A range of rows is not split up any further once it has this many rows or fewer.
+	public static final int MIN_ROWS_PER_TASK = 1 << 14;
+	// The number of ranges each worker gets, so a worker that finishes early can take over part of the work of a slower one.
+	private static final int TASKS_PER_WORKER = 4;
+	// The countries fitted by one task, so each task has enough work to be worth forking.
+	private static final int COUNTRIES_PER_TASK = 64;
+	// Years are counted from here, which keeps the sums of squares small enough not to lose precision.
+	private static final int YEAR_ORIGIN = 2000;
+
+	// The sums kept for each (country, month): the number of readings, the sums of the years, temperatures, squared years, years times
+	// temperatures and squared temperatures, and the first and last year.
+	private static final int COUNT = 0;
+	private static final int SUM_X = 1;
+	private static final int SUM_Y = 2;
+	private static final int SUM_XX = 3;
+	private static final int SUM_XY = 4;
+	private static final int SUM_YY = 5;
+	private static final int MIN_YEAR = 6;
+	private static final int MAX_YEAR = 7;
+	private static final int NUM_SUMS = 8;
+
+	// The coefficients of the Lanczos approximation of the gamma function, for g = 7.
+	private static final double[] LANCZOS = { 0.99999999999980993, 676.5203681218851, -1259.1392167224028, 771.32342877765313, -176.61502916214059,
+			12.507343278686905, -0.13857109526572012, 9.9843695780195716e-6, 1.5056327351493116e-7 };
+
+	private ITemperatureStore table;
+	private int numCountries;
+	// The trend of each country in each month, indexed by [country id][month], with the annual trend at TemperatureTrend.ANNUAL. A country
+	// with too few readings for a trend has null.
+	private TemperatureTrend[][] trends;
+
+	//
+	// Fits the trends of every country in a table with one worker for each available processor.
+	//
+	public TrendAnalyzer(ITemperatureStore theTable)
+	{
+		this(theTable, Runtime.getRuntime().availableProcessors());
+	}
+
+	//
+	// Fits the trends of every country in a table on its own ForkJoinPool with the given number of workers. The table must not be appended
+	// to until the constructor returns.
+	//
+	public TrendAnalyzer(ITemperatureStore theTable, int parallelism)
+	{
+		table = theTable;
+		numCountries = theTable.getCountries().size();
+		trends = new TemperatureTrend[numCountries][13];
+		ForkJoinPool pool = new ForkJoinPool(Math.max(parallelism, 1));
+		try
+		{
+			int rowsPerTask = Math.max(MIN_ROWS_PER_TASK, table.size() / (pool.getParallelism() * TASKS_PER_WORKER) + 1);
+			ConcurrentHashMap<Thread, double[]> threadSums = new ConcurrentHashMap<Thread, double[]>();
+			pool.invoke(new SumTask(threadSums, 0, table.size(), rowsPerTask));
+			double[] sums = null;
+			for (double[] otherSums : threadSums.values())
+			{
+				if (sums == null)
+				{
+					sums = otherSums;
+				}
+				else
+				{
+					mergeSums(sums, otherSums);
+				}
+			}
+			pool.invoke(new FitTask(sums == null ? newSums() : sums, 0, numCountries));
+		}
+		finally
+		{
+			pool.shutdown();
+		}
+	}
+
+	//
+	// Gets the trend of a country in a month from 1 to 12, or its annual trend for TemperatureTrend.ANNUAL. Returns null for an unknown
+	// country or month, and for a country without at least 3 readings in at least 2 different years.
+	//
+	public TemperatureTrend getTrend(String country, int month)
+	{
+		int countryId = table.getCountries().getId(country);
+		if (countryId < 0 || countryId >= numCountries || month < 0 || month > 12)
+		{
+			return null;
+		}
+
+		return trends[countryId][month];
+	}
+
+	//
+	// Gets the trend of every country that has one in a month, or the annual trends for TemperatureTrend.ANNUAL, in country id order.
+	//
+	public ArrayList<TemperatureTrend> getTrends(int month)
+	{
+		ArrayList<TemperatureTrend> monthTrends = new ArrayList<TemperatureTrend>();
+		if (month < 0 || month > 12)
+		{
+			return monthTrends;
+		}
+
+		for (int countryId = 0; countryId < numCountries; countryId++)
+		{
+			if (trends[countryId][month] != null)
+			{
+				monthTrends.add(trends[countryId][month]);
+			}
+		}
+
+		return monthTrends;
+	}
+
+	//
+	// Gets the n countries that are warming fastest (or cooling fastest, when highest is false) in a month, or over the whole year for
+	// TemperatureTrend.ANNUAL. Only trends with a p-value of at most maxPValue are ranked, so 0.05 keeps the significant ones and 1.0 keeps
+	// all of them. Ties are ranked by country name.
+	//
+	public ArrayList<TemperatureTrend> rankBySlope(int month, int n, double maxPValue, boolean highest)
+	{
+		Comparator<TemperatureTrend> order = Comparator.comparingDouble(TemperatureTrend::getSlopePerDecade);
+		return rank(month, n, maxPValue, highest ? order.reversed() : order);
+	}
+
+	//
+	// Gets the n countries whose temperature is changing fastest in either direction, the trend counterpart of Task C-1.
+	//
+	public ArrayList<TemperatureTrend> rankByChange(int month, int n, double maxPValue)
+	{
+		Comparator<TemperatureTrend> order = Comparator.comparingDouble(trend -> Math.abs(trend.getSlopePerDecade()));
+		return rank(month, n, maxPValue, order.reversed());
+	}
+
+	private ArrayList<TemperatureTrend> rank(int month, int n, double maxPValue, Comparator<TemperatureTrend> order)
+	{
+		ArrayList<TemperatureTrend> ranked = new ArrayList<TemperatureTrend>();
+		for (TemperatureTrend trend : getTrends(month))
+		{
+			if (trend.getPValue() <= maxPValue)
+			{
+				ranked.add(trend);
+			}
+		}
+
+		ranked.sort(order.thenComparing(TemperatureTrend::getCountry));
+		return new ArrayList<TemperatureTrend>(ranked.subList(0, Math.min(Math.max(n, 0), ranked.size())));
+	}
+
+	//
+	// Creates empty sums for every (country, month).
+	//
+	private double[] newSums()
+	{
+		double[] sums = new double[numCountries * 12 * NUM_SUMS];
+		for (int i = 0; i < sums.length; i += NUM_SUMS)
+		{
+			sums[i + MIN_YEAR] = Double.POSITIVE_INFINITY;
+			sums[i + MAX_YEAR] = Double.NEGATIVE_INFINITY;
+		}
+
+		return sums;
+	}
+
+	//
+	// Adds the sums of one thread to the sums of another thread.
+	//
+	private static void mergeSums(double[] sums, double[] otherSums)
+	{
+		for (int i = 0; i < sums.length; i += NUM_SUMS)
+		{
+			for (int j = COUNT; j <= SUM_YY; j++)
+			{
+				sums[i + j] += otherSums[i + j];
+			}
+			sums[i + MIN_YEAR] = Math.min(sums[i + MIN_YEAR], otherSums[i + MIN_YEAR]);
+			sums[i + MAX_YEAR] = Math.max(sums[i + MAX_YEAR], otherSums[i + MAX_YEAR]);
+		}
+	}
+
+	//
+	// Fits the trends of one country from its monthly sums. A month needs at least 3 readings in at least 2 different years for a slope
+	// and its standard error. The annual trend pools the centered sums of every month, which loses one degree of freedom per month.
+	//
+	private void fitCountry(double[] sums, int countryId)
+	{
+		String country = table.getCountries().getName(countryId);
+		String countryCode = table.getCountries().getCode(countryId);
+		double pooledXX = 0.0;
+		double pooledXY = 0.0;
+		double pooledYY = 0.0;
+		long pooledCount = 0;
+		int numMonths = 0;
+		double firstYear = Double.POSITIVE_INFINITY;
+		double lastYear = Double.NEGATIVE_INFINITY;
+		for (int month = 1; month <= 12; month++)
+		{
+			int i = (countryId * 12 + month - 1) * NUM_SUMS;
+			double count = sums[i + COUNT];
+			if (count == 0)
+			{
+				continue;
+			}
+
+			// The sums of squares and products around the means of the month.
+			double centeredXX = sums[i + SUM_XX] - sums[i + SUM_X] * sums[i + SUM_X] / count;
+			double centeredXY = sums[i + SUM_XY] - sums[i + SUM_X] * sums[i + SUM_Y] / count;
+			double centeredYY = sums[i + SUM_YY] - sums[i + SUM_Y] * sums[i + SUM_Y] / count;
+			if (sums[i + MIN_YEAR] == sums[i + MAX_YEAR])
+			{
+				centeredXX = 0.0; // Rounding can leave a tiny sum for readings that all have the same year.
+				centeredXY = 0.0;
+			}
+
+			trends[countryId][month] = fit(country, countryCode, month, centeredXX, centeredXY, centeredYY, count - 2, (long) count, sums[i + MIN_YEAR],
+					sums[i + MAX_YEAR]);
+			pooledXX += centeredXX;
+			pooledXY += centeredXY;
+			pooledYY += centeredYY;
+			pooledCount += (long) count;
+			numMonths++;
+			firstYear = Math.min(firstYear, sums[i + MIN_YEAR]);
+			lastYear = Math.max(lastYear, sums[i + MAX_YEAR]);
+		}
+
+		if (numMonths > 0)
+		{
+			trends[countryId][TemperatureTrend.ANNUAL] = fit(country, countryCode, TemperatureTrend.ANNUAL, pooledXX, pooledXY, pooledYY,
+					pooledCount - numMonths - 1, pooledCount, firstYear, lastYear);
+		}
+	}
+
+	//
+	// Fits a slope from centered sums of squares and products, and tests it against no trend with a t-test. Returns null if there are no
+	// degrees of freedom left or every reading has the same year.
+	//
+	private static TemperatureTrend fit(String country, String countryCode, int month, double centeredXX, double centeredXY, double centeredYY,
+			double degreesOfFreedom, long numReadings, double firstYear, double lastYear)
+	{
+		if (degreesOfFreedom < 1 || !(centeredXX > 0))
+		{
+			return null;
+		}
+
+		double slope = centeredXY / centeredXX;
+		double residualSquares = Math.max(centeredYY - slope * centeredXY, 0.0);
+		double standardError = Math.sqrt(residualSquares / degreesOfFreedom / centeredXX);
+		double pValue = standardError == 0 ? (slope == 0 ? 1.0 : 0.0) : tTestPValue(slope / standardError, degreesOfFreedom);
+		return new TemperatureTrend(country, countryCode, month, slope * 10, standardError * 10, pValue, numReadings, (int) firstYear + YEAR_ORIGIN,
+				(int) lastYear + YEAR_ORIGIN);
+	}
+
+	//
+	// Gets the two-sided p-value of a t statistic with the given degrees of freedom, from the Student's t distribution:
+	// P(|T| >= |t|) = I(df / (df + t^2); df / 2, 1 / 2), where I is the regularized incomplete beta function.
+	//
+	static double tTestPValue(double t, double degreesOfFreedom)
+	{
+		if (Double.isNaN(t))
+		{
+			return Double.NaN;
+		}
+
+		return regularizedIncompleteBeta(degreesOfFreedom / (degreesOfFreedom + t * t), degreesOfFreedom / 2, 0.5);
+	}
+
+	//
+	// Computes the regularized incomplete beta function I(x; a, b) with the continued fraction of Numerical Recipes (6.4), which converges
+	// quickly for x < (a + 1) / (a + b + 2). Above that, the symmetry I(x; a, b) = 1 - I(1 - x; b, a) is used.
+	//
+	static double regularizedIncompleteBeta(double x, double a, double b)
+	{
+		if (x <= 0.0)
+		{
+			return 0.0;
+		}
+		if (x >= 1.0)
+		{
+			return 1.0;
+		}
+
+		double front = Math.exp(logGamma(a + b) - logGamma(a) - logGamma(b) + a * Math.log(x) + b * Math.log1p(-x));
+		if (x < (a + 1) / (a + b + 2))
+		{
+			return front * betaContinuedFraction(x, a, b) / a;
+		}
+
+		return 1.0 - front * betaContinuedFraction(1.0 - x, b, a) / b;
+	}
+
+	//
+	// Evaluates the continued fraction of the incomplete beta function with the modified Lentz method.
+	//
+	private static double betaContinuedFraction(double x, double a, double b)
+	{
+		final double tiny = 1e-300;
+		double c = 1.0;
+		double d = 1.0 - (a + b) * x / (a + 1);
+		d = 1.0 / (Math.abs(d) < tiny ? tiny : d);
+		double fraction = d;
+		for (int m = 1; m <= 300; m++)
+		{
+			// The even step of the fraction.
+			double numerator = m * (b - m) * x / ((a + 2 * m - 1) * (a + 2 * m));
+			d = 1.0 + numerator * d;
+			d = 1.0 / (Math.abs(d) < tiny ? tiny : d);
+			c = 1.0 + numerator / c;
+			c = Math.abs(c) < tiny ? tiny : c;
+			fraction *= d * c;
+
+			// The odd step of the fraction.
+			numerator = -(a + m) * (a + b + m) * x / ((a + 2 * m) * (a + 2 * m + 1));
+			d = 1.0 + numerator * d;
+			d = 1.0 / (Math.abs(d) < tiny ? tiny : d);
+			c = 1.0 + numerator / c;
+			c = Math.abs(c) < tiny ? tiny : c;
+			double step = d * c;
+			fraction *= step;
+			if (Math.abs(step - 1.0) < 1e-15)
+			{
+				break;
+			}
+		}
+
+		return fraction;
+	}
+
+	//
+	// Computes the natural logarithm of the gamma function of a positive number with the Lanczos approximation, to about 15 digits.
+	//
+	static double logGamma(double x)
+	{
+		if (x < 0.5)
+		{
+			return Math.log(Math.PI / Math.sin(Math.PI * x)) - logGamma(1.0 - x); // The reflection formula.
+		}
+
+		x -= 1.0;
+		double series = LANCZOS[0];
+		for (int i = 1; i < LANCZOS.length; i++)
+		{
+			series += LANCZOS[i] / (x + i);
+		}
+		double t = x + 7.5;
+		return 0.5 * Math.log(2 * Math.PI) + (x + 0.5) * Math.log(t) - t + Math.log(series);
+	}
+
+	//
+	// Sums the rows in [start, end) by (country, month) into the sums of the thread that runs it, splitting the range in half until it is
+	// small enough. A thread only waits for other ranges while splitting, never while summing, so no two ranges add to the same sums at once.
+	//
+	private class SumTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private ConcurrentHashMap<Thread, double[]> threadSums;
+		private int start;
+		private int end;
+		private int rowsPerTask;
+
+		private SumTask(ConcurrentHashMap<Thread, double[]> theThreadSums, int theStart, int theEnd, int theRowsPerTask)
+		{
+			threadSums = theThreadSums;
+			start = theStart;
+			end = theEnd;
+			rowsPerTask = theRowsPerTask;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if (end - start > rowsPerTask)
+			{
+				int middle = (start + end) >>> 1;
+				invokeAll(new SumTask(threadSums, start, middle, rowsPerTask), new SumTask(threadSums, middle, end, rowsPerTask));
+				return;
+			}
+
+			double[] sums = threadSums.computeIfAbsent(Thread.currentThread(), thread -> newSums());
+			for (int row = start; row < end; row++)
+			{
+				int month = table.getMonth(row);
+				double temperature = table.getTemperature(row);
+				if (month < 1 || month > 12 || Double.isNaN(temperature) || Double.isInfinite(temperature))
+				{
+					continue; // Rows without a month or a temperature have no place in a trend.
+				}
+
+				double x = table.getYear(row) - YEAR_ORIGIN;
+				int i = (table.getCountryId(row) * 12 + month - 1) * NUM_SUMS;
+				sums[i + COUNT]++;
+				sums[i + SUM_X] += x;
+				sums[i + SUM_Y] += temperature;
+				sums[i + SUM_XX] += x * x;
+				sums[i + SUM_XY] += x * temperature;
+				sums[i + SUM_YY] += temperature * temperature;
+				sums[i + MIN_YEAR] = Math.min(sums[i + MIN_YEAR], x);
+				sums[i + MAX_YEAR] = Math.max(sums[i + MAX_YEAR], x);
+			}
+		}
+	}
+
+	//
+	// Fits the countries in [start, end), splitting the range in half until it is small enough.
+	//
+	private class FitTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private double[] sums;
+		private int start;
+		private int end;
+
+		private FitTask(double[] theSums, int theStart, int theEnd)
+		{
+			sums = theSums;
+			start = theStart;
+			end = theEnd;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if (end - start > COUNTRIES_PER_TASK)
+			{
+				int middle = (start + end) >>> 1;
+				invokeAll(new FitTask(sums, start, middle), new FitTask(sums, middle, end));
+				return;
+			}
+
+			for (int countryId = start; countryId < end; countryId++)
+			{
+				fitCountry(sums, countryId);
+			}
+		}
+	}
+
+	//
+	// Ranks the countries of a weather data file by their warming trends.
+	// Arguments: file name [significance level, default 0.05]
+	//
+	public static void main(String[] args) throws Exception
+	{
+		String fileName = args.length > 0 ? args[0] : "data/world_temp_2000-2016.csv";
+		double maxPValue = args.length > 1 ? Double.parseDouble(args[1]) : 0.05;
+		ITemperatureStore table = TableSnapshot.loadOrParse(fileName);
+		TrendAnalyzer trends = null;
+		long bestNanos = Long.MAX_VALUE;
+		for (int run = 0; run < 20; run++) // The first runs include the JIT compiling the scan.
+		{
+			long start = System.nanoTime();
+			trends = new TrendAnalyzer(table);
+			bestNanos = Math.min(bestNanos, System.nanoTime() - start);
+		}
+
+		System.out.println("Fitted " + trends.getTrends(TemperatureTrend.ANNUAL).size() + " countries over " + table.size() + " rows in "
+				+ String.format("%.2f", bestNanos / 1e6) + " ms");
+		System.out.println("Fastest warming countries (p <= " + maxPValue + "):");
+		for (TemperatureTrend trend : trends.rankBySlope(TemperatureTrend.ANNUAL, 10, maxPValue, true))
+		{
+			System.out.println("  " + trend);
+		}
+		System.out.println("Fastest changing countries in January (p <= " + maxPValue + "):");
+		for (TemperatureTrend trend : trends.rankByChange(1, 10, maxPValue))
+		{
+			System.out.println("  " + trend);
+		}
+	}
+}
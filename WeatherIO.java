@@ -2,11 +2,17 @@ package climatechange;
 
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Scanner;
+import java.util.regex.Pattern;
 
 public class WeatherIO implements IWeatherIO {
 	private ArrayList<ITemperature> allData;
@@ -21,6 +27,132 @@ public class WeatherIO implements IWeatherIO {
 	//
 	@Override
 	public ArrayList<ITemperature> readDataFromFile(String fileName) throws FileNotFoundException {
+		allData.addAll(readTableFromFile(fileName).toList()); // Creates a Temperature object for each row of the parsed table.
+		return allData;
+	}
+
+	//
+	// Reads all the data from the weather data file into a columnar table. The file is memory-mapped and parsed straight from bytes by a
+	// MappedCsvParser, with large files split across one worker for each processor by a ParallelCsvLoader.
+	//
+	@Override
+	public TemperatureTable readTableFromFile(String fileName) throws FileNotFoundException {
+		try
+		{
+			long start = ClimateMetrics.startTimer();
+			TemperatureTable table = ParallelCsvLoader.readTable(fileName);
+			ClimateMetrics.recordPhase(ClimateMetrics.Phase.PARSE, start, table.size());
+			return table;
+		}
+		catch (FileNotFoundException e)
+		{
+			throw e;
+		}
+		catch (IOException e)
+		{
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	//
+	// Reads the complete lines of a weather data file from a byte offset on into a table, and returns the offset to read from next time.
+	// Used to pick up readings that have been added to the end of a file since it was last read.
+	//
+	public long readTableFromOffset(String fileName, long offset, TemperatureTable table) throws FileNotFoundException {
+		try
+		{
+			return new MappedCsvParser(table).parseFrom(fileName, offset);
+		}
+		catch (FileNotFoundException e)
+		{
+			throw e;
+		}
+		catch (IOException e)
+		{
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	//
+	// Follows a weather data file that is still being written, appending each new line after the given byte offset to an analyzer every
+	// pollMillis milliseconds. Returns the running FileTailer so it can be stopped.
+	//
+	public FileTailer tailFile(String fileName, long offset, ClimateAnalyzer analyzer, long pollMillis) {
+		FileTailer tailer = new FileTailer(fileName, offset, analyzer, pollMillis);
+		tailer.start();
+		return tailer;
+	}
+
+	//
+	// Splits a weather data file into one weather data file per year in a directory, and writes a PartitionManifest that lists them. The
+	// file is streamed through a MappedCsvParser, so files larger than the heap can be split. Each year file keeps the rows of its year in
+	// the order they had, and the temperatures are written with every digit, so reading a year file gives exactly the readings of that year.
+	// A directory that was partitioned before has its manifest, year files and their snapshots deleted first, so no stale year is left
+	// behind; any other file in it is left alone.
+	//
+	public PartitionManifest writePartitions(String fileName, String directory) throws FileNotFoundException, IOException {
+		File partitionDirectory = new File(directory);
+		if (!partitionDirectory.isDirectory() && !partitionDirectory.mkdirs())
+		{
+			throw new IOException("Cannot create the directory " + directory);
+		}
+		deletePartitions(partitionDirectory);
+
+		CountryDictionary countries = new CountryDictionary();
+		PartitionWriter writer = new PartitionWriter(partitionDirectory, countries);
+		try
+		{
+			new MappedCsvParser(writer, countries).parseFile(fileName);
+			writer.close();
+		}
+		catch (UncheckedIOException e)
+		{
+			throw e.getCause(); // A year file that could not be written.
+		}
+		finally
+		{
+			writer.closeQuietly();
+		}
+
+		PartitionManifest manifest = writer.createManifest();
+		manifest.write();
+		return manifest;
+	}
+
+	//
+	// Deletes the manifest of a partitioned directory, then its year files and their snapshots. The manifest goes first, so the directory is
+	// never left with a manifest that lists deleted files.
+	//
+	private static void deletePartitions(File directory) throws IOException
+	{
+		File manifestFile = new File(directory, PartitionManifest.FILE_NAME);
+		if (manifestFile.exists() && !manifestFile.delete())
+		{
+			throw new IOException("Cannot delete " + manifestFile);
+		}
+
+		File[] files = directory.listFiles();
+		for (File file : files == null ? new File[0] : files)
+		{
+			if (PartitionWriter.FILE_NAME_PATTERN.matcher(file.getName()).matches() && !file.delete())
+			{
+				throw new IOException("Cannot delete " + file);
+			}
+		}
+	}
+
+	//
+	// Reads the manifest of a directory that writePartitions() has written.
+	//
+	public PartitionManifest readPartitionManifest(String directory) throws FileNotFoundException, IOException {
+		return PartitionManifest.read(new File(directory));
+	}
+
+	//
+	// Reads all the data from the weather data file one line at a time with a Scanner. This was the original way of reading the file and
+	// is kept to compare the throughput of the memory-mapped path against.
+	//
+	public ArrayList<ITemperature> readDataFromFileWithScanner(String fileName) throws FileNotFoundException {
 		File inputFile = new File(fileName); // Creates a new file based on the fileName.
 		Scanner scan = new Scanner(inputFile); // Instantiates a Scanner to read the data.
 		
@@ -50,48 +182,246 @@ public class WeatherIO implements IWeatherIO {
 	}
 
 	//
-	// Writes the subject header before dumping data returned from each ClimateAnalyzer method.
+	// Writes the subject header before dumping data returned from each ClimateAnalyzer method. Opens and closes the file for this one
+	// write; use an IResultSink to keep the file open across many writes.
 	//
 	@Override
 	public void writeSubjectHeaderInFile(String filename, String subject) throws IOException {
-		File inputFile = new File(filename); // Creates a file based on the filename.
-		FileWriter fWriter = new FileWriter(inputFile, true); // Creates a FileWriter.
-		PrintWriter pWriter = new PrintWriter(fWriter); // Creates a PrintWriter.
-		pWriter.write(subject); // Writes the subject header. 
-		pWriter.write("");
-		pWriter.close(); // Closes the PrintWriter.		
+		IResultSink sink = new BufferedResultSink();
+		try
+		{
+			sink.writeSubjectHeader(filename, subject);
+		}
+		finally
+		{
+			sink.close();
+		}
 	}
 
 	//
-	// Writes the temperature information for each ClimateAnalyzer task to a file.
+	// Writes the temperature information for each ClimateAnalyzer task to a file. Opens and closes the file for this one write; use an
+	// IResultSink to keep the file open across many writes.
 	//
 	@Override
 	public void writeDataToFile(String filename, String topic, ArrayList<ITemperature> theWeatherList) throws IOException {
-		//File inputFile = new File(filename); // Creates a file based on the filename.
-		FileWriter fWriter = new FileWriter(filename, true); // Creates a FileWriter.
-		PrintWriter pWriter = new PrintWriter(fWriter); // Creates a PrintWriter.
-		pWriter.write("\n"); // Appends a new line to the file.
-		pWriter.write(topic); // Appends the topic to the file.
-		pWriter.write("\n"); // Appends a new line to the file.
-		
-		for (ITemperature temp : theWeatherList)
-		{
-			pWriter.write(Math.round(temp.getTemperature(false) * 100.0) / 100.0 + "(C) " + Math.round(temp.getTemperature(true) * 100.0) / 100.0 + "(F)"); // Appends the temperature values to the file with the correct formatting.
-			pWriter.write(", "); // Appends a comma to the file.
-			pWriter.write(String.valueOf(temp.getYear())); // Appends the year to the file.
-			pWriter.write(", "); // Appends a comma to the file.
-			pWriter.write(temp.getMonth()); // Appends the month to the file.
-			pWriter.write(", "); // Appends a comma to the file.
-			pWriter.write(temp.getCountry()); // Appends the name of the country to the file.
-			pWriter.write(", "); // Appends a comma to the file.
-			pWriter.write(temp.getCountry3LetterCode()); // Appends the 3-Letter Code of the country to the file.
-			pWriter.write("\n"); // Appends a new line to the file.
+		IResultSink sink = new BufferedResultSink();
+		try
+		{
+			sink.writeData(filename, topic, theWeatherList);
+		}
+		finally
+		{
+			sink.close();
 		}
-		
-		pWriter.write("");
-		pWriter.close(); // Closes the PrintWriter.
 	}
 	
+	//
+	// Writes each reading it is handed to the file of its year, opening the file the first time the year is seen.
+	//
+	private static class PartitionWriter implements ITemperatureSink {
+		private static final String HEADER = "Temperature, Year, Month_Avg, Country, Country_Code\n";
+		// The name of a year file, and of the snapshot a TableSnapshot writes next to it.
+		private static final Pattern FILE_NAME_PATTERN = Pattern.compile("year_-?[0-9]+\\.csv(\\" + TableSnapshot.FILE_EXTENSION + ")?");
+		// The rows of each year are written out in blocks of about this many bytes.
+		private static final int BLOCK_SIZE = 1 << 16;
+		// At most this many year files are open at once. A file that has to be closed to open another is opened again for appending when
+		// its year comes up again, so a history of many centuries does not run out of file descriptors.
+		private static final int MAX_OPEN_FILES = 64;
+
+		private File directory;
+		private CountryDictionary countries;
+		private Charset charset;
+		private byte[] separator;
+		// The bytes of ", name, code" and a line break for each country id, so every row only formats its numbers.
+		private byte[][] countryBytes;
+		private HashMap<Integer, YearFile> yearFiles;
+		// The year files that are open, least recently written first, and the one the last row went to, which most rows go to again.
+		private LinkedHashMap<Integer, YearFile> openFiles;
+		private YearFile lastYearFile;
+
+		private PartitionWriter(File theDirectory, CountryDictionary theCountries)
+		{
+			directory = theDirectory;
+			countries = theCountries;
+			charset = Charset.defaultCharset();
+			separator = ", ".getBytes(charset);
+			countryBytes = new byte[16][];
+			yearFiles = new HashMap<Integer, YearFile>();
+			openFiles = new LinkedHashMap<Integer, YearFile>(16, 0.75f, true);
+		}
+
+		@Override
+		public void accept(double temperature, int year, int month, int countryId)
+		{
+			try
+			{
+				YearFile yearFile = lastYearFile != null && lastYearFile.year == year ? lastYearFile : getYearFile(year);
+				lastYearFile = yearFile;
+
+				TemperatureFormatter formatter = yearFile.formatter;
+				formatter.appendBytes(Double.toString(temperature).getBytes(charset));
+				formatter.appendBytes(separator);
+				formatter.appendInt(year);
+				formatter.appendBytes(separator);
+				formatter.appendString(Months.toString(month));
+				formatter.appendBytes(getCountryBytes(countryId));
+				yearFile.numRows++;
+				if (formatter.getLength() >= BLOCK_SIZE)
+				{
+					yearFile.flush();
+				}
+			}
+			catch (IOException e)
+			{
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		//
+		// Gets the open file of a year, creating it the first time the year comes up and opening it again if it was closed to make room.
+		//
+		private YearFile getYearFile(int year) throws IOException
+		{
+			YearFile yearFile = openFiles.get(year);
+			if (yearFile != null)
+			{
+				return yearFile;
+			}
+
+			if (openFiles.size() >= MAX_OPEN_FILES)
+			{
+				Iterator<YearFile> leastRecent = openFiles.values().iterator();
+				YearFile closedFile = leastRecent.next();
+				leastRecent.remove();
+				closedFile.close();
+			}
+
+			yearFile = yearFiles.get(year);
+			if (yearFile == null)
+			{
+				yearFile = new YearFile(year);
+				yearFiles.put(year, yearFile);
+			}
+			yearFile.open();
+			openFiles.put(year, yearFile);
+			return yearFile;
+		}
+
+		private byte[] getCountryBytes(int countryId)
+		{
+			if (countryId >= countryBytes.length)
+			{
+				countryBytes = Arrays.copyOf(countryBytes, Math.max(countryBytes.length * 2, countryId + 1));
+			}
+			if (countryBytes[countryId] == null)
+			{
+				countryBytes[countryId] = (", " + countries.getName(countryId) + ", " + countries.getCode(countryId) + "\n").getBytes(charset);
+			}
+
+			return countryBytes[countryId];
+		}
+
+		//
+		// Writes out what is left of every year and closes the year files.
+		//
+		private void close() throws IOException
+		{
+			for (YearFile yearFile : openFiles.values())
+			{
+				yearFile.close();
+			}
+			openFiles.clear();
+		}
+
+		//
+		// Closes every year file after an error, which has already been reported.
+		//
+		private void closeQuietly()
+		{
+			for (YearFile yearFile : openFiles.values())
+			{
+				try
+				{
+					yearFile.output.close();
+				}
+				catch (IOException e)
+				{
+					// The first error is the one that is thrown.
+				}
+			}
+		}
+
+		private PartitionManifest createManifest()
+		{
+			int[] years = new int[yearFiles.size()];
+			int i = 0;
+			for (int year : yearFiles.keySet())
+			{
+				years[i++] = year;
+			}
+			Arrays.sort(years);
+
+			int[] numRows = new int[years.length];
+			String[] fileNames = new String[years.length];
+			for (i = 0; i < years.length; i++)
+			{
+				YearFile yearFile = yearFiles.get(years[i]);
+				numRows[i] = yearFile.numRows;
+				fileNames[i] = yearFile.fileName;
+			}
+
+			return new PartitionManifest(directory, years, numRows, fileNames);
+		}
+
+		//
+		// The file of one year and, while it is open, the rows that have not been written to it yet.
+		//
+		private class YearFile {
+			private int year;
+			private String fileName;
+			private FileOutputStream output;
+			private TemperatureFormatter formatter;
+			private int numRows;
+
+			private YearFile(int theYear)
+			{
+				year = theYear;
+				fileName = "year_" + theYear + ".csv";
+			}
+
+			//
+			// Opens the file, truncating it and starting with the header the first time, and appending to it after that.
+			//
+			private void open() throws IOException
+			{
+				boolean reopened = numRows > 0;
+				output = new FileOutputStream(new File(directory, fileName), reopened);
+				formatter = new TemperatureFormatter();
+				if (!reopened)
+				{
+					formatter.appendString(HEADER);
+				}
+			}
+
+			private void flush() throws IOException
+			{
+				output.write(formatter.getBuffer(), 0, formatter.getLength());
+				formatter.reset();
+			}
+
+			//
+			// Writes out the rows that are left and closes the file, dropping its buffer until it is opened again.
+			//
+			private void close() throws IOException
+			{
+				flush();
+				output.close();
+				output = null;
+				formatter = null;
+			}
+		}
+	}
+
 	//
 	// Tests to see if readDataFromFile() is reading the weather data properly.
 	//
@@ -0,0 +1,149 @@
+package climatechange;
+
+import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+//
+// Benchmarks building a ClimateAnalyzer and every query of IClimateAnalyzer. runClimateAnalyzer() is left out, since it asks the user for
+// its input; its queries are the ones measured here. Queries that take a month or a year move on to the next one with every call, so no
+// benchmark keeps asking the exact same question.
+//
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+@State(Scope.Benchmark)
+public class AnalyzerBenchmark {
+	private ClimateAnalyzer analyzer;
+	private String country;
+	private int firstYear;
+	private int lastYear;
+
+	@Setup(Level.Trial)
+	public void setUp(ClimateData data) throws FileNotFoundException
+	{
+		analyzer = data.createAnalyzer();
+		country = data.getCountry();
+		firstYear = data.getFirstYear();
+		lastYear = data.getLastYear();
+	}
+
+	//
+	// The month and year the next query of a thread asks about.
+	//
+	@State(Scope.Thread)
+	public static class Cursor {
+		private int counter;
+
+		private int nextMonth()
+		{
+			return counter++ % 12 + 1;
+		}
+
+		private int nextYear(AnalyzerBenchmark benchmark)
+		{
+			return benchmark.firstYear + counter++ % (benchmark.lastYear - benchmark.firstYear + 1);
+		}
+	}
+
+	// Loading a file takes milliseconds rather than microseconds.
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public ClimateAnalyzer createAnalyzer(ClimateData data) throws FileNotFoundException
+	{
+		return data.createAnalyzer();
+	}
+
+	@Benchmark
+	public ITemperature getLowestTempByMonth(Cursor cursor)
+	{
+		return analyzer.getLowestTempByMonth(country, cursor.nextMonth());
+	}
+
+	@Benchmark
+	public ITemperature getHighestTempByMonth(Cursor cursor)
+	{
+		return analyzer.getHighestTempByMonth(country, cursor.nextMonth());
+	}
+
+	@Benchmark
+	public ITemperature getLowestTempByYear(Cursor cursor)
+	{
+		return analyzer.getLowestTempByYear(country, cursor.nextYear(this));
+	}
+
+	@Benchmark
+	public ITemperature getHighestTempByYear(Cursor cursor)
+	{
+		return analyzer.getHighestTempByYear(country, cursor.nextYear(this));
+	}
+
+	@Benchmark
+	public TreeSet<ITemperature> getTempWithinRange()
+	{
+		return analyzer.getTempWithinRange(country, 5, 20);
+	}
+
+	@Benchmark
+	public ITemperature getLowestTempYearByCountry()
+	{
+		return analyzer.getLowestTempYearByCountry(country);
+	}
+
+	@Benchmark
+	public ITemperature getHighestTempYearByCountry()
+	{
+		return analyzer.getHighestTempYearByCountry(country);
+	}
+
+	@Benchmark
+	public ArrayList<ITemperature> allCountriesGetTop10LowestTempByMonth(Cursor cursor)
+	{
+		return analyzer.allCountriesGetTop10LowestTemp(cursor.nextMonth());
+	}
+
+	@Benchmark
+	public ArrayList<ITemperature> allCountriesGetTop10HighestTempByMonth(Cursor cursor)
+	{
+		return analyzer.allCountriesGetTop10HighestTemp(cursor.nextMonth());
+	}
+
+	@Benchmark
+	public ArrayList<ITemperature> allCountriesGetTop10LowestTemp()
+	{
+		return analyzer.allCountriesGetTop10LowestTemp();
+	}
+
+	@Benchmark
+	public ArrayList<ITemperature> allCountriesGetTop10HighestTemp()
+	{
+		return analyzer.allCountriesGetTop10HighestTemp();
+	}
+
+	@Benchmark
+	public ArrayList<ITemperature> allCountriesGetAllDataWithinTempRange()
+	{
+		return analyzer.allCountriesGetAllDataWithinTempRange(10, 20);
+	}
+
+	@Benchmark
+	public ArrayList<ITemperature> allCountriesTop10TempDelta(Cursor cursor)
+	{
+		return analyzer.allCountriesTop10TempDelta(cursor.nextMonth(), firstYear, lastYear);
+	}
+}
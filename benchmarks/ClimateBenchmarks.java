@@ -0,0 +1,34 @@
+package climatechange;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+//
+// The entry point of target/benchmarks.jar. Runs JMH with the arguments it is given, adding the gc profiler so every run reports the
+// allocation rate and the garbage collections of each benchmark, unless the arguments already ask for it.
+// Examples: java -jar target/benchmarks.jar
+//           java -jar target/benchmarks.jar AnalyzerBenchmark.allCountries -p source=bundled -p scale=1,16
+//           java -jar target/benchmarks.jar -h
+//
+public class ClimateBenchmarks {
+	public static void main(String[] args) throws Exception
+	{
+		ArrayList<String> jmhArgs = new ArrayList<String>(Arrays.asList(args));
+		boolean hasGcProfiler = false;
+		for (int i = 0; i + 1 < args.length; i++)
+		{
+			if (args[i].equals("-prof") && args[i + 1].startsWith("gc"))
+			{
+				hasGcProfiler = true;
+			}
+		}
+
+		if (!hasGcProfiler)
+		{
+			jmhArgs.add("-prof");
+			jmhArgs.add("gc");
+		}
+
+		org.openjdk.jmh.Main.main(jmhArgs.toArray(new String[0]));
+	}
+}
@@ -0,0 +1,127 @@
+package climatechange;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+//
+// The data file every benchmark runs against, and the readings in it. The bundled file is scaled by repeating its years, so a larger scale is
+// a longer history of the same countries. A synthetic file is made by DatasetGenerator with the years of the bundled file and more
+// countries for a larger scale, so the queries that go over every country get more work.
+//
+@State(Scope.Benchmark)
+public class ClimateData {
+	public static final String BUNDLED = "bundled";
+	public static final String SYNTHETIC = "synthetic";
+	// The countries of a synthetic file at scale 1, about as many as the bundled file has.
+	private static final int SYNTHETIC_COUNTRIES = 200;
+
+	@Param({ BUNDLED, SYNTHETIC })
+	public String source;
+
+	@Param({ "1", "4", "16" })
+	public int scale;
+
+	// The bundled data file, relative to the directory the benchmarks are run from.
+	@Param({ "world_temp_2000-2016.csv" })
+	public String bundledFile;
+
+	private String fileName;
+	private ArrayList<ITemperature> readings;
+	// A country from the middle of the file, which the per-country queries ask about.
+	private String country;
+	private int firstYear;
+	private int lastYear;
+	// Whether the data file was made for this trial and has to be deleted after it.
+	private boolean isCopy;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException
+	{
+		if (SYNTHETIC.equals(source))
+		{
+			File syntheticFile = File.createTempFile("synthetic_temp_x" + scale + "_", ".csv");
+			new DatasetGenerator(Math.min(SYNTHETIC_COUNTRIES * scale, DatasetGenerator.MAX_COUNTRIES), 2000, 2016, 1, 1).write(syntheticFile.getPath());
+			fileName = syntheticFile.getPath();
+			isCopy = true;
+		}
+		else if (scale == 1)
+		{
+			fileName = bundledFile;
+			isCopy = false;
+		}
+		else
+		{
+			fileName = DatasetGenerator.writeScaledCopy(bundledFile, scale).getPath();
+			isCopy = true;
+		}
+
+		readings = new WeatherIO().readDataFromFile(fileName);
+		if (readings.isEmpty())
+		{
+			throw new IllegalStateException(fileName + " has no readings");
+		}
+		country = readings.get(readings.size() / 2).getCountry();
+		firstYear = Integer.MAX_VALUE;
+		lastYear = Integer.MIN_VALUE;
+		for (ITemperature temp : readings)
+		{
+			firstYear = Math.min(firstYear, temp.getYear());
+			lastYear = Math.max(lastYear, temp.getYear());
+		}
+	}
+
+	//
+	// Deletes the files made for this trial, and the snapshot that loading any data file caches next to it.
+	//
+	@TearDown(Level.Trial)
+	public void tearDown()
+	{
+		new File(fileName + TableSnapshot.FILE_EXTENSION).delete();
+		if (isCopy)
+		{
+			new File(fileName).delete();
+		}
+	}
+
+	public String getFileName()
+	{
+		return fileName;
+	}
+
+	public ArrayList<ITemperature> getReadings()
+	{
+		return readings;
+	}
+
+	public String getCountry()
+	{
+		return country;
+	}
+
+	public int getFirstYear()
+	{
+		return firstYear;
+	}
+
+	public int getLastYear()
+	{
+		return lastYear;
+	}
+
+	//
+	// Builds an analyzer on the data file, the way the program does.
+	//
+	public ClimateAnalyzer createAnalyzer() throws FileNotFoundException
+	{
+		return new ClimateAnalyzer(fileName);
+	}
+}
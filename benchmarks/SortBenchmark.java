@@ -0,0 +1,50 @@
+package climatechange;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+//
+// Benchmarks sorting every reading of the data file by Temperature.compareTo(). Each call sorts a fresh copy in file order, so no call
+// sorts a list that is already sorted; the copy is part of the time.
+//
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+@State(Scope.Benchmark)
+public class SortBenchmark {
+	// Sorting works on Temperature objects, which are what readDataFromFile() creates.
+	private ArrayList<Temperature> temperatures;
+
+	@Setup(Level.Trial)
+	public void setUp(ClimateData data)
+	{
+		temperatures = new ArrayList<Temperature>(data.getReadings().size());
+		for (ITemperature temp : data.getReadings())
+		{
+			temperatures.add((Temperature) temp);
+		}
+	}
+
+	@Benchmark
+	public ArrayList<Temperature> sortByCompareTo()
+	{
+		ArrayList<Temperature> copy = new ArrayList<Temperature>(temperatures);
+		Collections.sort(copy);
+		return copy;
+	}
+}
@@ -0,0 +1,74 @@
+package climatechange;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+//
+// Benchmarks reading a data file and writing a result file with WeatherIO.
+//
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+@State(Scope.Benchmark)
+public class WeatherIOBenchmark {
+	// The readings written by each call of writeDataToFile(), about as many as the largest result of a query.
+	public static final int ROWS_WRITTEN = 10000;
+
+	private ArrayList<ITemperature> writeList;
+	private File writeFile;
+
+	@Setup(Level.Trial)
+	public void setUp(ClimateData data) throws IOException
+	{
+		ArrayList<ITemperature> readings = data.getReadings();
+		writeList = new ArrayList<ITemperature>(readings.subList(0, Math.min(readings.size(), ROWS_WRITTEN)));
+		writeFile = File.createTempFile("benchmark", ".csv");
+	}
+
+	//
+	// writeDataToFile() appends, so the file is started over before every call. A call writes thousands of rows, which takes long enough
+	// for the setup of each invocation not to skew the time.
+	//
+	@Setup(Level.Invocation)
+	public void deleteWriteFile()
+	{
+		writeFile.delete();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown()
+	{
+		writeFile.delete();
+	}
+
+	@Benchmark
+	public ArrayList<ITemperature> readDataFromFile(ClimateData data) throws FileNotFoundException
+	{
+		return new WeatherIO().readDataFromFile(data.getFileName());
+	}
+
+	@Benchmark
+	public long writeDataToFile() throws IOException
+	{
+		new WeatherIO().writeDataToFile(writeFile.getPath(), "Benchmark", writeList);
+		return writeFile.length();
+	}
+}